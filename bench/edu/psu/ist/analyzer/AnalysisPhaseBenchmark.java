@@ -0,0 +1,108 @@
+package edu.psu.ist.analyzer;
+
+import antlr4.IterativeTreeWalker;
+import antlr4.edu.psu.ist.parser.PiethonParser;
+import edu.psu.ist.analyzer.ast.AstBuilder;
+import edu.psu.ist.analyzer.ast.AstSimplifier;
+import edu.psu.ist.analyzer.ast.PieAst;
+import edu.psu.ist.analyzer.utils.Digraph;
+import edu.psu.ist.analyzer.utils.Options;
+import edu.psu.ist.analyzer.utils.Result;
+import edu.psu.ist.analyzer.utils.TextInput;
+import edu.psu.ist.bench.PieScriptGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the phases that follow parsing separately: the semantic checking
+ * walk, lowering, building the call graph from the lowered tree,
+ * simplifying it, and exporting the call graph. Each benchmark starts from the output of the
+ * previous phase (computed once per trial).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+@State(Scope.Benchmark)
+public class AnalysisPhaseBenchmark {
+
+    @Param({"1KB", "100KB", "10MB", "100MB"})
+    public String size;
+
+    @Param({"2"})
+    public int params;
+
+    @Param({"4"})
+    public int varDefs;
+
+    @Param({"3"})
+    public int callFanOut;
+
+    @Param({"3"})
+    public int addDepth;
+
+    private PieAnalyzer analyzer;
+    private TextInput input;
+    private PiethonParser.ScriptContext tree;
+    private Digraph<ProcNode> graph;
+    private PieAst ast;
+    private Path exportDir;
+
+    @Setup(Level.Trial) public void setup() throws IOException {
+        var text = new PieScriptGenerator(42)
+                .setParams(params)
+                .setVarDefs(varDefs)
+                .setCallFanOut(callFanOut)
+                .setAddDepth(addDepth)
+                .generateOfSize(PieScriptGenerator.parseSize(size));
+        input = new TextInput("bench", text);
+        analyzer = new PieAnalyzer().setOptions(Options.TestOpts);
+
+        var parsed = analyzer.parseRoot(input);
+        if (parsed.isError()) {
+            throw new IllegalStateException("generated script doesn't parse: "
+                    + parsed.getError().get(0));
+        }
+        tree = parsed.get();
+        ast = analyzer.lower(tree);
+        graph = PieAnalyzer.buildGraph(ast);
+        exportDir = Files.createTempDirectory("pie-bench");
+    }
+
+    @Benchmark
+    public Result<PiethonParser.ScriptContext, List<PieErrorMessage>> checkWalk() {
+        var l = new PieScriptCheckingListener(input, tree,
+                analyzer.symbols());
+        IterativeTreeWalker.DEFAULT.walk(l, tree);
+        return l.getCheckedScript();
+    }
+
+    @Benchmark
+    public PieAst lowerWalk() {
+        var b = new AstBuilder(input, analyzer.symbols());
+        IterativeTreeWalker.DEFAULT.walk(b, tree);
+        return b.build();
+    }
+
+    @Benchmark
+    public Digraph<ProcNode> astGraph() {
+        return PieAnalyzer.buildGraph(ast);
+    }
+
+    @Benchmark
+    public AstSimplifier.Simplified simplify() {
+        return AstSimplifier.simplify(ast);
+    }
+
+    @Benchmark
+    public void exportGraph() {
+        analyzer.exportGraph(graph, exportDir.resolve("graph.png").toString(),
+                "bench");
+    }
+}
@@ -0,0 +1,75 @@
+package edu.psu.ist.analyzer;
+
+import edu.psu.ist.analyzer.ast.PieAst;
+import edu.psu.ist.analyzer.utils.Digraph;
+import edu.psu.ist.analyzer.utils.GraphDiff;
+import edu.psu.ist.analyzer.utils.Options;
+import edu.psu.ist.bench.PieScriptGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures getting the call graph of a script after an edit that drops one
+ * call: rebuilding it from scratch ({@code rebuild}), updating the previous
+ * version's graph with {@link CallGraphUpdater} ({@code update}, which
+ * switches between the two versions on each invocation), and comparing the
+ * two versions' graphs in full ({@code fullDiff}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class GraphUpdateBenchmark {
+
+    @Param({"100KB", "10MB"})
+    public String size;
+
+    private PieAst before;
+    private PieAst after;
+    private Digraph<ProcNode> beforeGraph;
+    private Digraph<ProcNode> afterGraph;
+    private CallGraphUpdater updater;
+    private boolean atAfter;
+
+    @Setup(Level.Trial) public void setup() {
+        String text = new PieScriptGenerator(42)
+                .generateOfSize(PieScriptGenerator.parseSize(size));
+        // drop the last call of the last procedure
+        int def = text.lastIndexOf("\ndef ");
+        int call = text.indexOf(");\n", text.indexOf("    p", def));
+        int lineStart = text.lastIndexOf('\n', call) + 1;
+        String edited = text.substring(0, lineStart) + text.substring(call + 3);
+
+        // (both versions lowered with one analyzer, so they share symbol ids)
+        var analyzer = new PieAnalyzer().setOptions(Options.TestOpts);
+        before = analyzer.setScriptCode("bench", text).check().get();
+        after = analyzer.setScriptCode("bench", edited).check().get();
+        beforeGraph = PieAnalyzer.buildGraph(before);
+        afterGraph = PieAnalyzer.buildGraph(after);
+        updater = new CallGraphUpdater();
+        updater.update(before);
+        if (updater.update(after).size() != 1) {
+            throw new IllegalStateException("expected one call to be dropped");
+        }
+        atAfter = true;
+    }
+
+    @Benchmark
+    public Digraph<ProcNode> rebuild() {
+        return PieAnalyzer.buildGraph(after);
+    }
+
+    @Benchmark
+    public GraphDiff<ProcNode> update() {
+        atAfter = !atAfter;
+        return updater.update(atAfter ? after : before);
+    }
+
+    @Benchmark
+    public GraphDiff<ProcNode> fullDiff() {
+        return GraphDiff.between(beforeGraph, afterGraph);
+    }
+}
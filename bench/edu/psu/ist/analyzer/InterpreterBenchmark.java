@@ -0,0 +1,75 @@
+package edu.psu.ist.analyzer;
+
+import edu.psu.ist.analyzer.ast.PieAst;
+import edu.psu.ist.analyzer.utils.Options;
+import edu.psu.ist.analyzer.vm.Compiler;
+import edu.psu.ist.analyzer.vm.Interpreter;
+import edu.psu.ist.analyzer.vm.Program;
+import edu.psu.ist.bench.PieScriptGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures compiling a checked script to bytecode ({@code compile}, on a
+ * generated script of {@code size}) and running it ({@code run}, on a
+ * script where each of {@code depth} procedures calls the one before it
+ * twice, i.e. {@code 2^depth - 1} calls per run, each doing a few adds).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterpreterBenchmark {
+
+    @Param({"100KB"})
+    public String size;
+
+    @Param({"16"})
+    public int depth;
+
+    private PieAst generated;
+    private Interpreter interpreter;
+
+    @Setup(Level.Trial) public void setup() {
+        generated = check(new PieScriptGenerator(42)
+                .generateOfSize(PieScriptGenerator.parseSize(size)));
+
+        var sb = new StringBuilder("""
+                def p0(x : Int32, b : Bool) : Int32 is
+                    var y : Int32 := x + 1;
+                    return y + x + 2;
+                end
+                """);
+        for (int i = 1; i < depth; i++) {
+            sb.append("def p").append(i).append("(x : Int32, b : Bool) : Int32 is\n")
+                    .append("    var y : Int32 := x + 1;\n")
+                    .append("    p").append(i - 1).append("(y, b);\n")
+                    .append("    p").append(i - 1).append("(y + x, b);\n")
+                    .append("    return y;\n")
+                    .append("end\n");
+        }
+        interpreter = new Interpreter(Compiler.compile(check(sb.toString())));
+    }
+
+    private static PieAst check(String text) {
+        var result = new PieAnalyzer().setOptions(Options.TestOpts)
+                .setScriptCode("bench", text).check();
+        if (result.isError()) {
+            throw new IllegalStateException("bad script: " + result.getError().get(0));
+        }
+        return result.get();
+    }
+
+    @Benchmark
+    public Program compile() {
+        return Compiler.compile(generated);
+    }
+
+    @Benchmark
+    public int run() {
+        return interpreter.call("p" + (depth - 1), 1, 1);
+    }
+}
@@ -0,0 +1,57 @@
+package edu.psu.ist.analyzer;
+
+import antlr4.edu.psu.ist.parser.PiethonParser;
+import edu.psu.ist.analyzer.utils.Options;
+import edu.psu.ist.analyzer.utils.Result;
+import edu.psu.ist.analyzer.utils.TextInput;
+import edu.psu.ist.bench.PieScriptGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PieAnalyzer#parseRoot(TextInput)} on generated scripts,
+ * comparing plain LL parsing against the two-stage SLL/LL mode, with and
+ * without lean tokens (see {@link Options#leanTokens()}; run with
+ * {@code -prof gc} to compare their allocations).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"1KB", "100KB", "10MB", "100MB"})
+    public String size;
+
+    /** {@code LL} or {@code SLL_LL} (see {@link Options#twoStageParse()}). */
+    @Param({"LL", "SLL_LL"})
+    public String mode;
+
+    @Param({"false", "true"})
+    public boolean lean;
+
+    /** The fraction of generated definitions that contain an error. */
+    @Param({"0.0"})
+    public double errorRate;
+
+    private PieAnalyzer analyzer;
+    private TextInput input;
+
+    @Setup(Level.Trial) public void setup() {
+        var text = new PieScriptGenerator(42).setErrorRate(errorRate)
+                .generateOfSize(PieScriptGenerator.parseSize(size));
+        input = new TextInput("bench", text);
+        analyzer = new PieAnalyzer().setOptions(Options.TestOpts
+                .withTwoStageParse(mode.equals("SLL_LL"))
+                .withLeanTokens(lean));
+    }
+
+    @Benchmark
+    public Result<PiethonParser.ScriptContext, List<PieErrorMessage>> parseRoot() {
+        return analyzer.parseRoot(input);
+    }
+}
@@ -0,0 +1,114 @@
+package edu.psu.ist.analyzer;
+
+import edu.psu.ist.analyzer.utils.Digraph;
+import edu.psu.ist.analyzer.utils.ReachabilityIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reachability queries on a call graph shaped like those of
+ * Piethon scripts ({@code procs} procedures, each calling a few earlier
+ * ones, mostly nearby): {@link #QUERIES} random queries answered by a
+ * {@link ReachabilityIndex} ({@code indexQueries}) vs. by a fresh search
+ * each ({@code searchQueries}), building the index, and a dead procedure
+ * report from the last procedure.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ReachabilityBenchmark {
+
+    static final int QUERIES = 1_000;
+
+    @Param({"1000", "100000"})
+    public int procs;
+
+    private Digraph<Integer> graph;
+    private ReachabilityIndex<Integer> index;
+    private int[] from;
+    private int[] to;
+
+    @Setup(Level.Trial) public void setup() {
+        var random = new Random(42);
+        graph = new Digraph<>();
+        for (int p = 0; p < procs; p++) {
+            graph.add(p);
+            for (int i = 0; p > 0 && i < 3; i++) {
+                int back = random.nextInt(10) == 0
+                        ? random.nextInt(p)
+                        : Math.min(p, 1 + random.nextInt(20));
+                graph.add(p, p - back);
+            }
+        }
+        graph.freeze();
+        index = ReachabilityIndex.of(graph);
+        from = new int[QUERIES];
+        to = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            from[i] = random.nextInt(procs);
+            to[i] = random.nextInt(procs);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public int indexQueries() {
+        int reachable = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            // (vertex ids are the procedure numbers, as they were added in order)
+            if (index.reaches(from[i], to[i])) {
+                reachable++;
+            }
+        }
+        return reachable;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public int searchQueries() {
+        int reachable = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            if (search(from[i], to[i])) {
+                reachable++;
+            }
+        }
+        return reachable;
+    }
+
+    private boolean search(Integer u, Integer v) {
+        var seen = new HashSet<Integer>();
+        var todo = new ArrayDeque<Integer>();
+        seen.add(u);
+        todo.push(u);
+        while (!todo.isEmpty()) {
+            Integer w = todo.pop();
+            if (w.equals(v)) {
+                return true;
+            }
+            for (Integer x : graph.neighbors(w)) {
+                if (seen.add(x)) {
+                    todo.push(x);
+                }
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public ReachabilityIndex<Integer> build() {
+        return ReachabilityIndex.of(graph);
+    }
+
+    @Benchmark
+    public List<Integer> deadReport() {
+        return index.unreachableFrom(List.of(procs - 1));
+    }
+}
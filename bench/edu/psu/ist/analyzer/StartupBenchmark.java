@@ -0,0 +1,72 @@
+package edu.psu.ist.analyzer;
+
+import edu.psu.ist.bench.PieScriptGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PieCli} runs in a fresh JVM (one invocation per fork, no
+ * warmup), i.e. what a short command line run costs once the JVM itself is
+ * up: loading and initializing the analyzer, the lexer and the parser, and
+ * running them cold.
+ * <p>
+ * {@code firstDiagnostic} checks a script with an error with
+ * {@code --first-error}, so it's the time to the first diagnostic.
+ * {@code checkNoPrewarm} skips {@link PieAnalyzer#prewarm()} (which
+ * {@link PieCli#main} does first thing) for comparison.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    @Param({"1KB", "100KB"})
+    public String size;
+
+    private static final PrintStream NOWHERE =
+            new PrintStream(OutputStream.nullOutputStream());
+
+    private String valid;
+    private String invalid;
+
+    @Setup(Level.Trial) public void setup() throws IOException {
+        long chars = PieScriptGenerator.parseSize(size);
+        valid = write(new PieScriptGenerator(42).generateOfSize(chars));
+        invalid = write(new PieScriptGenerator(42).setErrorRate(0.1)
+                .generateOfSize(chars));
+    }
+
+    private static String write(String text) throws IOException {
+        Path file = Files.createTempFile("startup", ".pie");
+        file.toFile().deleteOnExit();
+        Files.writeString(file, text);
+        return file.toString();
+    }
+
+    @Benchmark
+    public int check() {
+        PieAnalyzer.prewarm();
+        return PieCli.run(new String[] {"check", valid}, NOWHERE, NOWHERE);
+    }
+
+    @Benchmark
+    public int checkNoPrewarm() {
+        return PieCli.run(new String[] {"check", valid}, NOWHERE, NOWHERE);
+    }
+
+    @Benchmark
+    public int firstDiagnostic() {
+        PieAnalyzer.prewarm();
+        return PieCli.run(new String[] {"check", "--first-error", invalid},
+                NOWHERE, NOWHERE);
+    }
+}
@@ -0,0 +1,200 @@
+package edu.psu.ist.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic piethon scripts for benchmarking. The same seed and
+ * settings always produce the same script.
+ * <p>
+ * Scripts are semantically valid unless an {@link #setErrorRate error rate}
+ * is set, in which case roughly that fraction of definitions gets one
+ * (syntactic or semantic) error injected.
+ */
+public final class PieScriptGenerator {
+
+    private static final String[] VALUE_TYPES = {"Int32", "Bool"};
+    private static final String[] RETURN_TYPES = {"Int32", "Bool", "Void"};
+
+    private final Random rng;
+
+    private int params = 2;
+    private int varDefs = 4;
+    private int callFanOut = 3;
+    private int addDepth = 3;
+    private double errorRate = 0.0;
+
+    /** Signatures of the procedures generated so far (callable by later ones). */
+    private final List<Signature> procs = new ArrayList<>();
+
+    public PieScriptGenerator(long seed) {
+        this.rng = new Random(seed);
+    }
+
+    /** Sets the number of formal parameters per procedure. */
+    public PieScriptGenerator setParams(int params) {
+        this.params = params;
+        return this;
+    }
+
+    /** Sets the number of local variable definitions per procedure. */
+    public PieScriptGenerator setVarDefs(int varDefs) {
+        this.varDefs = varDefs;
+        return this;
+    }
+
+    /** Sets the number of call statements per procedure. */
+    public PieScriptGenerator setCallFanOut(int callFanOut) {
+        this.callFanOut = callFanOut;
+        return this;
+    }
+
+    /** Sets the number of terms in each generated {@code Int32} expression. */
+    public PieScriptGenerator setAddDepth(int addDepth) {
+        this.addDepth = addDepth;
+        return this;
+    }
+
+    /** Sets the fraction of definitions that get an error injected. */
+    public PieScriptGenerator setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /** Returns a script with exactly {@code defs} procedure definitions. */
+    public String generate(int defs) {
+        var sb = new StringBuilder();
+        for (int i = 0; i < defs; i++) {
+            appendDef(sb);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a script made up of whole procedure definitions that's at least
+     * {@code targetChars} long.
+     */
+    public String generateOfSize(long targetChars) {
+        if (targetChars > Integer.MAX_VALUE - 1024) {
+            throw new IllegalArgumentException("script too large: " + targetChars);
+        }
+        var sb = new StringBuilder((int) targetChars + 1024);
+        while (sb.length() < targetChars) {
+            appendDef(sb);
+        }
+        return sb.toString();
+    }
+
+    private void appendDef(StringBuilder sb) {
+        var name = "p" + procs.size();
+        var retType = RETURN_TYPES[rng.nextInt(RETURN_TYPES.length)];
+        List<String> paramTypes = new ArrayList<>();
+        List<Local> locals = new ArrayList<>();
+
+        sb.append("def ").append(name).append('(');
+        for (int i = 0; i < params; i++) {
+            var tpe = VALUE_TYPES[rng.nextInt(VALUE_TYPES.length)];
+            paramTypes.add(tpe);
+            locals.add(new Local("a" + i, tpe));
+            sb.append(i > 0 ? ", " : "").append("a").append(i).append(" : ")
+                    .append(tpe);
+        }
+        sb.append(") : ").append(retType).append(" is\n");
+
+        for (int i = 0; i < varDefs; i++) {
+            var tpe = VALUE_TYPES[rng.nextInt(VALUE_TYPES.length)];
+            sb.append("    var v").append(i).append(" : ").append(tpe)
+                    .append(" := ");
+            appendExp(sb, tpe, locals);
+            sb.append(";\n");
+            locals.add(new Local("v" + i, tpe));
+        }
+
+        for (int i = 0; i < callFanOut && !procs.isEmpty(); i++) {
+            var callee = procs.get(rng.nextInt(procs.size()));
+            sb.append("    ").append(callee.name()).append('(');
+            for (int j = 0; j < callee.paramTypes().size(); j++) {
+                sb.append(j > 0 ? ", " : "");
+                appendExp(sb, callee.paramTypes().get(j), locals);
+            }
+            sb.append(");\n");
+        }
+
+        if (!locals.isEmpty()) {
+            var target = locals.get(rng.nextInt(locals.size()));
+            sb.append("    ").append(target.name()).append(" := ");
+            appendExp(sb, target.tpe(), locals);
+            sb.append(";\n");
+        }
+
+        if (rng.nextDouble() < errorRate) {
+            appendError(sb);
+        }
+
+        if (!retType.equals("Void")) {
+            sb.append("    return ");
+            appendExp(sb, retType, locals);
+            sb.append(";\n");
+        }
+        sb.append("end\n\n");
+        procs.add(new Signature(name, paramTypes));
+    }
+
+    /** Appends an expression of type {@code tpe}. */
+    private void appendExp(StringBuilder sb, String tpe, List<Local> locals) {
+        if (tpe.equals("Bool")) {
+            var ref = pick(locals, "Bool");
+            sb.append(ref != null && rng.nextBoolean()
+                    ? ref
+                    : rng.nextBoolean() ? "true" : "false");
+            return;
+        }
+        for (int i = 0; i < addDepth; i++) {
+            sb.append(i > 0 ? " + " : "");
+            var ref = pick(locals, "Int32");
+            if (ref != null && rng.nextBoolean()) {
+                sb.append(ref);
+            }
+            else {
+                sb.append(rng.nextInt(1000));
+            }
+        }
+    }
+
+    private void appendError(StringBuilder sb) {
+        switch (rng.nextInt(4)) {
+            case 0 -> sb.append("    var bad : Bool := 1 + 2;\n");
+            case 1 -> sb.append("    undefined_var := 0;\n");
+            case 2 -> sb.append("    no_such_proc(1, true);\n");
+            default -> sb.append("    var oops : Int32 := 1 +;\n");
+        }
+    }
+
+    /** Parses a size such as {@code 512}, {@code 1KB} or {@code 100MB}. */
+    public static long parseSize(String size) {
+        var s = size.trim().toUpperCase();
+        if (s.endsWith("KB")) {
+            return Long.parseLong(s.substring(0, s.length() - 2)) * 1024;
+        }
+        else if (s.endsWith("MB")) {
+            return Long.parseLong(s.substring(0, s.length() - 2)) * 1024 * 1024;
+        }
+        return Long.parseLong(s);
+    }
+
+    /** Returns the name of a random local of type {@code tpe} (or null). */
+    private String pick(List<Local> locals, String tpe) {
+        if (locals.isEmpty()) {
+            return null;
+        }
+        var l = locals.get(rng.nextInt(locals.size()));
+        return l.tpe().equals(tpe) ? l.name() : null;
+    }
+
+    private record Local(String name, String tpe) {
+    }
+
+    private record Signature(String name, List<String> paramTypes) {
+    }
+}
@@ -1,12 +1,15 @@
 package antlr4;
 
 import edu.psu.ist.analyzer.PieErrorMessage;
+import edu.psu.ist.analyzer.errors.ErrorLimitReachedException;
 import edu.psu.ist.analyzer.errors.ParseError;
 import edu.psu.ist.analyzer.utils.SourceLocation;
 import edu.psu.ist.analyzer.utils.TextInput;
 import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -16,8 +19,21 @@ public class AntlrErrorReportingListener extends BaseErrorListener {
     private final TextInput source;
     private final List<PieErrorMessage> errors = new ArrayList<>();
 
+    /** The number of errors to stop at ({@code 0} for no limit). */
+    private final int maxErrors;
+
     public AntlrErrorReportingListener(TextInput source) {
+        this(source, 0);
+    }
+
+    /**
+     * Creates a listener that throws an {@link ErrorLimitReachedException}
+     * (stopping the lexer/parser it's attached to) once {@code maxErrors}
+     * errors were reported.
+     */
+    public AntlrErrorReportingListener(TextInput source, int maxErrors) {
         this.source = source;
+        this.maxErrors = maxErrors;
     }
 
     public List<PieErrorMessage> errors() {
@@ -33,14 +49,53 @@ public class AntlrErrorReportingListener extends BaseErrorListener {
                                       int charPositionInLine, String msg,
                                       RecognitionException e) {
 
+        var loc = locate(recognizer, offendingSymbol, line,
+                charPositionInLine);
+
         // nb: + 1 to account for non-zero based starting indices
         charPositionInLine = charPositionInLine + 1;
-        String updatedMsg = msg + "(line: " + line + ", column " +
-                charPositionInLine + ")";
+        String updatedMsg = withPosition(msg, line, charPositionInLine);
 
         ParseError err = new ParseError(updatedMsg, line, charPositionInLine,
-                new SourceLocation(source, line, charPositionInLine, line,
-                        charPositionInLine));
+                loc);
         errors.add(err);
+        if (errors.size() == maxErrors) {
+            throw new ErrorLimitReachedException(errors);
+        }
+    }
+
+    /**
+     * Returns the location of a syntax error: the offending token (parser
+     * errors) or the start of the token being matched (lexer errors).
+     */
+    private SourceLocation locate(Recognizer<?, ?> recognizer,
+                                  Object offendingSymbol, int line, int col) {
+        int start = -1;
+        int end = -1;
+        if (offendingSymbol instanceof Token t) {
+            start = t.getStartIndex();
+            end = t.getType() == Token.EOF ? start : t.getStopIndex() + 1;
+        }
+        else if (recognizer instanceof Lexer lexer) {
+            start = lexer._tokenStartCharIndex;
+            end = lexer._input.index();
+        }
+        if (start < 0) {
+            // e.g. a token conjured up during error recovery
+            return SourceLocation.at(source, line, col);
+        }
+        return new SourceLocation(source, start, Math.max(start, end));
+    }
+
+    /**
+     * Appends the {@code line}/{@code col} suffix used in parse error messages
+     * to {@code msg}, replacing the suffix if {@code msg} already has one.
+     */
+    public static String withPosition(String msg, int line, int col) {
+        int suffix = msg.lastIndexOf("(line: ");
+        if (suffix >= 0) {
+            msg = msg.substring(0, suffix);
+        }
+        return msg + "(line: " + line + ", column " + col + ")";
     }
 }
@@ -0,0 +1,52 @@
+package antlr4;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.List;
+
+/**
+ * Lets several listeners share a single tree walk: each enter/exit event is
+ * dispatched to every listener, in the order given.
+ * <p>
+ * Generated contexts only call the rule-specific {@code enterXXX}/{@code
+ * exitXXX} methods on listeners of the grammar's own listener type, so this
+ * class forwards the events itself via {@link ParserRuleContext#enterRule}
+ * and {@link ParserRuleContext#exitRule}.
+ */
+public final class CompositeParseTreeListener implements ParseTreeListener {
+
+    private final List<ParseTreeListener> listeners;
+
+    public CompositeParseTreeListener(ParseTreeListener... listeners) {
+        this.listeners = List.of(listeners);
+    }
+
+    @Override public void enterEveryRule(ParserRuleContext ctx) {
+        for (var l : listeners) {
+            l.enterEveryRule(ctx);
+            ctx.enterRule(l);
+        }
+    }
+
+    @Override public void exitEveryRule(ParserRuleContext ctx) {
+        for (var l : listeners) {
+            ctx.exitRule(l);
+            l.exitEveryRule(ctx);
+        }
+    }
+
+    @Override public void visitTerminal(TerminalNode node) {
+        for (var l : listeners) {
+            l.visitTerminal(node);
+        }
+    }
+
+    @Override public void visitErrorNode(ErrorNode node) {
+        for (var l : listeners) {
+            l.visitErrorNode(node);
+        }
+    }
+}
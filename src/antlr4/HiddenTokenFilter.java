@@ -0,0 +1,133 @@
+package antlr4;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.util.Arrays;
+
+/**
+ * Passes on only the default channel tokens of {@code source}, so a token
+ * stream reading from it never holds the hidden ones (e.g. whitespace).
+ * Tokens keep the line and column the lexer gave them, so error positions
+ * don't change.
+ * <p>
+ * The filter also notes the stretches of input no token covers (the chars
+ * the lexer rejected, and skipped comments), so {@link #text(int, int)} can
+ * rebuild the text a stream of every token would have had.
+ */
+public final class HiddenTokenFilter implements TokenSource {
+
+    private final Lexer source;
+
+    /** The number of tokens read from the source, hidden ones included. */
+    private int count;
+
+    /** The index just past the last token read (hidden ones included). */
+    private int end;
+
+    /**
+     * The stretches of input between tokens, as pairs of start (inclusive)
+     * and stop (exclusive) indices, in input order.
+     */
+    private int[] gaps = new int[8];
+    private int gapCount;
+
+    public HiddenTokenFilter(Lexer source) {
+        this.source = source;
+    }
+
+    @Override public Token nextToken() {
+        Token t;
+        do {
+            t = source.nextToken();
+            count++;
+            // (read from the lexer: hidden tokens may be placeholders
+            // without a position, see InterningTokenFactory; but chars
+            // rejected up to the end of input are followed by EOF without
+            // the lexer moving its token start past them)
+            int start = t.getType() == Token.EOF
+                    ? t.getStartIndex()
+                    : source._tokenStartCharIndex;
+            if (start > end) {
+                addGap(end, start);
+            }
+            end = source.getInputStream().index();
+        } while (t.getChannel() != Token.DEFAULT_CHANNEL);
+        return t;
+    }
+
+    private void addGap(int start, int stop) {
+        if (2 * gapCount == gaps.length) {
+            gaps = Arrays.copyOf(gaps, 2 * gaps.length);
+        }
+        gaps[2 * gapCount] = start;
+        gaps[2 * gapCount + 1] = stop;
+        gapCount++;
+    }
+
+    /**
+     * Returns the input from index {@code start} to {@code stop} (both
+     * inclusive), leaving out what no token covers: the same text as the
+     * tokens (hidden ones included) in that range.
+     */
+    public String text(int start, int stop) {
+        var input = source.getInputStream();
+        // the first gap that ends after start
+        int lo = 0;
+        int hi = gapCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (gaps[2 * mid + 1] <= start) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        var s = new StringBuilder();
+        int from = start;
+        for (int g = lo; g < gapCount && gaps[2 * g] <= stop; g++) {
+            if (gaps[2 * g] > from) {
+                s.append(input.getText(Interval.of(from, gaps[2 * g] - 1)));
+            }
+            from = Math.max(from, gaps[2 * g + 1]);
+        }
+        if (from <= stop) {
+            s.append(input.getText(Interval.of(from, stop)));
+        }
+        return s.toString();
+    }
+
+    /** Returns the number of tokens lexed so far (hidden ones included). */
+    public int count() {
+        return count;
+    }
+
+    @Override public int getLine() {
+        return source.getLine();
+    }
+
+    @Override public int getCharPositionInLine() {
+        return source.getCharPositionInLine();
+    }
+
+    @Override public CharStream getInputStream() {
+        return source.getInputStream();
+    }
+
+    @Override public String getSourceName() {
+        return source.getSourceName();
+    }
+
+    @Override public void setTokenFactory(TokenFactory<?> factory) {
+        source.setTokenFactory(factory);
+    }
+
+    @Override public TokenFactory<?> getTokenFactory() {
+        return source.getTokenFactory();
+    }
+}
@@ -0,0 +1,123 @@
+package antlr4;
+
+import edu.psu.ist.analyzer.utils.SymbolInterner;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+
+/**
+ * Creates {@link PieToken}s, interning the text of every token of type
+ * {@code symbolType} (identifiers) as it's lexed.
+ * <p>
+ * The text is read straight out of the lexer's char stream, so a
+ * {@link String} is only allocated the first time a name is seen; every
+ * later occurrence of the name shares that (interned) string as its text.
+ * Other tokens don't copy their text at all: it's read from the char stream
+ * when asked for.
+ * <p>
+ * A factory that {@code sharesHidden} tokens returns one placeholder token
+ * for every token off the default channel (e.g. whitespace), for when those
+ * are dropped anyway (see {@link HiddenTokenFilter}).
+ */
+public final class InterningTokenFactory implements TokenFactory<PieToken> {
+
+    private final SymbolInterner symbols;
+    private final int symbolType;
+
+    /** Returned for every hidden token ({@code null} if they're created). */
+    private final PieToken hidden;
+
+    /** Reused view of the text of the token being created. */
+    private final StreamSlice slice = new StreamSlice();
+
+    public InterningTokenFactory(SymbolInterner symbols, int symbolType) {
+        this(symbols, symbolType, false);
+    }
+
+    public InterningTokenFactory(SymbolInterner symbols, int symbolType,
+                                 boolean sharesHidden) {
+        this.symbols = symbols;
+        this.symbolType = symbolType;
+        if (sharesHidden) {
+            hidden = new PieToken(Token.INVALID_TYPE, null, -1);
+            hidden.setChannel(Token.HIDDEN_CHANNEL);
+        }
+        else {
+            hidden = null;
+        }
+    }
+
+    @Override public PieToken create(Pair<TokenSource, CharStream> source,
+                                     int type, String text, int channel,
+                                     int start, int stop, int line,
+                                     int charPositionInLine) {
+        if (hidden != null && channel != Token.DEFAULT_CHANNEL) {
+            return hidden;
+        }
+        int symbol = -1;
+        if (type == symbolType) {
+            if (text == null && source.b != null) {
+                slice.reset(source.b, start, stop);
+                symbol = symbols.intern(slice);
+                slice.reset(null, 0, -1);
+            }
+            else if (text != null) {
+                symbol = symbols.intern(text);
+            }
+        }
+        var t = new PieToken(source, type, channel, start, stop, symbol);
+        t.setLine(line);
+        t.setCharPositionInLine(charPositionInLine);
+        if (symbol >= 0) {
+            t.setText(symbols.name(symbol));
+        }
+        else if (text != null) {
+            t.setText(text);
+        }
+        return t;
+    }
+
+    @Override public PieToken create(int type, String text) {
+        int symbol = type == symbolType && text != null
+                ? symbols.intern(text)
+                : -1;
+        return new PieToken(type, text, symbol);
+    }
+
+    /**
+     * The chars {@code [start, stop]} of a char stream. Tokens are created
+     * right after they're matched, so the slice is read with (negative)
+     * lookbehind from the stream's current index.
+     */
+    private static final class StreamSlice implements CharSequence {
+        private CharStream input;
+        private int start;
+        private int stop;
+
+        void reset(CharStream input, int start, int stop) {
+            this.input = input;
+            this.start = start;
+            this.stop = stop;
+        }
+
+        @Override public int length() {
+            return stop - start + 1;
+        }
+
+        @Override public char charAt(int i) {
+            int offset = start + i - input.index();
+            return (char) input.LA(offset < 0 ? offset : offset + 1);
+        }
+
+        @Override public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override public String toString() {
+            return input.getText(Interval.of(start, stop));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package antlr4;
+
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.RuleNode;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.Arrays;
+
+/**
+ * A drop-in replacement for {@link ParseTreeWalker#DEFAULT} that keeps the
+ * path to the current node on an explicit (heap allocated) stack instead of
+ * recursing once per tree level.
+ * <p>
+ * The {@code exp} rule is left-recursive, so a chain like
+ * {@code 1 + 1 + ... + 1} parses into a tree as deep as the chain is long;
+ * this walker handles such trees in linear time and constant native stack.
+ * Listeners see exactly the same events, in the same order, as with the
+ * recursive walker.
+ */
+public final class IterativeTreeWalker extends ParseTreeWalker {
+
+    public static final IterativeTreeWalker DEFAULT = new IterativeTreeWalker();
+
+    @Override public void walk(ParseTreeListener listener, ParseTree t) {
+        if (!(t instanceof RuleNode root)) {
+            visitLeaf(listener, t);
+            return;
+        }
+        // the rule nodes on the path from the root, and the index of the
+        // next child to visit for each of them
+        RuleNode[] path = new RuleNode[64];
+        int[] nextChild = new int[64];
+        int depth = 0;
+
+        enterRule(listener, root);
+        path[depth] = root;
+        nextChild[depth++] = 0;
+        while (depth > 0) {
+            RuleNode node = path[depth - 1];
+            int i = nextChild[depth - 1];
+            if (i == node.getChildCount()) {
+                exitRule(listener, node);
+                path[--depth] = null;
+                continue;
+            }
+            nextChild[depth - 1] = i + 1;
+            ParseTree child = node.getChild(i);
+            if (child instanceof RuleNode r) {
+                enterRule(listener, r);
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                    nextChild = Arrays.copyOf(nextChild, depth * 2);
+                }
+                path[depth] = r;
+                nextChild[depth++] = 0;
+            }
+            else {
+                visitLeaf(listener, child);
+            }
+        }
+    }
+
+    private static void visitLeaf(ParseTreeListener listener, ParseTree t) {
+        if (t instanceof ErrorNode e) {
+            listener.visitErrorNode(e);
+        }
+        else if (t instanceof TerminalNode n) {
+            listener.visitTerminal(n);
+        }
+    }
+}
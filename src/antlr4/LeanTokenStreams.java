@@ -0,0 +1,68 @@
+package antlr4;
+
+import org.antlr.v4.runtime.BufferedTokenStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.UnbufferedTokenStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * Token streams over a {@link HiddenTokenFilter}, whose text still includes
+ * the hidden tokens between tokens: the input quoted by an error message
+ * (e.g. "no viable alternative at input 'x 1'") is rebuilt by the filter,
+ * as the hidden tokens that used to supply the spaces are gone. It's the
+ * same text a stream of every token gives (without comments, or chars the
+ * lexer rejected).
+ * <p>
+ * The tokens are read from {@code source}: the filter itself, or a source
+ * passing on its tokens (e.g. a {@link TimedTokenSource}).
+ */
+public final class LeanTokenStreams {
+
+    private LeanTokenStreams() {
+    }
+
+    /** Returns a stream that keeps every token (so the parser can rewind). */
+    public static BufferedTokenStream buffered(TokenSource source,
+                                               HiddenTokenFilter filter) {
+        return new CommonTokenStream(source) {
+            @Override public String getText(Interval interval) {
+                int stop = Math.min(interval.b, size() - 1);
+                return interval.a < 0 || stop < 0 || interval.a > stop
+                        ? ""
+                        : sourceText(filter, get(interval.a), get(stop));
+            }
+        };
+    }
+
+    /**
+     * Returns a stream that only keeps the tokens the parser may still look
+     * at (so it can't be rewound to the start, e.g. to reparse).
+     */
+    public static TokenStream unbuffered(TokenSource source,
+                                         HiddenTokenFilter filter) {
+        return new UnbufferedTokenStream<Token>(source) {
+            @Override public String getText(Interval interval) {
+                return interval.a < 0 || interval.b < interval.a
+                        ? ""
+                        : sourceText(filter, get(interval.a),
+                                get(interval.b));
+            }
+        };
+    }
+
+    /** Returns the input from the start of {@code start} to {@code stop}. */
+    private static String sourceText(HiddenTokenFilter filter, Token start,
+                                     Token stop) {
+        if (start.getType() == Token.EOF) {
+            return "";
+        }
+        // (nothing of the end of file token but what's before it)
+        int end = stop.getType() == Token.EOF
+                ? stop.getStartIndex() - 1
+                : stop.getStopIndex();
+        return filter.text(start.getStartIndex(), end);
+    }
+}
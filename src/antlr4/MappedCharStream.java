@@ -0,0 +1,89 @@
+package antlr4;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link CharStream} that reads one char per byte straight out of a
+ * (typically memory-mapped) {@link ByteBuffer}, so the input is never copied
+ * onto the heap as a whole.
+ * <p>
+ * Piethon's grammar is pure ASCII, so no decoding is done: any non-ASCII
+ * bytes (say, inside a comment) are seen by the lexer as chars
+ * {@code 0x80..0xff}.
+ */
+public final class MappedCharStream implements CharStream {
+
+    private final ByteBuffer bytes;
+    private final int size;
+    private final String name;
+    private int position;
+
+    /** Creates a stream over the remaining bytes of {@code bytes}. */
+    public MappedCharStream(ByteBuffer bytes, String name) {
+        this.bytes = bytes.slice();
+        this.size = this.bytes.remaining();
+        this.name = name;
+    }
+
+    @Override public void consume() {
+        if (position >= size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        position++;
+    }
+
+    @Override public int LA(int i) {
+        if (i == 0) {
+            return 0; // undefined
+        }
+        // LA(1) is the current char, LA(-1) the previous one
+        int index = i > 0 ? position + i - 1 : position + i;
+        if (index < 0 || index >= size) {
+            return IntStream.EOF;
+        }
+        return bytes.get(index) & 0xff;
+    }
+
+    @Override public int mark() {
+        return -1; // the whole buffer is always available
+    }
+
+    @Override public void release(int marker) {
+    }
+
+    @Override public int index() {
+        return position;
+    }
+
+    @Override public void seek(int index) {
+        position = index;
+    }
+
+    @Override public int size() {
+        return size;
+    }
+
+    @Override public String getSourceName() {
+        return name == null || name.isEmpty() ? UNKNOWN_SOURCE_NAME : name;
+    }
+
+    @Override public String getText(Interval interval) {
+        int start = Math.max(interval.a, 0);
+        int stop = Math.min(interval.b, size - 1);
+        if (stop < start) {
+            return "";
+        }
+        byte[] b = new byte[stop - start + 1];
+        bytes.get(start, b);
+        return new String(b, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override public String toString() {
+        return getText(Interval.of(0, size - 1));
+    }
+}
@@ -0,0 +1,61 @@
+package antlr4;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * Presents a {@link CharStream} holding a slice of some larger text as if it
+ * started at {@code offset}, so that tokens lexed from the slice carry their
+ * indices in the whole text.
+ */
+public final class OffsetCharStream implements CharStream {
+
+    private final CharStream slice;
+    private final int offset;
+
+    public OffsetCharStream(CharStream slice, int offset) {
+        this.slice = slice;
+        this.offset = offset;
+    }
+
+    @Override public void consume() {
+        slice.consume();
+    }
+
+    @Override public int LA(int i) {
+        return slice.LA(i);
+    }
+
+    @Override public int mark() {
+        return slice.mark();
+    }
+
+    @Override public void release(int marker) {
+        slice.release(marker);
+    }
+
+    @Override public int index() {
+        return slice.index() + offset;
+    }
+
+    @Override public void seek(int index) {
+        slice.seek(Math.max(0, index - offset));
+    }
+
+    @Override public int size() {
+        return slice.size() + offset;
+    }
+
+    @Override public String getSourceName() {
+        return slice.getSourceName();
+    }
+
+    @Override public String getText(Interval interval) {
+        return slice.getText(Interval.of(interval.a - offset,
+                interval.b - offset));
+    }
+
+    @Override public String toString() {
+        return slice.toString();
+    }
+}
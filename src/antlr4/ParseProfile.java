@@ -0,0 +1,164 @@
+package antlr4;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.BasicBlockStartState;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.PlusBlockStartState;
+import org.antlr.v4.runtime.atn.PlusLoopbackState;
+import org.antlr.v4.runtime.atn.StarBlockStartState;
+import org.antlr.v4.runtime.atn.StarLoopEntryState;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Where a parser spent its time predicting: the statistics ANTLR's
+ * {@code ProfilingATNSimulator} keeps for each decision (a point in the
+ * grammar where the parser chooses between alternatives), along with the
+ * rule the decision is in.
+ * <p>
+ * Only decisions that need the simulator are listed: the generated parser
+ * makes those it can from the next token alone (LL(1) ones) by itself.
+ * <p>
+ * Call {@link #profile(Parser)} before parsing and {@link #collect} after.
+ * The parser's DFA cache is shared with every other parser of the grammar,
+ * so the lookahead of a decision it already cached shows up as DFA rather
+ * than ATN transitions (profiling a warmed-up parser shows the steady
+ * state).
+ */
+public final class ParseProfile {
+
+    /**
+     * The statistics of one decision.
+     *
+     * @param decision             the decision number.
+     * @param rule                 the rule the decision is in.
+     * @param kind                 what the decision chooses between (e.g.
+     *                             {@code alternatives} or
+     *                             {@code (...)* loop}).
+     * @param invocations          how often the decision was made.
+     * @param timeNanos            the time spent predicting it.
+     * @param sllLookahead         the tokens looked at in SLL prediction.
+     * @param sllMaxLookahead      the most tokens looked at for one SLL
+     *                             prediction.
+     * @param llFallbacks          how often SLL prediction hit a conflict,
+     *                             so full-context (LL) prediction was used.
+     * @param llLookahead          the tokens looked at in LL prediction.
+     * @param llMaxLookahead       the most tokens looked at for one LL
+     *                             prediction.
+     * @param atnTransitions       the transitions computed from the ATN
+     *                             (i.e. not yet in the DFA cache).
+     * @param ambiguities          the ambiguities reported.
+     * @param contextSensitivities the predictions SLL would've gotten wrong.
+     * @param errors               the syntax errors found while predicting.
+     */
+    public record Decision(int decision, String rule, String kind,
+                           long invocations, long timeNanos,
+                           long sllLookahead, long sllMaxLookahead,
+                           long llFallbacks, long llLookahead,
+                           long llMaxLookahead, long atnTransitions,
+                           int ambiguities, int contextSensitivities,
+                           int errors) {
+    }
+
+    private final List<Decision> decisions = new ArrayList<>();
+    private boolean reparsed;
+
+    /** Makes {@code parser} profile its decisions (before it parses). */
+    public void profile(Parser parser) {
+        parser.setProfile(true);
+    }
+
+    /**
+     * Adds the decision statistics of the profiled {@code parser} (after it
+     * parsed), which {@code reparsed} the input if its first (SLL) attempt
+     * failed.
+     */
+    public void collect(Parser parser, boolean reparsed) {
+        this.reparsed |= reparsed;
+        var atn = parser.getATN();
+        var rules = parser.getRuleNames();
+        for (DecisionInfo d : parser.getParseInfo().getDecisionInfo()) {
+            if (d.invocations == 0) {
+                continue;
+            }
+            var state = atn.getDecisionState(d.decision);
+            decisions.add(new Decision(d.decision, rules[state.ruleIndex],
+                    kind(state), d.invocations, d.timeInPrediction,
+                    d.SLL_TotalLook, d.SLL_MaxLook, d.LL_Fallback,
+                    d.LL_TotalLook, d.LL_MaxLook,
+                    d.SLL_ATNTransitions + d.LL_ATNTransitions,
+                    d.ambiguities.size(), d.contextSensitivities.size(),
+                    d.errors.size()));
+        }
+        decisions.sort(Comparator.comparingLong(Decision::timeNanos).reversed());
+    }
+
+    private static String kind(ATNState state) {
+        if (state instanceof StarLoopEntryState loop) {
+            // (how ANTLR rewrites a left-recursive rule such as exp)
+            return loop.isPrecedenceDecision ? "precedence loop" : "(...)* loop";
+        }
+        if (state instanceof PlusLoopbackState) {
+            return "(...)+ loop";
+        }
+        if (state instanceof StarBlockStartState) {
+            return "(...)* block";
+        }
+        if (state instanceof PlusBlockStartState) {
+            return "(...)+ block";
+        }
+        if (state instanceof BasicBlockStartState) {
+            return "alternatives";
+        }
+        return state.getClass().getSimpleName();
+    }
+
+    /** Returns the decisions made at least once, most time consuming first. */
+    public List<Decision> decisions() {
+        return decisions;
+    }
+
+    /**
+     * Returns {@code true} if the input was parsed twice (the SLL attempt of
+     * a two-stage parse failed); the statistics then cover both parses.
+     */
+    public boolean reparsed() {
+        return reparsed;
+    }
+
+    /** Returns the total time spent predicting. */
+    public long totalNanos() {
+        long total = 0;
+        for (var d : decisions) {
+            total += d.timeNanos();
+        }
+        return total;
+    }
+
+    /** Renders the decisions as a table (times in ms). */
+    public String render() {
+        var s = new StringBuilder(String.format(
+                "%4s %-10s %-16s %10s %8s %7s %5s %9s %7s %5s %8s %5s %5s %5s%n",
+                "dec", "rule", "kind", "calls", "ms", "sll avg", "max",
+                "fallbacks", "ll avg", "max", "atn", "ambig", "ctx", "err"));
+        for (var d : decisions) {
+            s.append(String.format(
+                    "%4d %-10s %-16s %10d %8.2f %7.2f %5d %9d %7.2f %5d %8d %5d %5d %5d%n",
+                    d.decision(), d.rule(), d.kind(), d.invocations(),
+                    d.timeNanos() / 1e6,
+                    (double) d.sllLookahead() / d.invocations(),
+                    d.sllMaxLookahead(), d.llFallbacks(),
+                    d.llFallbacks() == 0 ? 0 : (double) d.llLookahead() / d.llFallbacks(),
+                    d.llMaxLookahead(), d.atnTransitions(), d.ambiguities(),
+                    d.contextSensitivities(), d.errors()));
+        }
+        s.append(String.format("total %.2fms predicting", totalNanos() / 1e6));
+        if (reparsed) {
+            s.append(" (SLL failed, reparsed with LL)");
+        }
+        return s.toString();
+    }
+}
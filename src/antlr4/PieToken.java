@@ -0,0 +1,37 @@
+package antlr4;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+
+import java.io.Serial;
+
+/**
+ * A token that also carries the interned symbol id of its text (see
+ * {@link InterningTokenFactory}); {@code -1} for tokens that aren't
+ * identifiers.
+ */
+public final class PieToken extends CommonToken {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final int symbol;
+
+    PieToken(Pair<TokenSource, CharStream> source, int type, int channel,
+             int start, int stop, int symbol) {
+        super(source, type, channel, start, stop);
+        this.symbol = symbol;
+    }
+
+    PieToken(int type, String text, int symbol) {
+        super(type, text);
+        this.symbol = symbol;
+    }
+
+    /** Returns the interned symbol id of this token ({@code -1} if none). */
+    public int symbol() {
+        return symbol;
+    }
+}
@@ -0,0 +1,85 @@
+package antlr4;
+
+import edu.psu.ist.analyzer.errors.ErrorLimitReachedException;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+/**
+ * A parse listener (see {@code Parser.addParseListener}) that forwards the
+ * parser's events to {@code delegate} until the first syntax error gets
+ * reported; after that the tree may be malformed, so nothing more is
+ * forwarded.
+ * <p>
+ * Note that during parsing, rule entry events are fired before the parser
+ * knows which labeled alternative it's in, so the delegate only gets the
+ * {@code enterXXX} events of unlabeled rules (all exit events are fired).
+ * <p>
+ * If the delegate runs out of its error budget (throwing an
+ * {@link ErrorLimitReachedException}), it isn't sent any more events, but
+ * the parse goes on: a syntax error further on still has to be found, as
+ * syntax errors are reported instead of the delegate's errors.
+ */
+public final class SyntaxErrorGuardListener implements ParseTreeListener {
+
+    private final ParseTreeListener delegate;
+    private final AntlrErrorReportingListener syntaxErrors;
+
+    /**
+     * Set once the delegate threw: the parser still fires exit events for the
+     * rules it's unwinding (or goes on parsing, if the delegate only ran out
+     * of its error budget), but the delegate is done.
+     */
+    private boolean failed;
+
+    public SyntaxErrorGuardListener(ParseTreeListener delegate,
+                                    AntlrErrorReportingListener syntaxErrors) {
+        this.delegate = delegate;
+        this.syntaxErrors = syntaxErrors;
+    }
+
+    private boolean isOpen() {
+        return !failed && syntaxErrors.errors().isEmpty();
+    }
+
+    @Override public void enterEveryRule(ParserRuleContext ctx) {
+        if (isOpen()) {
+            try {
+                delegate.enterEveryRule(ctx);
+                ctx.enterRule(delegate);
+            } catch (ErrorLimitReachedException e) {
+                failed = true;
+            } catch (RuntimeException e) {
+                failed = true;
+                throw e;
+            }
+        }
+    }
+
+    @Override public void exitEveryRule(ParserRuleContext ctx) {
+        if (isOpen()) {
+            try {
+                ctx.exitRule(delegate);
+                delegate.exitEveryRule(ctx);
+            } catch (ErrorLimitReachedException e) {
+                failed = true;
+            } catch (RuntimeException e) {
+                failed = true;
+                throw e;
+            }
+        }
+    }
+
+    @Override public void visitTerminal(TerminalNode node) {
+        if (isOpen()) {
+            delegate.visitTerminal(node);
+        }
+    }
+
+    @Override public void visitErrorNode(ErrorNode node) {
+        if (isOpen()) {
+            delegate.visitErrorNode(node);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package antlr4;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+
+/**
+ * Passes on the tokens of {@code source}, adding up the time spent getting
+ * them. Lexing is measured while the parser asks for tokens, so it's done
+ * (and its errors are reported) in the same order as without timing.
+ */
+public final class TimedTokenSource implements TokenSource {
+
+    private final TokenSource source;
+
+    /** The wall time spent in the source so far. */
+    private long nanos;
+
+    public TimedTokenSource(TokenSource source) {
+        this.source = source;
+    }
+
+    @Override public Token nextToken() {
+        long start = System.nanoTime();
+        try {
+            return source.nextToken();
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    /** Returns the wall time spent getting tokens so far. */
+    public long nanos() {
+        return nanos;
+    }
+
+    @Override public int getLine() {
+        return source.getLine();
+    }
+
+    @Override public int getCharPositionInLine() {
+        return source.getCharPositionInLine();
+    }
+
+    @Override public CharStream getInputStream() {
+        return source.getInputStream();
+    }
+
+    @Override public String getSourceName() {
+        return source.getSourceName();
+    }
+
+    @Override public void setTokenFactory(TokenFactory<?> factory) {
+        source.setTokenFactory(factory);
+    }
+
+    @Override public TokenFactory<?> getTokenFactory() {
+        return source.getTokenFactory();
+    }
+}
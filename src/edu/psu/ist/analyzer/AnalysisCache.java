@@ -0,0 +1,439 @@
+package edu.psu.ist.analyzer;
+
+import edu.psu.ist.analyzer.errors.ParseError;
+import edu.psu.ist.analyzer.errors.SemanticError;
+import edu.psu.ist.analyzer.utils.Digraph;
+import edu.psu.ist.analyzer.utils.Options;
+import edu.psu.ist.analyzer.utils.Result;
+import edu.psu.ist.analyzer.utils.SourceLocation;
+import edu.psu.ist.analyzer.utils.TextInput;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A persistent cache of analysis outcomes, so unchanged scripts (e.g. in
+ * repeated CI runs) needn't be parsed and checked again.
+ * <p>
+ * Each script's outcome (its errors, or its call graph) is stored in a
+ * file of its own in the cache directory, named by the SHA-256 hash of the
+ * script's bytes, the {@link #ANALYZER_VERSION} and the options that can
+ * change the outcome (the error budget). Entries are in a compact binary
+ * format: error locations are stored as offsets and resolved against the
+ * script when read, and the graph as an adjacency list of vertex indices.
+ * <p>
+ * Entries are read through a memory mapping. They're written to a
+ * temporary file first and then renamed into place, so workers (threads or
+ * processes) sharing a directory never see a partial entry; two workers
+ * storing the same entry write the same bytes. An entry that can't be
+ * read is treated as missing.
+ * <p>
+ * Reading an entry marks it as recently used (its modification time);
+ * {@link #trim()} evicts the least recently used entries once the cache
+ * holds more than its size bound.
+ */
+public final class AnalysisCache {
+
+    /**
+     * The version of the checks and of the call graph; bump it whenever
+     * either changes what is reported for a script, so stale entries are
+     * no longer found.
+     */
+    public static final int ANALYZER_VERSION = 1;
+
+    /** The default size bound, in bytes. */
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    private static final int MAGIC = 0x50494543; // "PIEC"
+    private static final short FORMAT = 1;
+    private static final String SUFFIX = ".pac";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** How old a temporary file must be for {@link #trim()} to remove it. */
+    private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000;
+
+    private final Path dir;
+    private final long maxBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private AnalysisCache(Path dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Opens the cache in {@code dir} (created if needed), which
+     * {@link #trim()} keeps to about {@code maxBytes}.
+     */
+    public static AnalysisCache open(Path dir, long maxBytes) throws IOException {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must be >= 0");
+        }
+        return new AnalysisCache(Files.createDirectories(dir), maxBytes);
+    }
+
+    /**
+     * Returns the outcome of analyzing {@code source} with {@code options}:
+     * the cached one if there is one, otherwise that of a fresh analysis,
+     * which is then stored.
+     */
+    public Result<Digraph<ProcNode>, List<PieErrorMessage>> getOrAnalyze(
+            TextInput source, Options options) {
+        String key = keyOf(source, options);
+        var cached = get(key, source);
+        if (cached != null) {
+            return cached;
+        }
+        var analyzed = new PieAnalyzer().setOptions(options).setScript(source)
+                .analyze();
+        Result<Digraph<ProcNode>, List<PieErrorMessage>> result =
+                analyzed.isError()
+                        ? Result.err(analyzed.getError())
+                        : Result.ok(analyzed.get().graph());
+        put(key, result);
+        return result;
+    }
+
+    /** Returns the key of {@code source}'s outcome under {@code options}. */
+    String keyOf(TextInput source, Options options) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // (every JDK has SHA-256)
+            throw new IllegalStateException(e);
+        }
+        digest.update(ByteBuffer.allocate(10).putInt(ANALYZER_VERSION)
+                .putShort(FORMAT).putInt(options.maxErrors()).flip());
+        // (a mapped script's bytes are hashed as is; the text of an
+        // in-memory one as UTF-8, so an ASCII script has the same key either
+        // way)
+        if (source.isMapped()) {
+            digest.update(source.bytes());
+        }
+        else {
+            digest.update(source.text().getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns the outcome stored under {@code key}, with its error locations
+     * in {@code source}, or {@code null} if there's none (or it can't be
+     * read).
+     */
+    Result<Digraph<ProcNode>, List<PieErrorMessage>> get(String key,
+                                                         TextInput source) {
+        var file = dir.resolve(key + SUFFIX);
+        Result<Digraph<ProcNode>, List<PieErrorMessage>> result;
+        try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            result = read(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()),
+                    source);
+        } catch (IOException e) {
+            // (usually not there yet, or just evicted)
+            result = null;
+        } catch (BufferUnderflowException | IllegalArgumentException
+                 | IndexOutOfBoundsException e) {
+            // truncated, or not an entry of this format
+            result = null;
+            deleteQuietly(file);
+        }
+        if (result == null) {
+            misses.increment();
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(
+                    System.currentTimeMillis()));
+        } catch (IOException e) {
+            // evicted in the meantime; the outcome read is still good
+        }
+        hits.increment();
+        return result;
+    }
+
+    /**
+     * Stores {@code result} under {@code key}. Failing to store it isn't an
+     * error (the outcome is just analyzed again next time).
+     */
+    void put(String key, Result<Digraph<ProcNode>, List<PieErrorMessage>> result) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(dir, key, TEMP_SUFFIX);
+            Files.write(temp, write(result));
+            Files.move(temp, dir.resolve(key + SUFFIX),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache holds at most
+     * its size bound, and removes temporary files left by workers that
+     * died while writing. As with storing, failures are ignored.
+     */
+    public void trim() {
+        record Stored(Path file, long size, long lastUsed) {
+        }
+        List<Stored> entries = new ArrayList<>();
+        long total = 0;
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (var file : files) {
+                String name = file.getFileName().toString();
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    continue;
+                }
+                long lastUsed = attrs.lastModifiedTime().toMillis();
+                if (name.endsWith(SUFFIX)) {
+                    entries.add(new Stored(file, attrs.size(), lastUsed));
+                    total += attrs.size();
+                }
+                else if (name.endsWith(TEMP_SUFFIX)
+                        && now - lastUsed > STALE_TEMP_MILLIS) {
+                    deleteQuietly(file);
+                }
+            }
+        } catch (IOException e) {
+            return;
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        entries.sort(Comparator.comparingLong(Stored::lastUsed));
+        for (var e : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            deleteQuietly(e.file());
+            total -= e.size();
+        }
+    }
+
+    /** Returns the number of outcomes found in the cache. */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /** Returns the number of outcomes that had to be analyzed. */
+    public long misses() {
+        return misses.sum();
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // another worker's trim got to it, or it's in use
+        }
+    }
+
+    // the entry format (big-endian): magic, format, then either
+    //   0, vertex count, vertex names, each vertex's neighbor indices
+    //   1, error count, each error's tag, span and fields
+    // strings are written as a byte count followed by UTF-8 bytes
+
+    private static final byte GRAPH = 0;
+    private static final byte ERRORS = 1;
+
+    private static final byte PARSE_ERROR = 0;
+    private static final byte DUP_SYMBOL = 1;
+    private static final byte NO_SUCH_SYMBOL = 2;
+    private static final byte TYPE_MISMATCH = 3;
+    private static final byte ARG_COUNT_MISMATCH = 4;
+    private static final byte RETURN_COUNT = 5;
+
+    private static final PieType[] TYPES = PieType.values();
+    private static final SymbolKind[] KINDS = SymbolKind.values();
+
+    static byte[] write(Result<Digraph<ProcNode>, List<PieErrorMessage>> result)
+            throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT);
+        if (result.isOk()) {
+            var g = result.get();
+            Map<ProcNode, Integer> index = new HashMap<>();
+            out.writeByte(GRAPH);
+            out.writeInt(g.getVertices().size());
+            for (var v : g.getVertices()) {
+                index.put(v, index.size());
+                writeString(out, v.name());
+            }
+            for (var v : g.getVertices()) {
+                var neighbors = g.neighbors(v);
+                out.writeInt(neighbors.size());
+                for (var n : neighbors) {
+                    out.writeInt(index.get(n));
+                }
+            }
+        }
+        else {
+            out.writeByte(ERRORS);
+            out.writeInt(result.getError().size());
+            for (var e : result.getError()) {
+                writeError(out, e);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeError(DataOutputStream out, PieErrorMessage e)
+            throws IOException {
+        switch (e) {
+            case ParseError p -> {
+                writeHeader(out, PARSE_ERROR, p.loc());
+                writeString(out, p.msg());
+                out.writeInt(p.line());
+                out.writeInt(p.col());
+            }
+            case SemanticError.DupSymbol d -> {
+                writeHeader(out, DUP_SYMBOL, d.loc());
+                writeString(out, d.dupName());
+                out.writeByte(d.k().ordinal());
+            }
+            case SemanticError.NoSuchSymbol n -> {
+                writeHeader(out, NO_SUCH_SYMBOL, n.loc());
+                writeString(out, n.referencedSymbol());
+            }
+            case SemanticError.TypeMismatch t -> {
+                writeHeader(out, TYPE_MISMATCH, t.loc());
+                out.writeByte(t.expected().ordinal());
+                out.writeByte(t.actual().ordinal());
+            }
+            case SemanticError.ArgCountMismatch a -> {
+                writeHeader(out, ARG_COUNT_MISMATCH, a.loc());
+                out.writeInt(a.numArgsExpected());
+                out.writeInt(a.numProvided());
+            }
+            case SemanticError.TooFewOrTooManyReturns r -> {
+                writeHeader(out, RETURN_COUNT, r.loc());
+                out.writeInt(r.numOfReturnsExpected());
+            }
+            default -> throw new IllegalArgumentException(
+                    "can't cache a " + e.getClass().getSimpleName());
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, byte tag,
+                                    SourceLocation loc) throws IOException {
+        out.writeByte(tag);
+        out.writeInt(loc.startOffset());
+        out.writeInt(loc.endOffset());
+    }
+
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    /**
+     * Reads the outcome in {@code in}, resolving its error locations in
+     * {@code source}.
+     *
+     * @throws IllegalArgumentException  if {@code in} isn't an entry of this
+     *                                   format.
+     * @throws BufferUnderflowException if {@code in} is truncated.
+     */
+    static Result<Digraph<ProcNode>, List<PieErrorMessage>> read(
+            ByteBuffer in, TextInput source) {
+        if (in.getInt() != MAGIC || in.getShort() != FORMAT) {
+            throw new IllegalArgumentException("not a cache entry");
+        }
+        byte outcome = in.get();
+        if (outcome == GRAPH) {
+            var vertices = new ProcNode[count(in)];
+            var g = new Digraph<ProcNode>();
+            for (int i = 0; i < vertices.length; i++) {
+                vertices[i] = new ProcNode(readString(in));
+                g.add(vertices[i]);
+            }
+            for (var v : vertices) {
+                for (int n = count(in); n > 0; n--) {
+                    g.add(v, vertices[in.getInt()]);
+                }
+            }
+            return Result.ok(g);
+        }
+        if (outcome != ERRORS) {
+            throw new IllegalArgumentException("bad outcome: " + outcome);
+        }
+        List<PieErrorMessage> errors = new ArrayList<>();
+        for (int n = count(in); n > 0; n--) {
+            errors.add(readError(in, source));
+        }
+        return Result.err(errors);
+    }
+
+    private static PieErrorMessage readError(ByteBuffer in, TextInput source) {
+        byte tag = in.get();
+        int start = in.getInt();
+        int end = in.getInt();
+        if (end > source.length()) {
+            throw new IllegalArgumentException("span out of bounds");
+        }
+        var loc = new SourceLocation(source, start, end);
+        return switch (tag) {
+            case PARSE_ERROR -> new ParseError(readString(in), in.getInt(),
+                    in.getInt(), loc);
+            case DUP_SYMBOL -> new SemanticError.DupSymbol(readString(in),
+                    KINDS[in.get()], loc);
+            case NO_SUCH_SYMBOL -> new SemanticError.NoSuchSymbol(
+                    readString(in), loc);
+            case TYPE_MISMATCH -> new SemanticError.TypeMismatch(
+                    TYPES[in.get()], TYPES[in.get()], loc);
+            case ARG_COUNT_MISMATCH -> new SemanticError.ArgCountMismatch(
+                    in.getInt(), in.getInt(), loc);
+            case RETURN_COUNT -> new SemanticError.TooFewOrTooManyReturns(
+                    in.getInt(), loc);
+            default -> throw new IllegalArgumentException("bad tag: " + tag);
+        };
+    }
+
+    /** Reads a count, which can't be more than the bytes left. */
+    private static int count(ByteBuffer in) {
+        int n = in.getInt();
+        if (n < 0 || n > in.remaining()) {
+            throw new IllegalArgumentException("bad count: " + n);
+        }
+        return n;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] b = new byte[count(in)];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,294 @@
+package edu.psu.ist.analyzer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Where the time went while analyzing one script: the wall time and the
+ * bytes allocated (by the analyzing thread) in each {@link Phase}, along
+ * with the script's token, node and error counts.
+ * <p>
+ * Metrics are only collected when {@link
+ * edu.psu.ist.analyzer.utils.Options#metrics()} is set or a JFR recording
+ * has the {@code edu.psu.ist.analyzer.Phase} or
+ * {@code edu.psu.ist.analyzer.Script} event enabled; each phase is then
+ * also committed as a {@code Phase} event, and each analysis as a
+ * {@code Script} event. Otherwise the analyzer doesn't create an instance
+ * at all.
+ */
+public final class AnalysisMetrics {
+
+    /** The phases of analyzing a script, in the order they run. */
+    public enum Phase {
+
+        /**
+         * Turning the script's text into tokens (done as the parser asks
+         * for them: its allocations are counted under {@link #Parse}).
+         */
+        Lex,
+
+        /**
+         * Building the parse tree (when the error budget is limited, this
+         * includes checking the tree, which is done while it's built).
+         */
+        Parse,
+
+        /**
+         * Checking the parse tree and lowering it to a
+         * {@link edu.psu.ist.analyzer.ast.PieAst} in the same walk (in
+         * incremental mode, this is all of lexing, parsing, checking and
+         * lowering the changed definitions).
+         */
+        Check,
+
+        /**
+         * Lowering a parse tree that was checked on its own (while it was
+         * built, or in parallel).
+         */
+        Lower,
+
+        /** Folding constants in the checked tree. */
+        Simplify,
+
+        /** Building (or updating) the call graph. */
+        Graph,
+
+        /** Writing the call graph out (as png, DOT or JSON). */
+        Export
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final String script;
+    private final long[] nanos = new long[PHASES.length];
+    private final long[] allocated = new long[PHASES.length];
+    private int tokens;
+    private int nodes;
+    private int errors;
+
+    /** When the phase being measured started. */
+    private long startNanos;
+    private long startAllocated;
+    private PhaseEvent event;
+
+    AnalysisMetrics(String script) {
+        this.script = script;
+    }
+
+    /**
+     * Returns new metrics for the analysis of {@code script} if they're
+     * asked for ({@code always}) or recorded by JFR, {@code null} otherwise.
+     */
+    static AnalysisMetrics startIfEnabled(String script, boolean always) {
+        // (setting up the event classes takes a few hundred ms, so they're
+        // left alone until JFR itself was started)
+        if (always || FlightRecorder.isInitialized()
+                && (new PhaseEvent().isEnabled() || new ScriptEvent().isEnabled())) {
+            return new AnalysisMetrics(script);
+        }
+        return null;
+    }
+
+    /** Starts measuring a phase (phases don't nest). */
+    void begin() {
+        event = new PhaseEvent();
+        event.begin();
+        startAllocated = Allocation.currentThread();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Ends the phase started by the last {@link #begin()} as {@code phase}
+     * (nothing happens if that phase was already ended).
+     */
+    void end(Phase phase) {
+        if (event == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        long bytes = Allocation.currentThread() - startAllocated;
+        nanos[phase.ordinal()] += elapsed;
+        allocated[phase.ordinal()] += bytes;
+        event.end();
+        if (event.shouldCommit()) {
+            event.script = script;
+            event.phase = phase.name();
+            event.allocated = bytes;
+            event.commit();
+        }
+        event = null;
+    }
+
+    /**
+     * Ends the phase started by the last {@link #begin()} as {@code phase},
+     * except for {@code partNanos} of it spent in {@code part}, which ran
+     * interleaved with it (the phase's event still covers both).
+     */
+    void end(Phase phase, Phase part, long partNanos) {
+        if (event == null) {
+            return;
+        }
+        end(phase);
+        nanos[phase.ordinal()] -= partNanos;
+        nanos[part.ordinal()] += partNanos;
+    }
+
+    /** Records the counts of a finished analysis and commits its event. */
+    void finish(int nodes, int errors) {
+        this.nodes = nodes;
+        this.errors = errors;
+        var e = new ScriptEvent();
+        if (e.isEnabled()) {
+            e.script = script;
+            e.analysisTime = totalNanos();
+            e.tokens = tokens;
+            e.nodes = nodes;
+            e.errors = errors;
+            e.allocated = totalAllocatedBytes();
+            e.commit();
+        }
+    }
+
+    /** Records the number of tokens the script was lexed into. */
+    void setTokens(int tokens) {
+        this.tokens = tokens;
+    }
+
+    /** Returns the name of the analyzed script. */
+    public String script() {
+        return script;
+    }
+
+    /** Returns the wall time spent in {@code phase} (0 if it didn't run). */
+    public long nanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * Returns the bytes allocated in {@code phase} (0 if it didn't run, or
+     * if the JVM can't measure allocations).
+     */
+    public long allocatedBytes(Phase phase) {
+        return allocated[phase.ordinal()];
+    }
+
+    /** Returns the wall time spent in all phases. */
+    public long totalNanos() {
+        long total = 0;
+        for (long n : nanos) {
+            total += n;
+        }
+        return total;
+    }
+
+    /** Returns the bytes allocated in all phases. */
+    public long totalAllocatedBytes() {
+        long total = 0;
+        for (long n : allocated) {
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of tokens (including the end of file) lexed
+     * ({@code 0} in incremental mode, which only lexes changed definitions).
+     */
+    public int tokens() {
+        return tokens;
+    }
+
+    /** Returns the size of the checked tree ({@code 0} if there were errors). */
+    public int nodes() {
+        return nodes;
+    }
+
+    /** Returns the number of errors found. */
+    public int errors() {
+        return errors;
+    }
+
+    @Override public String toString() {
+        var s = new StringBuilder(script).append(':');
+        for (var phase : PHASES) {
+            if (nanos[phase.ordinal()] > 0) {
+                s.append(' ').append(phase).append('=')
+                        .append(String.format("%.2fms", nanos(phase) / 1e6));
+            }
+        }
+        return s.append(" tokens=").append(tokens)
+                .append(" nodes=").append(nodes)
+                .append(" errors=").append(errors)
+                .append(" allocated=").append(totalAllocatedBytes())
+                .toString();
+    }
+
+    /** Reads the calling thread's allocation counter (loaded on first use). */
+    private static final class Allocation {
+
+        private static final com.sun.management.ThreadMXBean THREADS =
+                ManagementFactory.getThreadMXBean()
+                        instanceof com.sun.management.ThreadMXBean t
+                        && t.isThreadAllocatedMemorySupported()
+                        && t.isThreadAllocatedMemoryEnabled() ? t : null;
+
+        static long currentThread() {
+            return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+        }
+    }
+
+    @Name("edu.psu.ist.analyzer.Phase")
+    @Label("Analyzer Phase")
+    @Description("One phase of analyzing a Piethon script")
+    @Category({"Piethon", "Analyzer"})
+    @StackTrace(false)
+    static final class PhaseEvent extends Event {
+
+        @Label("Script")
+        String script;
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    @Name("edu.psu.ist.analyzer.Script")
+    @Label("Script Analyzed")
+    @Description("The totals of analyzing a Piethon script")
+    @Category({"Piethon", "Analyzer"})
+    @StackTrace(false)
+    static final class ScriptEvent extends Event {
+
+        @Label("Script")
+        String script;
+
+        @Label("Analysis Time")
+        @Timespan
+        long analysisTime;
+
+        @Label("Tokens")
+        int tokens;
+
+        @Label("Nodes")
+        int nodes;
+
+        @Label("Errors")
+        int errors;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+}
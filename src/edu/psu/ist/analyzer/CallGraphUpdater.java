@@ -0,0 +1,206 @@
+package edu.psu.ist.analyzer;
+
+import edu.psu.ist.analyzer.ast.AstKind;
+import edu.psu.ist.analyzer.ast.PieAst;
+import edu.psu.ist.analyzer.utils.Digraph;
+import edu.psu.ist.analyzer.utils.GraphDiff;
+import edu.psu.ist.analyzer.utils.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the call graph of successive versions of a script up to date,
+ * applying only what changed between versions to one {@link Digraph}.
+ * <p>
+ * Each procedure's distinct callees are remembered between versions. Since
+ * calls are statements, finding a procedure's callees only looks at its
+ * statements (never into expressions); when the callees of each definition
+ * are already known (see {@link #update(PieAst, List)}), a definition
+ * whose callees are the very same array as last version's isn't looked at
+ * at all. Only the procedures whose callees changed touch the graph: their
+ * added and removed calls are applied with {@link Digraph#add(Object, Object)} and
+ * {@link Digraph#remove(Object, Object)}. The graph has the same vertices
+ * and edges as one built from scratch (see
+ * {@link PieAnalyzer#buildGraph(PieAst)}), though new procedures come after
+ * the existing ones instead of in definition order.
+ * <p>
+ * All versions must be lowered with the same {@link
+ * edu.psu.ist.analyzer.utils.SymbolInterner}, as procedures are tracked by
+ * symbol id.
+ */
+final class CallGraphUpdater {
+
+    private final Digraph<ProcNode> graph = new Digraph<>();
+
+    /** The vertex of each procedure (by symbol id), {@code null} if none. */
+    private ProcNode[] procs = new ProcNode[64];
+
+    /** The distinct callees of each procedure (by symbol id), in call order. */
+    private int[][] callees = new int[64][];
+
+    /** The procedures of the previous version (symbol ids, in order). */
+    private int[] defined = new int[0];
+
+    /** The version in which each procedure (by symbol id) was last seen. */
+    private int[] seenIn = new int[64];
+    private int version;
+
+    /** Marks procedures (by symbol id) as members of the set being looked at. */
+    private int[] marks = new int[64];
+    private int mark;
+
+    /** Returns the call graph of the latest version (updated in place). */
+    Digraph<ProcNode> graph() {
+        return graph;
+    }
+
+    /**
+     * Updates the graph to the call graph of {@code ast} (a checked version
+     * of the script) and returns what changed.
+     */
+    GraphDiff<ProcNode> update(PieAst ast) {
+        List<int[]> defCallees = new ArrayList<>();
+        int root = PieAst.ROOT;
+        for (int def = root + 1; def < ast.end(root); def = ast.end(def)) {
+            defCallees.add(calleesOf(ast, def));
+        }
+        return update(ast, defCallees);
+    }
+
+    /**
+     * Like {@link #update(PieAst)}, given the callees (see
+     * {@link #calleesOf}) of each of {@code ast}'s definitions, in order.
+     * Reusing the arrays of unchanged definitions makes the update take
+     * time proportional to the number of definitions, not their size.
+     */
+    GraphDiff<ProcNode> update(PieAst ast, List<int[]> defCallees) {
+        version++;
+        ensureSymbols(ast.symbols().size());
+        List<ProcNode> addedVertices = new ArrayList<>();
+        List<ProcNode> removedVertices = new ArrayList<>();
+        List<Pair<ProcNode, ProcNode>> addedEdges = new ArrayList<>();
+        List<Pair<ProcNode, ProcNode>> removedEdges = new ArrayList<>();
+
+        int root = PieAst.ROOT;
+        int[] nowDefined = new int[ast.childCount(root)];
+        int i = 0;
+        for (int def = root + 1; def < ast.end(root); def = ast.end(def)) {
+            int sym = ast.symbol(def);
+            nowDefined[i++] = sym;
+            seenIn[sym] = version;
+            if (procs[sym] == null) {
+                procs[sym] = new ProcNode(ast.name(def));
+                graph.add(procs[sym]);
+                addedVertices.add(procs[sym]);
+            }
+            int[] now = defCallees.get(i - 1);
+            int[] before = callees[sym];
+            callees[sym] = now;
+            if (before == now || before != null && Arrays.equals(before, now)) {
+                continue;
+            }
+            var caller = procs[sym];
+            if (before != null) {
+                markAll(now);
+                for (int callee : before) {
+                    if (marks[callee] != mark) {
+                        graph.remove(caller, procs[callee]);
+                        removedEdges.add(new Pair<>(caller, procs[callee]));
+                    }
+                }
+                markAll(before);
+            }
+            for (int callee : now) {
+                if (before == null || marks[callee] != mark) {
+                    graph.add(caller, procs[callee]);
+                    addedEdges.add(new Pair<>(caller, procs[callee]));
+                }
+            }
+        }
+
+        for (int sym : defined) {
+            if (seenIn[sym] == version) {
+                continue;
+            }
+            // its callers changed too (a checked script can't call it now),
+            // so their calls to it were removed above, or go with them
+            var gone = procs[sym];
+            for (int callee : callees[sym]) {
+                removedEdges.add(new Pair<>(gone, procs[callee]));
+            }
+            graph.removeVertexWithoutInEdges(gone);
+            removedVertices.add(gone);
+        }
+        for (int sym : defined) {
+            if (seenIn[sym] != version) {
+                procs[sym] = null;
+                callees[sym] = null;
+            }
+        }
+        defined = nowDefined;
+        // (not frozen here: that would take time proportional to the graph)
+        return new GraphDiff<>(addedVertices, removedVertices, addedEdges,
+                removedEdges);
+    }
+
+    /**
+     * Returns the distinct procedures (symbol ids) the definition
+     * {@code def} of {@code ast} calls, in call order.
+     */
+    static int[] calleesOf(PieAst ast, int def) {
+        int[] calls = new int[4];
+        int count = 0;
+        Set<Integer> seen = null;
+        for (int n = def + 1; n < ast.end(def); n = ast.end(n)) {
+            if (ast.kind(n) != AstKind.Call) {
+                continue;
+            }
+            int sym = ast.symbol(n);
+            // (most procedures call few others: scan those, hash the rest)
+            if (seen == null && count == 8) {
+                seen = new HashSet<>();
+                for (int i = 0; i < count; i++) {
+                    seen.add(calls[i]);
+                }
+            }
+            if (seen != null ? !seen.add(sym) : contains(calls, count, sym)) {
+                continue;
+            }
+            if (count == calls.length) {
+                calls = Arrays.copyOf(calls, count * 2);
+            }
+            calls[count++] = sym;
+        }
+        return Arrays.copyOf(calls, count);
+    }
+
+    private static boolean contains(int[] symbols, int count, int sym) {
+        for (int i = 0; i < count; i++) {
+            if (symbols[i] == sym) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void markAll(int[] symbols) {
+        mark++;
+        for (int sym : symbols) {
+            marks[sym] = mark;
+        }
+    }
+
+    private void ensureSymbols(int count) {
+        if (count > procs.length) {
+            int n = Math.max(count, procs.length * 2);
+            procs = Arrays.copyOf(procs, n);
+            callees = Arrays.copyOf(callees, n);
+            seenIn = Arrays.copyOf(seenIn, n);
+            marks = Arrays.copyOf(marks, n);
+        }
+    }
+}
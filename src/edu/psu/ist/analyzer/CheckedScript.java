@@ -0,0 +1,17 @@
+package edu.psu.ist.analyzer;
+
+import edu.psu.ist.analyzer.ast.PieAst;
+import edu.psu.ist.analyzer.utils.Digraph;
+
+/**
+ * A script that passed all checks, along with the call graph built from it.
+ *
+ * @param ast             the script's compact syntax tree (simplified, if
+ *                        {@link edu.psu.ist.analyzer.utils.Options#simplify()}).
+ * @param graph           the script's call graph.
+ * @param eliminatedNodes how many nodes simplifying removed from the tree
+ *                        ({@code 0} if it wasn't simplified).
+ */
+public record CheckedScript(PieAst ast, Digraph<ProcNode> graph,
+                            int eliminatedNodes) {
+}
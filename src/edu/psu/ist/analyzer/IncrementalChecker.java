@@ -0,0 +1,477 @@
+package edu.psu.ist.analyzer;
+
+import antlr4.AntlrErrorReportingListener;
+import antlr4.IterativeTreeWalker;
+import antlr4.OffsetCharStream;
+import antlr4.edu.psu.ist.parser.PiethonLexer;
+import antlr4.edu.psu.ist.parser.PiethonParser;
+import edu.psu.ist.analyzer.ast.AstBuilder;
+import edu.psu.ist.analyzer.ast.PieAst;
+import edu.psu.ist.analyzer.entry.SymbolTableEntry;
+import edu.psu.ist.analyzer.errors.ErrorLimitReachedException;
+import edu.psu.ist.analyzer.errors.ParseError;
+import edu.psu.ist.analyzer.errors.SemanticError;
+import edu.psu.ist.analyzer.utils.Options;
+import edu.psu.ist.analyzer.utils.Result;
+import edu.psu.ist.analyzer.utils.ScopedSymbolTable;
+import edu.psu.ist.analyzer.utils.SymbolInterner;
+import edu.psu.ist.analyzer.utils.TextInput;
+import org.antlr.v4.runtime.CharStreams;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks successive versions of a script, reparsing and rechecking only the
+ * procedure definitions whose text changed since the previous version.
+ * <p>
+ * The script is split into one chunk per {@code def} (plus whatever comes
+ * before the first one). Chunks are cached by a hash of their text: an
+ * unchanged chunk reuses its lowered tree (see {@link AstBuilder#lowerDef})
+ * and, as long as the signatures of the procedures it looked up are the
+ * same as last time, its check result. So a def is only rechecked when it
+ * changed or when the signature of a procedure it calls (or shares its name
+ * with) changed, and the script's tree is put together from the cached ones
+ * without walking them.
+ * <p>
+ * Parse trees aren't cached (they're much bigger than the lowered trees): a
+ * chunk's tree is dropped once {@link #check} returns, and an unchanged
+ * chunk that has to be rechecked is parsed again.
+ * <p>
+ * Error locations of reused chunks are shifted to where the chunk now
+ * starts. Syntax errors are reported per chunk, so their wording can differ
+ * slightly from a full parse (e.g. a missing {@code end} is reported at the
+ * end of the chunk).
+ */
+final class IncrementalChecker {
+
+    /** The chunks seen in the previous version, by content hash. */
+    private Map<Long, List<DefUnit>> cache = new HashMap<>();
+
+    /** The options used to parse changed chunks. */
+    private final Options options;
+
+    /**
+     * Interns the identifiers of every chunk parsed (cached check results
+     * refer to procedures by symbol id, so this must outlive the cache).
+     */
+    private final SymbolInterner symbols;
+
+    /** The callees of each def of the tree last returned by {@link #check}. */
+    private List<int[]> callees = List.of();
+
+    IncrementalChecker(Options options, SymbolInterner symbols) {
+        this.options = options;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Checks {@code source}, returning its lowered syntax tree if it's
+     * error free (or the errors found).
+     */
+    Result<PieAst, List<PieErrorMessage>> check(TextInput source) {
+        String text = source.text();
+        Map<Long, List<DefUnit>> nextCache = new HashMap<>();
+        List<DefUnit> units = new ArrayList<>();
+        List<PieErrorMessage> syntaxErrors = new ArrayList<>();
+        // the parse trees of the chunks that changed
+        Map<DefUnit, PiethonParser.DefContext> trees = new IdentityHashMap<>();
+
+        for (Chunk c : split(text)) {
+            long hash = hash(text, c.start(), c.end());
+            DefUnit u = takeCached(hash, text, c);
+            if (u == null) {
+                u = parse(source, c, trees);
+            }
+            u.line = c.line();
+            u.start = c.start();
+            nextCache.computeIfAbsent(hash, k -> new ArrayList<>()).add(u);
+            units.add(u);
+            syntaxErrors.addAll(relocate(u.syntaxErrors, source,
+                    u.line - u.parsedLine, u.start - u.parsedStart));
+            if (isOverBudget(syntaxErrors)) {
+                break;
+            }
+        }
+        // anything not reused by this version gets dropped
+        cache = nextCache;
+
+        if (!syntaxErrors.isEmpty()) {
+            return Result.err(withinBudget(syntaxErrors));
+        }
+
+        var procedures = new ScopedSymbolTable<SymbolTableEntry.ProcDefEntry>(units.size());
+        List<PieErrorMessage> errors = new ArrayList<>();
+        for (DefUnit u : units) {
+            if (u.ast == null) {
+                continue;
+            }
+            if (u.check != null && u.check.isValidIn(procedures)) {
+                if (u.check.defined()) {
+                    procedures.define(u.check.symbol(), u.check.proc());
+                }
+            }
+            else {
+                var def = trees.get(u);
+                if (def == null) {
+                    def = reparse(source, u);
+                }
+                var l = new PieScriptCheckingListener(source, symbols,
+                        procedures).setMaxErrors(options.maxErrors());
+                try {
+                    IterativeTreeWalker.DEFAULT.walk(l, def);
+                } catch (ErrorLimitReachedException e) {
+                    // this def alone used up the budget; it's rechecked
+                    // (from scratch) next time
+                    u.check = null;
+                    errors.addAll(relocate(e.errors(), source,
+                            u.line - u.parsedLine, u.start - u.parsedStart));
+                    break;
+                }
+                var proc = l.lastProcedure();
+                int symbol = symbols.intern(proc.name());
+                u.check = new CheckState(l.procedureLookups(),
+                        List.copyOf(l.errors()), proc, symbol,
+                        procedures.lookup(symbol) == proc);
+            }
+            errors.addAll(relocate(u.check.errors(), source,
+                    u.line - u.parsedLine, u.start - u.parsedStart));
+            if (isOverBudget(errors)) {
+                break;
+            }
+        }
+        if (!errors.isEmpty()) {
+            return Result.err(withinBudget(errors));
+        }
+        return Result.ok(lower(source, units));
+    }
+
+    /**
+     * Returns the callees (see {@link CallGraphUpdater#calleesOf}) of each
+     * def of the tree last returned by {@link #check}, in order. The arrays
+     * of defs that didn't change are the same as the time before.
+     */
+    List<int[]> callees() {
+        return callees;
+    }
+
+    /**
+     * Puts the lowered defs of {@code units} together into one ast,
+     * shifting the locations of reused defs to where they are in
+     * {@code source}.
+     */
+    private PieAst lower(TextInput source, List<DefUnit> units) {
+        List<PieAst> defs = new ArrayList<>(units.size());
+        List<int[]> defCallees = new ArrayList<>(units.size());
+        int[] deltas = new int[units.size()];
+        for (DefUnit u : units) {
+            if (u.ast != null) {
+                deltas[defs.size()] = u.start - u.parsedStart;
+                defs.add(u.ast);
+                defCallees.add(u.callees);
+            }
+        }
+        callees = defCallees;
+        return PieAst.concat(source, symbols, defs, deltas);
+    }
+
+    /** Returns {@code true} if {@code errors} uses up the error budget. */
+    private boolean isOverBudget(List<PieErrorMessage> errors) {
+        return options.maxErrors() > 0 && errors.size() >= options.maxErrors();
+    }
+
+    /** Returns (at most) the first {@link Options#maxErrors()} of {@code errors}. */
+    private List<PieErrorMessage> withinBudget(List<PieErrorMessage> errors) {
+        return isOverBudget(errors)
+                ? errors.subList(0, options.maxErrors())
+                : errors;
+    }
+
+    /**
+     * Removes and returns a cached unit for the chunk {@code c} of
+     * {@code text} (or {@code null} if there isn't one). Removing it ensures
+     * two identical chunks in one version never share a unit.
+     */
+    private DefUnit takeCached(long hash, String text, Chunk c) {
+        var candidates = cache.get(hash);
+        if (candidates == null) {
+            return null;
+        }
+        for (int i = 0; i < candidates.size(); i++) {
+            var u = candidates.get(i);
+            if (u.col == c.col() && u.text.length() == c.end() - c.start() &&
+                    text.regionMatches(c.start(), u.text, 0, u.text.length())) {
+                return candidates.remove(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses and lowers the chunk {@code c} of {@code source} into a new
+     * unit, putting its definition's parse tree (if any) into {@code trees}.
+     */
+    private DefUnit parse(TextInput source, Chunk c,
+                          Map<DefUnit, PiethonParser.DefContext> trees) {
+        String chunkText = source.text().substring(c.start(), c.end());
+        var parsed = parse(source, chunkText, c.start(), c.line(), c.col());
+        var u = new DefUnit(chunkText, c.col(), c.line(), c.start());
+        if (parsed.isError()) {
+            u.syntaxErrors = List.copyOf(parsed.getError());
+        }
+        else {
+            u.syntaxErrors = List.of();
+            var defs = parsed.get().def();
+            if (!defs.isEmpty()) {
+                trees.put(u, defs.get(0));
+                u.ast = AstBuilder.lowerDef(defs.get(0), symbols);
+                u.callees = CallGraphUpdater.calleesOf(u.ast, PieAst.ROOT);
+            }
+        }
+        return u;
+    }
+
+    /** Parses the (error free) definition of {@code u} again. */
+    private PiethonParser.DefContext reparse(TextInput source, DefUnit u) {
+        return parse(source, u.text, u.parsedStart, u.parsedLine, u.col)
+                .get().def().get(0);
+    }
+
+    private Result<PiethonParser.ScriptContext, List<PieErrorMessage>> parse(
+            TextInput source, String chunkText, int start, int line, int col) {
+        // each chunk gets the whole budget, so its cached errors are never
+        // fewer than a later version might need
+        var errorListener = new AntlrErrorReportingListener(source,
+                options.maxErrors());
+        // so tokens carry their position in the whole script
+        var lexer = new PiethonLexer(new OffsetCharStream(
+                CharStreams.fromString(chunkText, source.name()), start));
+        lexer.setLine(line);
+        lexer.setCharPositionInLine(col);
+        return PieAnalyzer.parse(lexer, errorListener, options, symbols);
+    }
+
+    /**
+     * Splits {@code text} into chunks starting at each {@code def} keyword,
+     * skipping comments and string literals the same way the lexer does.
+     */
+    static List<Chunk> split(String text) {
+        List<Chunk> chunks = new ArrayList<>();
+        int n = text.length();
+        int line = 1;
+        int lineStart = 0;
+        int chunkStart = 0, chunkLine = 1, chunkCol = 0;
+
+        int i = 0;
+        while (i < n) {
+            char ch = text.charAt(i);
+            if (ch == '\n') {
+                line++;
+                lineStart = ++i;
+            }
+            else if (ch == '/' && i + 1 < n && text.charAt(i + 1) == '/') {
+                while (i < n && text.charAt(i) != '\n' && text.charAt(i) != '\r') {
+                    i++;
+                }
+            }
+            else if (ch == '/' && i + 1 < n && text.charAt(i + 1) == '*') {
+                int close = text.indexOf("*/", i + 2);
+                if (close < 0) {
+                    i++;
+                    continue;
+                }
+                for (int j = i + 2; j < close; j++) {
+                    if (text.charAt(j) == '\n') {
+                        line++;
+                        lineStart = j + 1;
+                    }
+                }
+                i = close + 2;
+            }
+            else if (ch == '"') {
+                int j = i + 1;
+                while (j < n && text.charAt(j) != '"') {
+                    j += text.charAt(j) == '\\' ? 2 : 1;
+                }
+                if (j >= n) {
+                    i++;
+                    continue;
+                }
+                for (int k = i + 1; k < j; k++) {
+                    if (text.charAt(k) == '\n') {
+                        line++;
+                        lineStart = k + 1;
+                    }
+                }
+                i = j + 1;
+            }
+            else if (Character.isDigit(ch)) {
+                while (i < n && Character.isDigit(text.charAt(i))) {
+                    i++;
+                }
+            }
+            else if (ch == '_' || (ch < 128 && Character.isLetter(ch))) {
+                int j = i + 1;
+                while (j < n && isIdPart(text.charAt(j))) {
+                    j++;
+                }
+                if (j - i == 3 && text.startsWith("def", i) && i > chunkStart) {
+                    chunks.add(new Chunk(chunkStart, i, chunkLine, chunkCol));
+                    chunkStart = i;
+                    chunkLine = line;
+                    chunkCol = i - lineStart;
+                }
+                i = j;
+            }
+            else {
+                i++;
+            }
+        }
+        if (n > chunkStart || chunks.isEmpty()) {
+            chunks.add(new Chunk(chunkStart, n, chunkLine, chunkCol));
+        }
+        return chunks;
+    }
+
+    private static boolean isIdPart(char ch) {
+        return ch == '_' || (ch < 128 && Character.isLetterOrDigit(ch));
+    }
+
+    /** 64-bit FNV-1a hash of {@code text[start, end)}. */
+    private static long hash(String text, int start, int end) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Returns {@code errors} with each location moved by {@code offsetDelta}
+     * chars ({@code lineDelta} lines) and pointed at {@code source}.
+     */
+    static List<PieErrorMessage> relocate(List<PieErrorMessage> errors,
+                                          TextInput source, int lineDelta,
+                                          int offsetDelta) {
+        if (errors.isEmpty()) {
+            return errors;
+        }
+        List<PieErrorMessage> result = new ArrayList<>(errors.size());
+        for (var e : errors) {
+            var sl = e.loc().shift(source, offsetDelta);
+            result.add(switch (e) {
+                case ParseError p -> new ParseError(
+                        AntlrErrorReportingListener.withPosition(p.msg(),
+                                p.line() + lineDelta, p.col()),
+                        p.line() + lineDelta, p.col(), sl);
+                case SemanticError.DupSymbol d ->
+                        new SemanticError.DupSymbol(d.dupName(), d.k(), sl);
+                case SemanticError.NoSuchSymbol s ->
+                        new SemanticError.NoSuchSymbol(s.referencedSymbol(), sl);
+                case SemanticError.TypeMismatch t ->
+                        new SemanticError.TypeMismatch(t.expected(), t.actual(), sl);
+                case SemanticError.ArgCountMismatch a ->
+                        new SemanticError.ArgCountMismatch(a.numArgsExpected(),
+                                a.numProvided(), sl);
+                case SemanticError.TooFewOrTooManyReturns r ->
+                        new SemanticError.TooFewOrTooManyReturns(
+                                r.numOfReturnsExpected(), sl);
+                default -> e;
+            });
+        }
+        return result;
+    }
+
+    /** Returns true if {@code a} and {@code b} have the same signature. */
+    private static boolean sameSignature(SymbolTableEntry.ProcDefEntry a,
+                                         SymbolTableEntry.ProcDefEntry b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a.tpe() != b.tpe() ||
+                !a.name().equals(b.name()) ||
+                a.fparams().size() != b.fparams().size()) {
+            return false;
+        }
+        for (int i = 0; i < a.fparams().size(); i++) {
+            if (a.fparams().get(i).tpe() != b.fparams().get(i).tpe()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** A slice {@code [start, end)} of the script beginning at line/col. */
+    record Chunk(int start, int end, int line, int col) {
+    }
+
+    /**
+     * The result of checking one definition.
+     *
+     * @param lookups the procedures looked up (by symbol id) and what they
+     *                resolved to.
+     * @param errors  the semantic errors found in the definition.
+     * @param proc    the entry for the procedure itself.
+     * @param symbol  the symbol id of {@code proc}'s name.
+     * @param defined whether {@code proc} was added to the procedure table
+     *                (it isn't if it's a duplicate).
+     */
+    private record CheckState(Map<Integer, SymbolTableEntry.ProcDefEntry> lookups,
+                              List<PieErrorMessage> errors,
+                              SymbolTableEntry.ProcDefEntry proc,
+                              int symbol,
+                              boolean defined) {
+
+        boolean isValidIn(ScopedSymbolTable<SymbolTableEntry.ProcDefEntry> procedures) {
+            for (var lookup : lookups.entrySet()) {
+                if (!sameSignature(procedures.lookup(lookup.getKey()),
+                        lookup.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** A cached chunk: its text, lowered tree and latest check result. */
+    private static final class DefUnit {
+        final String text;
+        final int col;
+
+        /** The line the chunk started on when it was parsed. */
+        final int parsedLine;
+
+        /** The offset the chunk started at when it was parsed. */
+        final int parsedStart;
+
+        /** The line the chunk starts on in the version being checked. */
+        int line;
+
+        /** The offset the chunk starts at in the version being checked. */
+        int start;
+
+        List<PieErrorMessage> syntaxErrors;
+
+        /**
+         * The chunk's lowered definition (at the offsets it was parsed at),
+         * {@code null} if it has none/errors.
+         */
+        PieAst ast;
+
+        /** The callees of the definition (see {@link CallGraphUpdater#calleesOf}). */
+        int[] callees;
+
+        CheckState check;
+
+        DefUnit(String text, int col, int parsedLine, int parsedStart) {
+            this.text = text;
+            this.col = col;
+            this.parsedLine = parsedLine;
+            this.parsedStart = parsedStart;
+        }
+    }
+}
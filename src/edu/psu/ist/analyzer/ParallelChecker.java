@@ -0,0 +1,151 @@
+package edu.psu.ist.analyzer;
+
+import antlr4.IterativeTreeWalker;
+import antlr4.edu.psu.ist.parser.PiethonParser;
+import edu.psu.ist.analyzer.entry.SymbolTableEntry;
+import edu.psu.ist.analyzer.utils.SymbolInterner;
+import edu.psu.ist.analyzer.utils.TextInput;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Checks the procedure definitions of a (parsed) script in parallel.
+ * <p>
+ * A script may only call procedures defined before the caller, so once the
+ * signature of every procedure is known, each definition can be checked on
+ * its own. A quick sequential pass first records, for each procedure name,
+ * its first definition (later ones are duplicates) and that definition's
+ * signature. Then runs of {@link #BATCH} definitions are checked as
+ * fork/join tasks, each by a {@link PieScriptCheckingListener} that only
+ * sees the procedures defined before the definition it's walking, and their
+ * errors are concatenated in order. So the errors are exactly those of a
+ * sequential check, in the same order.
+ * <p>
+ * The tasks run in the fork/join pool of the calling thread (e.g. that of
+ * a {@link PieWorkspace}), or in the common pool.
+ */
+final class ParallelChecker {
+
+    /** The number of consecutive definitions checked by one task. */
+    static final int BATCH = 256;
+
+    private ParallelChecker() {
+    }
+
+    /**
+     * Returns {@code true} if checking {@code tree} in parallel could pay
+     * off: it has at least a few batches of definitions, and there's more
+     * than one thread to check them on.
+     */
+    static boolean isWorthIt(PiethonParser.ScriptContext tree) {
+        var pool = ForkJoinTask.inForkJoinPool()
+                ? ForkJoinTask.getPool().getParallelism()
+                : ForkJoinPool.getCommonPoolParallelism();
+        return pool > 1 && tree.def().size() >= 4 * BATCH;
+    }
+
+    /**
+     * Checks every definition of {@code tree} (whose identifiers were
+     * interned into {@code symbols}), returning the errors found in the
+     * order a sequential walk would have found them.
+     */
+    static List<PieErrorMessage> check(TextInput source, SymbolInterner symbols,
+                                       PiethonParser.ScriptContext tree) {
+        return check(source, symbols, tree, BATCH);
+    }
+
+    /**
+     * Like {@link #check(TextInput, SymbolInterner,
+     * PiethonParser.ScriptContext)}, in runs of {@code batch} definitions.
+     */
+    static List<PieErrorMessage> check(TextInput source, SymbolInterner symbols,
+                                       PiethonParser.ScriptContext tree,
+                                       int batch) {
+        var defs = tree.def();
+        if (defs.isEmpty()) {
+            return List.of();
+        }
+        var signatures = Signatures.of(
+                new PieScriptCheckingListener(source, tree, symbols), defs,
+                symbols.size());
+        List<ForkJoinTask<List<PieErrorMessage>>> tasks = new ArrayList<>();
+        for (int first = 0; first < defs.size(); first += batch) {
+            int from = first;
+            int to = Math.min(first + batch, defs.size());
+            // (forked into the calling thread's pool, or the common pool)
+            tasks.add(ForkJoinTask.adapt(() -> checkBatch(source, symbols,
+                    signatures, defs, from, to)).fork());
+        }
+        // joining in order keeps the errors in the order of a sequential walk
+        List<PieErrorMessage> result = new ArrayList<>();
+        for (var task : tasks) {
+            result.addAll(task.join());
+        }
+        return result;
+    }
+
+    /** Checks definitions {@code [from, to)}, returning their errors. */
+    private static List<PieErrorMessage> checkBatch(TextInput source,
+            SymbolInterner symbols, Signatures signatures,
+            List<PiethonParser.DefContext> defs, int from, int to) {
+        var l = new PieScriptCheckingListener(source, symbols, signatures,
+                from);
+        for (int i = from; i < to; i++) {
+            IterativeTreeWalker.DEFAULT.walk(l, defs.get(i));
+        }
+        return l.errors();
+    }
+
+    /**
+     * The signature of the first definition of each procedure of a script,
+     * by symbol id, along with where it's defined.
+     */
+    static final class Signatures {
+
+        /** The index of each procedure's first definition ({@code -1} if none). */
+        private final int[] firstDef;
+
+        /** The entry of each procedure, by symbol id. */
+        private final SymbolTableEntry.ProcDefEntry[] entries;
+
+        private Signatures(int[] firstDef, SymbolTableEntry.ProcDefEntry[] entries) {
+            this.firstDef = firstDef;
+            this.entries = entries;
+        }
+
+        /**
+         * Collects the signatures of {@code defs} (using {@code listener} to
+         * resolve names and types), in a script with {@code symbolCount}
+         * distinct identifiers.
+         */
+        static Signatures of(PieScriptCheckingListener listener,
+                             List<PiethonParser.DefContext> defs,
+                             int symbolCount) {
+            var firstDef = new int[symbolCount];
+            Arrays.fill(firstDef, -1);
+            var entries = new SymbolTableEntry.ProcDefEntry[symbolCount];
+            for (int i = 0; i < defs.size(); i++) {
+                int sym = listener.symbolOf(defs.get(i).name);
+                if (firstDef[sym] < 0) {
+                    firstDef[sym] = i;
+                    entries[sym] = listener.signatureOf(defs.get(i));
+                }
+            }
+            return new Signatures(firstDef, entries);
+        }
+
+        /**
+         * Returns the entry of procedure {@code sym} as seen from the
+         * {@code def}-th definition ({@code null} if it isn't defined before
+         * that definition).
+         */
+        SymbolTableEntry.ProcDefEntry lookup(int sym, int def) {
+            return sym < firstDef.length && firstDef[sym] >= 0
+                    && firstDef[sym] < def ? entries[sym] : null;
+        }
+    }
+}
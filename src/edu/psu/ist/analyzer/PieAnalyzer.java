@@ -1,24 +1,131 @@
 package edu.psu.ist.analyzer;
 
 import antlr4.AntlrErrorReportingListener;
+import antlr4.CompositeParseTreeListener;
+import antlr4.HiddenTokenFilter;
+import antlr4.InterningTokenFactory;
+import antlr4.IterativeTreeWalker;
+import antlr4.LeanTokenStreams;
+import antlr4.MappedCharStream;
+import antlr4.ParseProfile;
+import antlr4.SyntaxErrorGuardListener;
+import antlr4.TimedTokenSource;
 import antlr4.edu.psu.ist.parser.PiethonLexer;
 import antlr4.edu.psu.ist.parser.PiethonParser;
+import edu.psu.ist.analyzer.AnalysisMetrics.Phase;
+import edu.psu.ist.analyzer.ast.AstBuilder;
+import edu.psu.ist.analyzer.ast.AstKind;
+import edu.psu.ist.analyzer.ast.AstSimplifier;
+import edu.psu.ist.analyzer.ast.PieAst;
+import edu.psu.ist.analyzer.errors.ErrorLimitReachedException;
 import edu.psu.ist.analyzer.errors.ParseError;
 import edu.psu.ist.analyzer.utils.*;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BufferedTokenStream;
+import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.List;
 
 public final class PieAnalyzer {
 
+    /**
+     * The largest graph (vertices + edges) {@link #exportGraph} renders as a
+     * png; bigger ones are streamed out as DOT instead.
+     */
+    public static final int MAX_PNG_GRAPH_SIZE = 2_000;
+
+    /** A small script using every rule, analyzed by {@link #prewarm()}. */
+    private static final String PREWARM_SCRIPT = """
+            def g(a : Int32, b : Bool) : Int32 is
+                var c : Int32 := a + 1;
+                c := c + a;
+                return c;
+            end
+
+            def f() : Void is
+                g(1, true);
+                g(2, false);
+            end
+            """;
+
     /** The current {@code .pie} source to be parsed into a CST. */
     private TextInput currentSource;
 
     /** Stores current settings/options for the checker (minimal currently). */
     private Options options;
 
+    /**
+     * Caches per-definition parse trees and check results between calls to
+     * {@link #check()} (only used when {@link Options#incremental()} is set).
+     */
+    private IncrementalChecker incrementalChecker;
+
+    /**
+     * Interns the identifiers of every script parsed by this analyzer (the
+     * checker resolves names by their symbol ids).
+     */
+    private final SymbolInterner symbols = new SymbolInterner();
+
+    /** The outcome of the last {@link #analyze()} call (or {@code null}). */
+    private Result<CheckedScript, List<PieErrorMessage>> lastAnalysis;
+
+    /** The source {@link #lastAnalysis} was computed for. */
+    private TextInput analyzedSource;
+
+    /**
+     * Applies the changes to the call graph from one version of the script
+     * to the next (only used when {@link Options#incremental()} is set).
+     */
+    private CallGraphUpdater graphUpdater;
+
+    /** The call graphs of the last two successful analyses (or {@code null}). */
+    private Digraph<ProcNode> lastGraph;
+    private Digraph<ProcNode> previousGraph;
+
+    /**
+     * How the call graph changed with the last successful analysis
+     * ({@code null} if not computed yet).
+     */
+    private GraphDiff<ProcNode> graphDiff;
+
+    /**
+     * The metrics of the last analysis ({@code null} if none were collected;
+     * see {@link AnalysisMetrics}).
+     */
+    private AnalysisMetrics metrics;
+
+    /**
+     * Starts getting the lexer and parser ready on a background thread:
+     * deserializing their ATNs (the parser's first, while the caller is busy
+     * with the lexer's) and seeding the DFA cache that every later parse
+     * shares by analyzing a small script. Meant for short-lived processes;
+     * call it as early as possible, and the first analysis only waits for
+     * the part of this work that hasn't finished yet.
+     */
+    public static void prewarm() {
+        Thread.ofPlatform().daemon().name("pie-prewarm").start(() -> {
+            // forces the parser's static initialization
+            var unused = PiethonParser._ATN;
+            new PieAnalyzer()
+                    .setOptions(new Options(true).withTwoStageParse(true))
+                    .setScriptCode("<prewarm>", PREWARM_SCRIPT).analyze();
+        });
+    }
+
     /** Adds the source code with the given {@code name} and {@code text}. */
     public PieAnalyzer setScriptCode(String name, String text) {
         if (name == null || text == null) {
@@ -29,8 +136,27 @@ public final class PieAnalyzer {
         return this;
     }
 
+    /**
+     * Sets the script to analyze to {@code source} (e.g. a file mapped with
+     * {@link TextInput#mapped}, which is then lexed without being copied).
+     */
+    public PieAnalyzer setScript(TextInput source) {
+        if (source == null) {
+            throw new IllegalArgumentException("source should not be null");
+        }
+        this.currentSource = source;
+        return this;
+    }
+
     public PieAnalyzer setOptions(Options o) {
         this.options = o;
+        this.incrementalChecker = null;
+        this.lastAnalysis = null;
+        this.graphUpdater = null;
+        this.lastGraph = null;
+        this.previousGraph = null;
+        this.graphDiff = null;
+        this.metrics = null;
         return this;
     }
 
@@ -42,76 +168,397 @@ public final class PieAnalyzer {
 
     /**
      * Returns a {@link Result} instance that is either a {@link Result.Ok}
-     * holding the successully parsed syntax tree for the current piethon
-     * program or an {@link Result.Err} that encapsulates a list of error
-     * messages.
+     * holding the compact syntax tree ({@link PieAst}) for the successfully
+     * checked piethon program or an {@link Result.Err} that encapsulates a
+     * list of error messages.
      */
-    public Result<PiethonParser.ScriptContext, List<PieErrorMessage>> check() {
+    public Result<PieAst, List<PieErrorMessage>> check() {
+        var result = analyze();
+        if (result.isError()) {
+            return Result.err(result.getError());
+        }
+        return Result.ok(result.get().ast());
+    }
 
+    /**
+     * Like {@link #check()}, but on success also returns the script's call
+     * graph (built from the compact syntax tree).
+     * <p>
+     * The outcome is remembered until the script or options change, so
+     * calling {@link #check()} and then {@link #buildGraph()} only parses and
+     * walks the script once. The parse tree itself isn't kept: it's lowered
+     * to a {@link PieAst} during the checking walk and then dropped.
+     */
+    public Result<CheckedScript, List<PieErrorMessage>> analyze() {
         if (currentSource == null) {
             throw new IllegalStateException("Cannot call check until a " +
                     "script is set (call setScriptCode(..))");
         }
+        if (lastAnalysis != null && analyzedSource == currentSource) {
+            return lastAnalysis;
+        }
+        metrics = AnalysisMetrics.startIfEnabled(currentSource.name(),
+                options.metrics());
+        var result = options.incremental()
+                ? analyzeIncrementally()
+                : analyzeFully();
+        if (metrics != null) {
+            metrics.finish(result.isOk() ? result.get().ast().size() : 0,
+                    result.isError() ? result.getError().size() : 0);
+        }
+        if (result.isError() && !options.runSilent()) {
+            // print out any syntax or semantic errors
+            reportErrors(result.getError());
+        }
+        lastAnalysis = result;
+        analyzedSource = currentSource;
+        return result;
+    }
+
+    private Result<CheckedScript, List<PieErrorMessage>> analyzeFully() {
+        if (options.maxErrors() > 0) {
+            return analyzeFailFast();
+        }
         var parseResult = parseRoot(currentSource);
         if (parseResult.isError()) {
-            if (!options.runSilent()) {
-                reportErrors(parseResult.getError());
-            }
-            return parseResult;
+            return Result.err(parseResult.getError());
         }
 
         // this next line shouldn't fail (we would've already returned in the
         // if-stmt above)
         PiethonParser.ScriptContext scriptRootNode = parseResult.get();
+        if (options.parallelCheck() && ParallelChecker.isWorthIt(scriptRootNode)) {
+            return analyzeInParallel(scriptRootNode);
+        }
 
-        // ok to continue... now do the semantic checks specified
-
+        // ok to continue... now do the semantic checks specified, lowering
+        // the tree to an ast in the same walk
         PieScriptCheckingListener checkingListener =
-                new PieScriptCheckingListener(currentSource, scriptRootNode);
-        // walk the parse tree
-        ParseTreeWalker.DEFAULT.walk(checkingListener, scriptRootNode);
+                new PieScriptCheckingListener(currentSource, scriptRootNode,
+                        symbols);
+        AstBuilder astBuilder = new AstBuilder(currentSource, symbols);
+        begin();
+        IterativeTreeWalker.DEFAULT.walk(new CompositeParseTreeListener(
+                checkingListener, astBuilder), scriptRootNode);
+        end(Phase.Check);
 
         // returns a Result containing either the root of the sucessfully
         // checked tree or a list of PieErrorMessages.
         var result = checkingListener.getCheckedScript();
-        if (result.isError() && !options.runSilent()) {
-            // print out any semantic errors
-            reportErrors(result.getError());
+        if (result.isError()) {
+            return Result.err(result.getError());
         }
-        return result;
+        return Result.ok(checked(astBuilder.build()));
+    }
+
+    /**
+     * Checks the definitions of the parsed {@code tree} in parallel (see
+     * {@link ParallelChecker}), then lowers it if it's error free.
+     */
+    private Result<CheckedScript, List<PieErrorMessage>> analyzeInParallel(
+            PiethonParser.ScriptContext tree) {
+        begin();
+        var errors = ParallelChecker.check(currentSource, symbols, tree);
+        end(Phase.Check);
+        if (!errors.isEmpty()) {
+            return Result.err(errors);
+        }
+        begin();
+        var ast = lower(tree);
+        end(Phase.Lower);
+        return Result.ok(checked(ast));
+    }
+
+    /**
+     * Like {@link #analyzeFully()}, but checks the script while it's being
+     * parsed: once the error budget is used up, the parser (for syntax
+     * errors) or the checker (for semantic ones) stops. As without a budget,
+     * semantic errors are only reported if the script has no syntax errors,
+     * so the parse goes on after the checker stops; the errors reported are
+     * always the first of those found without a budget. The tree is only
+     * lowered once the script is known to be error free.
+     */
+    private Result<CheckedScript, List<PieErrorMessage>> analyzeFailFast() {
+        PieScriptCheckingListener checkingListener =
+                new PieScriptCheckingListener(currentSource, null, symbols)
+                        .setMaxErrors(options.maxErrors());
+        var parseResult = parseRoot(currentSource, checkingListener);
+        if (parseResult.isError()) {
+            return Result.err(parseResult.getError());
+        }
+        var result = checkingListener.getCheckedScript();
+        if (result.isError()) {
+            return Result.err(result.getError());
+        }
+        begin();
+        var ast = lower(parseResult.get());
+        end(Phase.Lower);
+        return Result.ok(checked(ast));
+    }
+
+    private Result<CheckedScript, List<PieErrorMessage>> analyzeIncrementally() {
+        if (incrementalChecker == null) {
+            incrementalChecker = new IncrementalChecker(options, symbols);
+        }
+        begin();
+        var result = incrementalChecker.check(currentSource);
+        end(Phase.Check);
+        if (result.isError()) {
+            return Result.err(result.getError());
+        }
+        return Result.ok(checked(result.get()));
+    }
+
+    private CheckedScript checked(PieAst ast) {
+        int eliminated = 0;
+        if (options.simplify()) {
+            begin();
+            var simplified = AstSimplifier.simplify(ast);
+            end(Phase.Simplify);
+            ast = simplified.ast();
+            eliminated = simplified.eliminated();
+        }
+        begin();
+        previousGraph = lastGraph;
+        if (options.incremental()) {
+            if (graphUpdater == null) {
+                graphUpdater = new CallGraphUpdater();
+            }
+            // (the simplifier keeps every def and call, so the callees of
+            // the checked tree are those of the simplified one)
+            graphDiff = graphUpdater.update(ast, incrementalChecker.callees());
+            lastGraph = graphUpdater.graph();
+        }
+        else {
+            // compared with the previous graph only if asked for
+            graphDiff = null;
+            lastGraph = buildGraph(ast);
+        }
+        end(Phase.Graph);
+        return new CheckedScript(ast, lastGraph, eliminated);
+    }
+
+    /**
+     * Returns the metrics of the last analysis: how long each of its phases
+     * took, and how many tokens, nodes and errors it found. Exporting a call
+     * graph afterward adds to its {@link Phase#Export} phase.
+     *
+     * @throws IllegalStateException if the last analysis didn't collect
+     *                               any (see {@link Options#metrics()}).
+     */
+    public AnalysisMetrics metrics() {
+        if (metrics == null) {
+            throw new IllegalStateException("no metrics were collected "
+                    + "(set Options.metrics and call analyze first)");
+        }
+        return metrics;
+    }
+
+    /** Starts timing a phase, if metrics are being collected. */
+    private void begin() {
+        if (metrics != null) {
+            metrics.begin();
+        }
+    }
+
+    private void end(Phase phase) {
+        if (metrics != null) {
+            metrics.end(phase);
+        }
+    }
+
+    /**
+     * Returns how the call graph changed with the last successful analysis,
+     * compared to the one before it (or to an empty graph, for the first).
+     * In incremental mode the graph is updated by applying just these
+     * changes, so they're known without comparing the graphs; otherwise the
+     * graphs are compared in full (once).
+     *
+     * @throws IllegalStateException if no analysis has succeeded yet.
+     */
+    public GraphDiff<ProcNode> graphDiff() {
+        if (lastGraph == null) {
+            throw new IllegalStateException("no script was analyzed "
+                    + "successfully yet (call analyze first)");
+        }
+        if (graphDiff == null) {
+            graphDiff = previousGraph == null
+                    ? GraphDiff.of(lastGraph)
+                    : GraphDiff.between(previousGraph, lastGraph);
+        }
+        return graphDiff;
+    }
+
+    /**
+     * Parses the current script with ANTLR's profiling simulator and returns
+     * the statistics of each decision the parser made (the prediction mode
+     * and error budget follow the options). The script isn't checked; its
+     * syntax errors are counted, not reported.
+     */
+    public ParseProfile profileParse() {
+        if (currentSource == null) {
+            throw new IllegalStateException("Cannot profile until a " +
+                    "script is set (call setScriptCode(..))");
+        }
+        var profile = new ParseProfile();
+        parseRoot(currentSource, null, profile);
+        return profile;
+    }
+
+    /** Lowers the (checked) {@code tree} to a {@link PieAst}. */
+    PieAst lower(PiethonParser.ScriptContext tree) {
+        var builder = new AstBuilder(currentSource, symbols);
+        IterativeTreeWalker.DEFAULT.walk(builder, tree);
+        return builder.build();
     }
 
     private void reportErrors(List<PieErrorMessage> errors) {
         for (var err : errors) {
-            System.err.println(err);
+            System.err.println(err.render());
         }
     }
 
     public Digraph<ProcNode> buildGraph() {
 
-        var checkResult = check(); // will throw an exception if script not set
-        if (!checkResult.isOk()) {
+        var result = analyze(); // will throw an exception if script not set
+        if (!result.isOk()) {
             // report any errors encountered to the console
             throw new IllegalArgumentException("Script contains errors " +
                     "(call check first to ensure the script is well formed)");
         }
-        PieGraphBuildingListener l = new PieGraphBuildingListener();
-        // walk the tree & build the graph
-        ParseTreeWalker.DEFAULT.walk(l, checkResult.get());
-        return l.getGraph();
+        return result.get().graph();
+    }
+
+    /**
+     * Builds the call graph for the current script and computes its strongly
+     * connected components. A cyclic component is a set of (mutually)
+     * recursive procedures; iterating component ids upward visits callees
+     * before their callers.
+     */
+    public StronglyConnectedComponents<ProcNode> buildComponents() {
+        return StronglyConnectedComponents.of(buildGraph());
+    }
+
+    /**
+     * Builds a reachability index over the current script's call graph, for
+     * answering many "does {@code f} (transitively) call {@code g}?" queries
+     * and for finding the procedures unreachable from given entry points.
+     */
+    public ReachabilityIndex<ProcNode> buildReachability() {
+        return ReachabilityIndex.of(buildComponents());
+    }
+
+    /** Returns the interner identifiers are lexed into by this analyzer. */
+    SymbolInterner symbols() {
+        return symbols;
+    }
+
+    /**
+     * Builds the call graph of a checked script from its {@code ast}: one
+     * vertex per procedure (in definition order) and an edge from each
+     * procedure to every procedure it calls.
+     */
+    public static Digraph<ProcNode> buildGraph(PieAst ast) {
+        var g = new Digraph<ProcNode>();
+        // procedure nodes by symbol id, and the def that last called each
+        var procs = new ProcNode[ast.symbols().size()];
+        var lastCaller = new int[procs.length];
+        Arrays.fill(lastCaller, -1);
+
+        int root = PieAst.ROOT;
+        for (int def = root + 1; def < ast.end(root); def = ast.end(def)) {
+            var caller = procNode(ast, def, procs);
+            g.add(caller);
+            for (int n = def + 1; n < ast.end(def); n = ast.end(n)) {
+                if (ast.kind(n) == AstKind.Call &&
+                        lastCaller[ast.symbol(n)] != def) {
+                    lastCaller[ast.symbol(n)] = def;
+                    g.add(caller, procNode(ast, n, procs));
+                }
+            }
+        }
+        g.freeze();
+        return g;
+    }
+
+    private static ProcNode procNode(PieAst ast, int node, ProcNode[] procs) {
+        int sym = ast.symbol(node);
+        if (procs[sym] == null) {
+            procs[sym] = new ProcNode(ast.name(node));
+        }
+        return procs[sym];
     }
 
     /**
      * Given a call graph {@code g}, exports a png visualizing the graph to
      * the project root directory.
      * <p>
-     * Implement this method using
-     * <a href="https://github.com/nidi3/graphviz-java">this graphviz library</a>
+     * Rendering a png (via
+     * <a href="https://github.com/nidi3/graphviz-java">this graphviz library</a>)
+     * holds the whole graph in memory several times over, so graphs with more
+     * than {@link #MAX_PNG_GRAPH_SIZE} vertices + edges are instead streamed
+     * out as a graphviz {@code .dot} file (the {@code outputImageName} with
+     * its extension replaced by {@code .dot}).
      */
     public void exportGraph(Digraph<ProcNode> g, String outputImageName,
                             String graphTitle) {
+        begin();
+        var compact = g.freeze();
+        try {
+            if (compact.vertexCount() + compact.edgeCount() <= MAX_PNG_GRAPH_SIZE) {
+                PngRenderer.render(g, new File(outputImageName), graphTitle);
+            }
+            else {
+                writeDot(g, Path.of(dotFileName(outputImageName)), graphTitle);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            end(Phase.Export);
+        }
+    }
 
-        // todo todo
+    /**
+     * Streams the call graph {@code g} to the file {@code out} as graphviz DOT
+     * (using constant extra memory).
+     */
+    public void exportDot(Digraph<ProcNode> g, Path out,
+                          String graphTitle) throws IOException {
+        begin();
+        try {
+            writeDot(g, out, graphTitle);
+        } finally {
+            end(Phase.Export);
+        }
+    }
+
+    private static void writeDot(Digraph<ProcNode> g, Path out,
+                                 String graphTitle) throws IOException {
+        try (var channel = FileChannel.open(out, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            GraphExporter.writeDot(g, graphTitle, channel);
+        }
+    }
+
+    /**
+     * Streams the call graph {@code g} to the file {@code out} as
+     * line-delimited JSON (using constant extra memory).
+     */
+    public void exportJsonLines(Digraph<ProcNode> g, Path out,
+                                String graphTitle) throws IOException {
+        begin();
+        try (var channel = FileChannel.open(out, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            GraphExporter.writeJsonLines(g, graphTitle, channel);
+        } finally {
+            end(Phase.Export);
+        }
+    }
+
+    private static String dotFileName(String imageName) {
+        int dot = imageName.lastIndexOf('.');
+        int sep = Math.max(imageName.lastIndexOf('/'), imageName.lastIndexOf('\\'));
+        return (dot > sep ? imageName.substring(0, dot) : imageName) + ".dot";
     }
 
     /**
@@ -119,25 +566,163 @@ public final class PieAnalyzer {
      * holds either the root of a successfully parsed piethon parse tree, or a
      * List of {@link ParseError} messages.
      */
-    private Result<PiethonParser.ScriptContext, List<PieErrorMessage>> parseRoot(TextInput source) {
-        var errorListener = new AntlrErrorReportingListener(source);
-        var lexer = new PiethonLexer(CharStreams.fromString(source.text(),
-                source.name()));
+    Result<PiethonParser.ScriptContext, List<PieErrorMessage>> parseRoot(TextInput source) {
+        return parseRoot(source, null);
+    }
+
+    /**
+     * Like {@link #parseRoot(TextInput)}, but also runs {@code listener} over
+     * the tree (see {@link #parse(PiethonLexer, AntlrErrorReportingListener,
+     * Options, SymbolInterner, ParseTreeListener, AnalysisMetrics,
+     * ParseProfile)}), timing
+     * lexing and parsing into the current analysis's metrics (if any).
+     */
+    Result<PiethonParser.ScriptContext, List<PieErrorMessage>> parseRoot(
+            TextInput source, ParseTreeListener listener) {
+        return parseRoot(source, listener, null);
+    }
+
+    /**
+     * Like {@link #parseRoot(TextInput, ParseTreeListener)}, but if
+     * {@code profile} is non-null, the parser's decisions are profiled into
+     * it (such a parse isn't timed into the metrics, as profiling slows
+     * prediction down).
+     */
+    Result<PiethonParser.ScriptContext, List<PieErrorMessage>> parseRoot(
+            TextInput source, ParseTreeListener listener, ParseProfile profile) {
+        var errorListener = new AntlrErrorReportingListener(source,
+                options.maxErrors());
+        // mapped files are lexed straight from their bytes
+        CharStream input = source.isMapped()
+                ? new MappedCharStream(source.bytes(), source.name())
+                : CharStreams.fromString(source.text(), source.name());
+        var lexer = new PiethonLexer(input);
+        return parse(lexer, errorListener, options, symbols, listener,
+                profile == null ? metrics : null, profile);
+    }
+
+    /**
+     * Parses the tokens produced by {@code lexer}, reporting syntax errors to
+     * {@code errorListener}, with identifiers interned into {@code symbols}
+     * as they're lexed. When {@link Options#twoStageParse()} is set, the
+     * script is first parsed using SLL prediction with a bail-out error
+     * strategy; only if that fails is it reparsed with full LL prediction
+     * (which also produces the usual error messages). Lexing and parsing
+     * stop early once {@link Options#maxErrors()} errors were reported.
+     */
+    static Result<PiethonParser.ScriptContext, List<PieErrorMessage>> parse(
+            PiethonLexer lexer, AntlrErrorReportingListener errorListener,
+            Options options, SymbolInterner symbols) {
+        return parse(lexer, errorListener, options, symbols, null, null, null);
+    }
 
+    /**
+     * Like {@link #parse(PiethonLexer, AntlrErrorReportingListener, Options,
+     * SymbolInterner)}, but also runs {@code listener} (if non-null) over the
+     * tree until the first syntax error: as a parse listener while the tree
+     * is being built by the LL parser, or by walking the tree if the SLL
+     * parse succeeded. An {@link ErrorLimitReachedException} thrown by
+     * {@code listener} stops the parse.
+     * <p>
+     * If {@code metrics} is non-null, the whole script is lexed before it's
+     * parsed, so the two phases are timed apart. If {@code profile} is
+     * non-null, the parser's decisions are profiled into it. With
+     * {@link Options#leanTokens()}, hidden tokens are dropped as they're
+     * lexed.
+     */
+    static Result<PiethonParser.ScriptContext, List<PieErrorMessage>> parse(
+            PiethonLexer lexer, AntlrErrorReportingListener errorListener,
+            Options options, SymbolInterner symbols,
+            ParseTreeListener listener, AnalysisMetrics metrics,
+            ParseProfile profile) {
+        lexer.setTokenFactory(new InterningTokenFactory(symbols, PiethonLexer.ID,
+                options.leanTokens()));
         lexer.removeErrorListeners();
         lexer.addErrorListener(errorListener);
 
-        var parser = new PiethonParser(new CommonTokenStream(lexer));
+        var filter = options.leanTokens() ? new HiddenTokenFilter(lexer) : null;
+        TokenSource tokens = filter != null ? filter : lexer;
+        // (lexing is timed as the parser goes: lexing everything up front
+        // would report lexer errors before any parser errors)
+        var timed = metrics != null ? new TimedTokenSource(tokens) : null;
+        if (timed != null) {
+            tokens = timed;
+        }
+        // (only a buffered stream can be rewound)
+        BufferedTokenStream buffered = filter == null
+                ? new CommonTokenStream(tokens)
+                : options.twoStageParse()
+                        ? LeanTokenStreams.buffered(tokens, filter)
+                        : null;
+        var parser = new PiethonParser(buffered != null
+                ? buffered
+                : LeanTokenStreams.unbuffered(tokens, filter));
         parser.removeErrorListeners();
-        parser.addErrorListener(errorListener);
+        if (profile != null) {
+            profile.profile(parser);
+        }
 
-        PiethonParser.ScriptContext tree = parser.script();
+        PiethonParser.ScriptContext tree;
+        try {
+            if (metrics != null) {
+                metrics.begin();
+            }
+            tree = parse(parser, errorListener, options, listener);
+        } catch (ErrorLimitReachedException e) {
+            // the error budget ran out: the lexer/parser were stopped early
+            return Result.err(e.errors());
+        } finally {
+            if (metrics != null) {
+                metrics.end(Phase.Parse, Phase.Lex, timed.nanos());
+                metrics.setTokens(filter != null ? filter.count() : buffered.size());
+            }
+            if (profile != null) {
+                // (a two-stage parse switches to LL when SLL fails)
+                profile.collect(parser, options.twoStageParse()
+                        && parser.getInterpreter().getPredictionMode()
+                                == PredictionMode.LL);
+            }
+        }
         // NOTE: we don't want our parser to stop cold on the first
-        // syntactic error encountered
+        // syntactic error encountered (unless a budget was set)
         if (!errorListener.errors().isEmpty()) {
             // failure (one or more syntactic errors)
             return Result.err(errorListener.errors());
         }
         return Result.ok(tree);
     }
+
+    /** Runs {@code parser} in the prediction mode(s) selected by {@code options}. */
+    private static PiethonParser.ScriptContext parse(PiethonParser parser,
+            AntlrErrorReportingListener errorListener, Options options,
+            ParseTreeListener listener) {
+        PiethonParser.ScriptContext tree = null;
+        if (options.twoStageParse()) {
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(new BailErrorStrategy());
+            try {
+                tree = parser.script();
+            } catch (ParseCancellationException e) {
+                // SLL couldn't handle it (most likely a real syntax error):
+                // rewind and fall back to full LL with normal error recovery
+                parser.reset();
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+            }
+        }
+        if (tree != null) {
+            // (the lexer may still have reported errors: like the guard on
+            // the LL path, don't let the checker's report replace them)
+            if (listener != null && errorListener.errors().isEmpty()) {
+                IterativeTreeWalker.DEFAULT.walk(listener, tree);
+            }
+            return tree;
+        }
+        parser.addErrorListener(errorListener);
+        if (listener != null) {
+            parser.addParseListener(new SyntaxErrorGuardListener(listener,
+                    errorListener));
+        }
+        return parser.script();
+    }
 }
@@ -0,0 +1,366 @@
+package edu.psu.ist.analyzer;
+
+import edu.psu.ist.analyzer.utils.Options;
+import edu.psu.ist.analyzer.utils.TextInput;
+import edu.psu.ist.analyzer.vm.Compiler;
+import edu.psu.ist.analyzer.vm.Interpreter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The command line entry point (the main class of the assembly jar):
+ * <pre>
+ * check [options] &lt;file&gt;...     check scripts, printing their errors
+ * graph [options] &lt;file&gt; &lt;out&gt;  check a script and export its call graph
+ *                               (as .png, .dot or .json, by out's extension)
+ * dead &lt;file&gt; &lt;entry&gt;...      check a script and list the procedures that none
+ *                               of the entry procedures (transitively) call
+ * run &lt;file&gt; &lt;proc&gt; [arg]...    check a script, then compile and run one of its
+ *                               procedures (args are ints, true or false)
+ * profile &lt;file&gt;               parse a script with ANTLR's profiler and print
+ *                               the cost of each grammar decision
+ *
+ * options:
+ *   --first-error      stop at the first error found
+ *   --max-errors &lt;n&gt;   stop after n errors (per script)
+ *   --simplify         fold constants in checked scripts (and print how many
+ *                      nodes that eliminated)
+ *   --time             print the time to the first diagnostic and in total
+ *   --metrics          print a table of where the time went in each script
+ *                      (see {@link AnalysisMetrics})
+ *   --cache &lt;dir&gt;      reuse the outcomes of checking unchanged scripts,
+ *                      stored in dir (see {@link AnalysisCache})
+ * </pre>
+ * The exit status is 0 if every script is free of errors, 1 if errors were
+ * found and 2 for bad usage (or unreadable files).
+ * <p>
+ * Most runs are short checks, so startup matters more than throughput: the
+ * lexer and parser are warmed up on a background thread from the start (see
+ * {@link PieAnalyzer#prewarm()}) and graphviz is only loaded if a png is
+ * asked for. Short runs also gain from starting the JVM with
+ * {@code -XX:TieredStopAtLevel=1} (they end before C2 would pay off).
+ */
+public final class PieCli {
+
+    private static final String USAGE = """
+            usage: check [options] <file>...
+                   graph [options] <file> <out.png|out.dot|out.json>
+                   dead [options] <file> <entry>...
+                   run [options] <file> <procedure> [arg]...
+                   profile [options] <file>
+            options: --first-error, --max-errors <n>, --simplify, --time,
+                     --metrics, --cache <dir>""";
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final long startNanos = System.nanoTime();
+
+    /** When the first diagnostic was printed ({@code -1} if none yet). */
+    private long firstDiagnosticNanos = -1;
+
+    /** The analyzers used so far (only kept with {@code --metrics}). */
+    private final List<PieAnalyzer> analyzers = new ArrayList<>();
+
+    private PieCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        PieAnalyzer.prewarm();
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the command in {@code args}, printing results to {@code out} and
+     * diagnostics to {@code err}; returns the exit status.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        return new PieCli(out, err).run(args);
+    }
+
+    private int run(String[] args) {
+        if (args.length == 0) {
+            err.println(USAGE);
+            return 2;
+        }
+        // (nothing here reads whitespace tokens; large scripts are checked on
+        // all cores)
+        var options = new Options(true).withTwoStageParse(true)
+                .withLeanTokens(true).withParallelCheck(true);
+        boolean time = false;
+        Path cacheDir = null;
+        List<String> operands = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--first-error" -> options = options.withFirstErrorOnly();
+                case "--max-errors" -> {
+                    if (i + 1 == args.length) {
+                        return usage("--max-errors needs a number");
+                    }
+                    try {
+                        options = options.withMaxErrors(Integer.parseInt(args[++i]));
+                    } catch (IllegalArgumentException e) {
+                        return usage("bad --max-errors: " + args[i]);
+                    }
+                }
+                case "--simplify" -> options = options.withSimplify(true);
+                case "--time" -> time = true;
+                case "--metrics" -> options = options.withMetrics(true);
+                case "--cache" -> {
+                    if (i + 1 == args.length) {
+                        return usage("--cache needs a directory");
+                    }
+                    cacheDir = Path.of(args[++i]);
+                }
+                default -> {
+                    if (args[i].startsWith("--")) {
+                        return usage("unknown option: " + args[i]);
+                    }
+                    operands.add(args[i]);
+                }
+            }
+        }
+
+        int status;
+        try {
+            status = switch (args[0]) {
+                case "check" -> operands.isEmpty()
+                        ? usage("no files to check")
+                        : check(operands, options, cacheDir);
+                case "graph" -> operands.size() != 2
+                        ? usage("graph takes a file and an output file")
+                        : graph(operands.get(0), Path.of(operands.get(1)), options);
+                case "dead" -> operands.size() < 2
+                        ? usage("dead takes a file and entry procedures")
+                        : dead(operands.get(0),
+                                operands.subList(1, operands.size()), options);
+                case "run" -> operands.size() < 2
+                        ? usage("run takes a file and a procedure")
+                        : run(operands.get(0), operands.get(1),
+                                operands.subList(2, operands.size()), options);
+                case "profile" -> operands.size() != 1
+                        ? usage("profile takes a file")
+                        : profile(operands.get(0), options);
+                default -> usage("unknown command: " + args[0]);
+            };
+        } catch (IOException | UncheckedIOException e) {
+            err.println("error: " + e.getMessage());
+            status = 2;
+        }
+        if (options.metrics()) {
+            reportMetrics();
+        }
+        if (time) {
+            long total = System.nanoTime() - startNanos;
+            err.printf("first diagnostic: %s, total: %.1fms%n",
+                    firstDiagnosticNanos < 0 ? "none" : String.format("%.1fms",
+                            (firstDiagnosticNanos - startNanos) / 1e6),
+                    total / 1e6);
+        }
+        return status;
+    }
+
+    private int check(List<String> files, Options options, Path cacheDir)
+            throws IOException {
+        // (the cache only keeps errors and graphs: no simplified trees or
+        // metrics)
+        if (cacheDir != null && !options.simplify() && !options.metrics()) {
+            return checkCached(files, options,
+                    AnalysisCache.open(cacheDir, AnalysisCache.DEFAULT_MAX_BYTES));
+        }
+        int errors = 0;
+        for (String file : files) {
+            var result = analyzer(file, options).analyze();
+            if (result.isError()) {
+                errors += report(result.getError());
+            }
+            else if (options.simplify()) {
+                reportSimplified(file, result.get());
+            }
+        }
+        return reportTotal(errors);
+    }
+
+    /** Prints the number of errors found; returns the exit status. */
+    private int reportTotal(int errors) {
+        if (errors > 0) {
+            err.println(errors + (errors == 1 ? " error" : " errors"));
+        }
+        return errors == 0 ? 0 : 1;
+    }
+
+    private int checkCached(List<String> files, Options options,
+                            AnalysisCache cache) throws IOException {
+        int errors = 0;
+        for (String file : files) {
+            var result = cache.getOrAnalyze(TextInput.mapped(Path.of(file)),
+                    options);
+            if (result.isError()) {
+                errors += report(result.getError());
+            }
+        }
+        cache.trim();
+        return reportTotal(errors);
+    }
+
+    private int graph(String file, Path target, Options options) throws IOException {
+        var analyzer = analyzer(file, options);
+        var result = analyzer.analyze();
+        if (result.isError()) {
+            report(result.getError());
+            return 1;
+        }
+        var g = result.get().graph();
+        String title = Path.of(file).getFileName().toString();
+        String name = target.getFileName().toString();
+        if (name.endsWith(".png")) {
+            analyzer.exportGraph(g, target.toString(), title);
+        }
+        else if (name.endsWith(".dot")) {
+            analyzer.exportDot(g, target, title);
+        }
+        else if (name.endsWith(".json") || name.endsWith(".jsonl")) {
+            analyzer.exportJsonLines(g, target, title);
+        }
+        else {
+            return usage("unknown graph format: " + name);
+        }
+        out.println("wrote " + target);
+        return 0;
+    }
+
+    private int dead(String file, List<String> entries, Options options)
+            throws IOException {
+        var analyzer = analyzer(file, options);
+        var result = analyzer.analyze();
+        if (result.isError()) {
+            report(result.getError());
+            return 1;
+        }
+        var graph = result.get().graph();
+        List<ProcNode> roots = new ArrayList<>();
+        for (String entry : entries) {
+            var node = new ProcNode(entry);
+            if (!graph.contains(node)) {
+                return usage("no procedure " + entry + " in " + file);
+            }
+            roots.add(node);
+        }
+        for (var proc : analyzer.buildReachability().unreachableFrom(roots)) {
+            out.println(proc.name());
+        }
+        return 0;
+    }
+
+    private int run(String file, String procedure, List<String> args,
+                    Options options) throws IOException {
+        var result = analyzer(file, options).analyze();
+        if (result.isError()) {
+            report(result.getError());
+            return 1;
+        }
+        if (options.simplify()) {
+            reportSimplified(file, result.get());
+        }
+        var program = Compiler.compile(result.get().ast());
+        int p = program.procedure(procedure);
+        if (p < 0) {
+            return usage("no procedure " + procedure + " in " + file);
+        }
+        var values = new int[args.size()];
+        for (int i = 0; i < values.length; i++) {
+            String arg = args.get(i);
+            try {
+                values[i] = switch (arg) {
+                    case "true" -> 1;
+                    case "false" -> 0;
+                    default -> Integer.parseInt(arg);
+                };
+            } catch (NumberFormatException e) {
+                return usage("bad argument: " + arg);
+            }
+        }
+        int value;
+        try {
+            value = new Interpreter(program).call(p, values);
+        } catch (IllegalArgumentException e) {
+            return usage(e.getMessage());
+        } catch (IllegalStateException e) {
+            err.println("error: " + e.getMessage());
+            return 1;
+        }
+        switch (program.returnType(p)) {
+            case Bool -> out.println(value != 0);
+            case Int32 -> out.println(value);
+            default -> { }
+        }
+        return 0;
+    }
+
+    private int profile(String file, Options options) throws IOException {
+        out.println(analyzer(file, options).profileParse().render());
+        return 0;
+    }
+
+    private PieAnalyzer analyzer(String file, Options options)
+            throws IOException {
+        var analyzer = new PieAnalyzer().setOptions(options)
+                .setScript(TextInput.mapped(Path.of(file)));
+        if (options.metrics()) {
+            analyzers.add(analyzer);
+        }
+        return analyzer;
+    }
+
+    private int report(List<PieErrorMessage> errors) {
+        for (var e : errors) {
+            err.println(e.render());
+            if (firstDiagnosticNanos < 0) {
+                firstDiagnosticNanos = System.nanoTime();
+            }
+        }
+        return errors.size();
+    }
+
+    private void reportSimplified(String file, CheckedScript script) {
+        int eliminated = script.eliminatedNodes();
+        err.printf("%s: simplified, %d of %d nodes eliminated%n", file,
+                eliminated, eliminated + script.ast().size());
+    }
+
+    /**
+     * Prints the metrics of every script analyzed as a table: the time spent
+     * in each phase (in ms), the counts and the bytes allocated (in KB).
+     */
+    private void reportMetrics() {
+        var phases = AnalysisMetrics.Phase.values();
+        var header = new StringBuilder(String.format("%-24s", "script"));
+        for (var phase : phases) {
+            header.append(String.format(" %8s", phase.name().toLowerCase()));
+        }
+        err.println(header.append(String.format(" %8s %8s %8s %6s %10s",
+                "total", "tokens", "nodes", "errors", "alloc KB")));
+        for (var analyzer : analyzers) {
+            var m = analyzer.metrics();
+            var row = new StringBuilder(String.format("%-24s", m.script()));
+            for (var phase : phases) {
+                row.append(String.format(" %8.2f", m.nanos(phase) / 1e6));
+            }
+            err.println(row.append(String.format(" %8.2f %8d %8d %6d %10d",
+                    m.totalNanos() / 1e6, m.tokens(), m.nodes(), m.errors(),
+                    m.totalAllocatedBytes() / 1024)));
+        }
+    }
+
+    private int usage(String problem) {
+        err.println("error: " + problem);
+        err.println(USAGE);
+        return 2;
+    }
+}
@@ -0,0 +1,364 @@
+package edu.psu.ist.analyzer;
+
+import edu.psu.ist.analyzer.utils.GraphDiff;
+import edu.psu.ist.analyzer.utils.Json;
+import edu.psu.ist.analyzer.utils.Options;
+import edu.psu.ist.analyzer.utils.Pair;
+import edu.psu.ist.analyzer.utils.TextInput;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A long-running analyzer that answers line-delimited JSON requests, read
+ * from stdin or from the clients of a Unix-domain socket. Keeping the process
+ * around means the JVM, the ANTLR ATN and DFA caches and the JIT stay warm,
+ * and each document keeps its own incremental {@link PieAnalyzer}, so only
+ * the definitions that changed since the previous request get re-checked.
+ * <p>
+ * Each request is a single line holding a JSON object, e.g.
+ * <pre>
+ * {"id":1,"op":"check","name":"a.pie","text":"def f() : Void is end"}
+ * {"id":2,"op":"graph","path":"scripts/b.pie"}
+ * {"id":3,"op":"export","path":"scripts/b.pie","out":"b.dot","format":"dot"}
+ * {"id":4,"op":"diff","path":"scripts/b.pie"}
+ * {"id":5,"op":"close","path":"scripts/b.pie"}
+ * {"id":6,"op":"shutdown"}
+ * </pre>
+ * A document is named by {@code "name"} (its text then comes from
+ * {@code "text"}) or by {@code "path"} (it's then read from that file). The
+ * {@code export} formats are {@code dot}, {@code json} (line-delimited, see
+ * {@link edu.psu.ist.analyzer.utils.GraphExporter}) and {@code png}. Each
+ * request gets exactly one response line echoing its {@code "id"}, e.g.
+ * <pre>
+ * {"id":1,"ok":true,"valid":false,"diagnostics":[{"kind":"Semantic error",
+ *  "type":"TypeMismatch","message":"...","line":2,"col":5,"endLine":2,
+ *  "endCol":9}],"micros":412}
+ * </pre>
+ * where {@code "ok"} says whether the request itself could be handled (if
+ * not, {@code "error"} says why) and {@code "valid"} whether the script is
+ * free of errors. {@code graph} responses of valid scripts also hold the
+ * procedure names ({@code "vertices"}) and the calls between them, as pairs
+ * of indexes into the vertices ({@code "edges"}). {@code diff} responses of
+ * valid scripts instead hold what changed in the call graph since the last
+ * valid version of the document, by procedure name, e.g.
+ * <pre>
+ * "diff":{"addedVertices":["h"],"removedVertices":[],
+ *         "addedEdges":[["h","g"]],"removedEdges":[["f","g"]]}
+ * </pre>
+ * so a view of the graph only has to redraw those parts.
+ */
+public final class PieDaemon {
+
+    /** The number of documents whose analyzers are kept around. */
+    private static final int MAX_DOCUMENTS = 256;
+
+    private static final String WARM_UP_SCRIPT = """
+            def g(a : Int32, b : Bool) : Int32 is
+                var c : Int32 := a + 1 + 2;
+                return c + a;
+            end
+
+            def f() : Void is
+                g(1, true);
+                g(2, false);
+            end
+            """;
+
+    private final Options options;
+
+    /** The analyzer of each open document, least recently used first. */
+    private final Map<String, PieAnalyzer> documents =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override protected boolean removeEldestEntry(
+                        Map.Entry<String, PieAnalyzer> eldest) {
+                    return size() > MAX_DOCUMENTS;
+                }
+            };
+
+    private volatile boolean stopped;
+
+    /** The socket being served (if any), closed to stop accepting clients. */
+    private volatile ServerSocketChannel server;
+
+    /** Creates a daemon that checks documents incrementally. */
+    public PieDaemon() {
+        this(new Options(true).withIncremental(true).withTwoStageParse(true));
+    }
+
+    /**
+     * Creates a daemon that analyzes documents with {@code options} (the
+     * analyzers always run silent: diagnostics only go into responses).
+     */
+    public PieDaemon(Options options) {
+        this.options = options.withRunSilent(true);
+    }
+
+    /**
+     * Runs the daemon: serves stdin/stdout, or the Unix-domain socket at
+     * {@code path} when started with {@code --socket path}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 0 && !(args.length == 2 && args[0].equals("--socket"))) {
+            System.err.println("usage: PieDaemon [--socket <path>]");
+            System.exit(2);
+        }
+        var daemon = new PieDaemon();
+        daemon.warmUp();
+        if (args.length == 0) {
+            daemon.serve(new BufferedReader(new InputStreamReader(System.in,
+                            StandardCharsets.UTF_8)),
+                    new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        }
+        else {
+            daemon.serve(Path.of(args[1]));
+        }
+    }
+
+    /**
+     * Analyzes a small script a few times, so that the ANTLR runtime is
+     * initialized and the hot paths are compiled before the first request.
+     */
+    public void warmUp() {
+        var analyzer = new PieAnalyzer().setOptions(options);
+        for (int i = 0; i < 200; i++) {
+            // alternate valid and invalid scripts (the error paths get warm too)
+            String text = i % 2 == 0 ? WARM_UP_SCRIPT
+                    : WARM_UP_SCRIPT.replace("1, true", "true, 1");
+            analyzer.setScriptCode("<warm-up>", text).analyze();
+        }
+    }
+
+    /**
+     * Answers the requests read from {@code in} on {@code out}, one line
+     * each, until {@code in} is exhausted or a {@code shutdown} request
+     * arrives.
+     */
+    public void serve(BufferedReader in, Writer out) throws IOException {
+        String line;
+        while (!stopped && (line = in.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            out.write(handle(line));
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    /**
+     * Listens on a Unix-domain socket at {@code path}, answering the
+     * requests of each client (see {@link #serve(BufferedReader, Writer)})
+     * on a thread of its own, until a {@code shutdown} request arrives.
+     */
+    public void serve(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        try (var channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.bind(UnixDomainSocketAddress.of(path));
+            server = channel;
+            while (!stopped) {
+                SocketChannel client;
+                try {
+                    client = channel.accept();
+                } catch (AsynchronousCloseException e) {
+                    // closed by a shutdown request
+                    break;
+                }
+                Thread.ofPlatform().daemon().start(() -> serveClient(client));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private void serveClient(SocketChannel client) {
+        try (client) {
+            serve(new BufferedReader(Channels.newReader(client,
+                            StandardCharsets.UTF_8)),
+                    Channels.newWriter(client, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // the client went away, nothing to answer
+        }
+    }
+
+    /**
+     * Handles the request in {@code line}, returning the response line
+     * (without a line terminator). Requests are handled one at a time, since
+     * analyzers aren't thread safe.
+     */
+    public synchronized String handle(String line) {
+        long start = System.nanoTime();
+        Map<String, Object> response = new LinkedHashMap<>();
+        Object id = null;
+        try {
+            var request = Json.parseObject(line);
+            id = request.get("id");
+            response.put("id", id);
+            dispatch(request, response);
+        } catch (IOException | RuntimeException e) {
+            // a bad request (or a file that can't be read) only fails
+            // that request, the daemon keeps going
+            response.clear();
+            response.put("id", id);
+            response.put("ok", false);
+            response.put("error", String.valueOf(e.getMessage()));
+        }
+        response.put("micros", (System.nanoTime() - start) / 1000);
+        return Json.write(response);
+    }
+
+    private void dispatch(Map<String, Object> request,
+                          Map<String, Object> response) throws IOException {
+        String op = stringField(request, "op");
+        switch (op) {
+            case "ping" -> response.put("ok", true);
+            case "shutdown" -> {
+                stopped = true;
+                var channel = server;
+                if (channel != null) {
+                    channel.close();
+                }
+                response.put("ok", true);
+            }
+            case "close" -> {
+                documents.remove(documentKey(request));
+                response.put("ok", true);
+            }
+            case "check", "graph", "export", "diff" -> {
+                var result = analyzerFor(request).analyze();
+                response.put("ok", true);
+                response.put("valid", result.isOk());
+                response.put("diagnostics", result.isOk()
+                        ? List.of() : diagnostics(result.getError()));
+                if (result.isOk() && op.equals("graph")) {
+                    putGraph(result.get(), response);
+                }
+                else if (result.isOk() && op.equals("export")) {
+                    export(request, result.get(), response);
+                }
+                else if (result.isOk() && op.equals("diff")) {
+                    putDiff(documents.get(documentKey(request)).graphDiff(),
+                            response);
+                }
+            }
+            default -> throw new IllegalArgumentException("unknown op: " + op);
+        }
+    }
+
+    /** Returns the analyzer for the document in {@code request}, with its current text set. */
+    private PieAnalyzer analyzerFor(Map<String, Object> request) throws IOException {
+        String key = documentKey(request);
+        // (files are read rather than mapped: the analyzer keeps its input
+        // between requests, and an editor truncating a mapped file would
+        // make reading it crash the daemon)
+        TextInput source = request.containsKey("path")
+                ? TextInput.read(Path.of(key))
+                : new TextInput(key, stringField(request, "text"));
+        var analyzer = documents.get(key);
+        if (analyzer == null) {
+            analyzer = new PieAnalyzer().setOptions(options);
+            documents.put(key, analyzer);
+        }
+        return analyzer.setScript(source);
+    }
+
+    private static String documentKey(Map<String, Object> request) {
+        return request.containsKey("path")
+                ? stringField(request, "path")
+                : stringField(request, "name");
+    }
+
+    private static List<Object> diagnostics(List<PieErrorMessage> errors) {
+        List<Object> result = new ArrayList<>(errors.size());
+        for (var err : errors) {
+            Map<String, Object> d = new LinkedHashMap<>();
+            d.put("kind", err.kind());
+            d.put("type", err.getClass().getSimpleName());
+            d.put("message", err.message());
+            d.put("line", err.loc().beginLine());
+            d.put("col", err.loc().beginCol());
+            d.put("endLine", err.loc().endLine());
+            d.put("endCol", err.loc().endCol());
+            result.add(d);
+        }
+        return result;
+    }
+
+    private static void putGraph(CheckedScript script,
+                                 Map<String, Object> response) {
+        var g = script.graph().freeze();
+        List<Object> vertices = new ArrayList<>(g.vertexCount());
+        for (int u = 0; u < g.vertexCount(); u++) {
+            vertices.add(g.vertex(u).name());
+        }
+        List<Object> edges = new ArrayList<>(g.edgeCount());
+        g.forEachEdge((u, v) -> edges.add(List.of(u, v)));
+        response.put("vertices", vertices);
+        response.put("edges", edges);
+    }
+
+    private static void putDiff(GraphDiff<ProcNode> diff,
+                                Map<String, Object> response) {
+        Map<String, Object> d = new LinkedHashMap<>();
+        d.put("addedVertices", names(diff.addedVertices()));
+        d.put("removedVertices", names(diff.removedVertices()));
+        d.put("addedEdges", edgeNames(diff.addedEdges()));
+        d.put("removedEdges", edgeNames(diff.removedEdges()));
+        response.put("diff", d);
+    }
+
+    private static List<Object> names(List<ProcNode> procs) {
+        List<Object> result = new ArrayList<>(procs.size());
+        for (var p : procs) {
+            result.add(p.name());
+        }
+        return result;
+    }
+
+    private static List<Object> edgeNames(List<Pair<ProcNode, ProcNode>> edges) {
+        List<Object> result = new ArrayList<>(edges.size());
+        for (var e : edges) {
+            result.add(List.of(e.first().name(), e.second().name()));
+        }
+        return result;
+    }
+
+    private void export(Map<String, Object> request, CheckedScript script,
+                        Map<String, Object> response) throws IOException {
+        var out = Path.of(stringField(request, "out"));
+        String title = request.get("title") instanceof String t
+                ? t : documentKey(request);
+        var analyzer = documents.get(documentKey(request));
+        switch (stringField(request, "format")) {
+            case "dot" -> analyzer.exportDot(script.graph(), out, title);
+            case "json" -> analyzer.exportJsonLines(script.graph(), out, title);
+            case "png" -> analyzer.exportGraph(script.graph(), out.toString(), title);
+            default -> throw new IllegalArgumentException(
+                    "unknown format: " + request.get("format"));
+        }
+        response.put("out", out.toString());
+    }
+
+    private static String stringField(Map<String, Object> request, String name) {
+        if (request.get(name) instanceof String s) {
+            return s;
+        }
+        throw new IllegalArgumentException("missing string field: " + name);
+    }
+}
@@ -12,4 +12,12 @@ public interface PieErrorMessage {
 
     /** Returns a short description of the message. */
     String message();
+
+    /**
+     * Returns the message followed by the source line it points at (only
+     * resolved when called, i.e. when the message is actually printed).
+     */
+    default String render() {
+        return message() + "\n" + loc().snippet();
+    }
 }
@@ -1,22 +1,27 @@
 package edu.psu.ist.analyzer;
 
+import antlr4.PieToken;
 import antlr4.edu.psu.ist.parser.PiethonBaseListener;
 import antlr4.edu.psu.ist.parser.PiethonParser;
 import edu.psu.ist.analyzer.entry.SymbolTableEntry;
+import edu.psu.ist.analyzer.errors.ErrorLimitReachedException;
+import edu.psu.ist.analyzer.errors.SemanticError;
 import edu.psu.ist.analyzer.utils.Result;
+import edu.psu.ist.analyzer.utils.ScopedSymbolTable;
 import edu.psu.ist.analyzer.utils.SourceLocation;
+import edu.psu.ist.analyzer.utils.SymbolInterner;
 import edu.psu.ist.analyzer.utils.TextInput;
 import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public final class PieScriptCheckingListener extends PiethonBaseListener {
 
-    // todo: read readme for needed items
-
     /**
      * A list that accumulates any errors found while traversing the tree for
      * this script.
@@ -36,12 +41,141 @@ public final class PieScriptCheckingListener extends PiethonBaseListener {
      */
     private final PiethonParser.ScriptContext hostContext;
 
-    // todo add a field for exp tpe checking...
+    /**
+     * Maps identifier text to symbol ids. Identifier tokens produced by an
+     * {@link antlr4.InterningTokenFactory} sharing this interner already
+     * carry their id, so names are only hashed here for other tokens.
+     */
+    private final SymbolInterner symbols;
+
+    /** Whether token symbol ids came from {@link #symbols} (and can be used). */
+    private final boolean tokensInterned;
+
+    /**
+     * A table that keeps track of all global procedures seen so far in the
+     * script. This shouldn't get erased at any point during the walk.
+     * ({@code null} when procedures are looked up in {@link #signatures}).
+     */
+    private final ScopedSymbolTable<SymbolTableEntry.ProcDefEntry> procedures;
+
+    /**
+     * The signatures of all procedures in the script, when this listener
+     * checks a run of definitions on its own ({@code null} otherwise).
+     */
+    private final ParallelChecker.Signatures signatures;
+
+    /** The index (in the script) of the definition being walked. */
+    private int defIndex;
+
+    /**
+     * A table that holds the local scope for the procedure currently being
+     * walked (a scope is pushed on entering each procedure and popped on
+     * exiting it).
+     * <p>
+     * Invariant: this will map symbols (identifiers) to either: formal
+     * parameters or variables definitions (procedures can't be defined within
+     * other procedures)
+     */
+    private final ScopedSymbolTable<SymbolTableEntry> locals =
+            new ScopedSymbolTable<>();
+
+    /**
+     * The types of the expressions exited so far that haven't been consumed
+     * by their parent yet (innermost on top). Walks exit an expression only
+     * after all of its operands, so types are evaluated bottom-up on this
+     * stack, never by recursing into subexpressions.
+     */
+    private PieType[] expTypes = new PieType[16];
+    private int expDepth;
+
+    /** The number of errors to stop the walk at ({@code 0} for no limit). */
+    private int maxErrors;
+
+    /** The number of return statements seen in the current procedure. */
+    private int currReturnCount;
+
+    /** The entry for the most recently exited procedure definition. */
+    private SymbolTableEntry.ProcDefEntry lastProcedure;
+
+    /**
+     * When non-null, records every procedure name looked up during the walk
+     * and what it resolved to ({@code null} if nothing).
+     */
+    private final Map<Integer, SymbolTableEntry.ProcDefEntry> procLookups;
 
     public PieScriptCheckingListener(TextInput source,
                                      PiethonParser.ScriptContext hostContext) {
         this.source = source;
         this.hostContext = hostContext;
+        this.symbols = new SymbolInterner();
+        this.tokensInterned = false;
+        this.procedures = new ScopedSymbolTable<>();
+        this.signatures = null;
+        this.procLookups = null;
+    }
+
+    /**
+     * Creates a listener that resolves names using the symbol ids assigned by
+     * {@code symbols} (the interner the script's tokens were lexed with).
+     */
+    public PieScriptCheckingListener(TextInput source,
+                                     PiethonParser.ScriptContext hostContext,
+                                     SymbolInterner symbols) {
+        this.source = source;
+        this.hostContext = hostContext;
+        this.symbols = symbols;
+        this.tokensInterned = true;
+        this.procedures = new ScopedSymbolTable<>();
+        this.signatures = null;
+        this.procLookups = null;
+    }
+
+    /**
+     * Creates a listener for checking one procedure definition at a time.
+     * The {@code procedures} table should hold the procedures defined before
+     * the one being walked; it gets updated as definitions are exited.
+     * Procedure lookups are recorded (see {@link #procedureLookups()}).
+     */
+    PieScriptCheckingListener(TextInput source, SymbolInterner symbols,
+                              ScopedSymbolTable<SymbolTableEntry.ProcDefEntry> procedures) {
+        this.source = source;
+        this.hostContext = null;
+        this.symbols = symbols;
+        this.tokensInterned = true;
+        this.procedures = procedures;
+        this.signatures = null;
+        this.procLookups = new HashMap<>();
+    }
+
+    /**
+     * Creates a listener for checking the consecutive definitions starting
+     * with the script's {@code firstDef}-th (counting from 0), independently
+     * of the others: procedures are looked up in {@code signatures}, where
+     * each definition only sees those defined before it. The symbols are
+     * only read, so listeners for different definitions can walk at the
+     * same time.
+     */
+    PieScriptCheckingListener(TextInput source, SymbolInterner symbols,
+                              ParallelChecker.Signatures signatures,
+                              int firstDef) {
+        this.source = source;
+        this.hostContext = null;
+        this.symbols = symbols;
+        this.tokensInterned = true;
+        this.procedures = null;
+        this.signatures = signatures;
+        this.defIndex = firstDef - 1;
+        this.procLookups = null;
+    }
+
+    /**
+     * Makes the listener throw an {@link ErrorLimitReachedException}
+     * (stopping the walk) once {@code maxErrors} errors were found
+     * ({@code 0} for no limit).
+     */
+    public PieScriptCheckingListener setMaxErrors(int maxErrors) {
+        this.maxErrors = maxErrors;
+        return this;
     }
 
     /** This method should only be called once the treewalk has completed. */
@@ -57,18 +191,243 @@ public final class PieScriptCheckingListener extends PiethonBaseListener {
         }
     }
 
-    // todo todo
+    /** Returns the errors found so far (in the order they were found). */
+    List<PieErrorMessage> errors() {
+        return errors;
+    }
+
+    /** Returns the entry of the procedure definition exited most recently. */
+    SymbolTableEntry.ProcDefEntry lastProcedure() {
+        return lastProcedure;
+    }
+
+    /**
+     * Returns the procedure symbols looked up during the walk along with what
+     * they resolved to (only recorded for single definition listeners).
+     */
+    Map<Integer, SymbolTableEntry.ProcDefEntry> procedureLookups() {
+        return procLookups;
+    }
+
+    // procedures
+
+    @Override public void enterDef(PiethonParser.DefContext ctx) {
+        // each procedure gets a fresh local scope
+        locals.pushScope();
+        currReturnCount = 0;
+        defIndex++;
+    }
+
+    @Override public void exitDef(PiethonParser.DefContext ctx) {
+        PieType retType = typeOf(ctx.retType);
+        var stmts = ctx.statement();
+
+        // non-Void procedures must end in a single return statement
+        if (retType != PieType.Void && (currReturnCount != 1 ||
+                !(stmts.get(stmts.size() - 1) instanceof PiethonParser.ReturnStmtContext))) {
+            report(new SemanticError.TooFewOrTooManyReturns(1, mkSl(ctx)));
+        }
+
+        int sym = symbolOf(ctx.name);
+        var entry = signatureOf(ctx);
+        if (lookupProc(sym) != null) {
+            report(new SemanticError.DupSymbol(entry.name(),
+                    SymbolKind.Procedure, mkSl(ctx)));
+        }
+        else if (procedures != null) {
+            procedures.define(sym, entry);
+        }
+        lastProcedure = entry;
+        locals.popScope();
+    }
+
+    /** Returns the entry (signature) for the procedure defined by {@code ctx}. */
+    SymbolTableEntry.ProcDefEntry signatureOf(PiethonParser.DefContext ctx) {
+        List<SymbolTableEntry.ParamDefEntry> fparams = new ArrayList<>();
+        if (ctx.paramList() != null) {
+            for (var p : ctx.paramList().paramDef()) {
+                fparams.add(new SymbolTableEntry.ParamDefEntry(p.name.getText(),
+                        typeOf(p.ty()), mkSl(p)));
+            }
+        }
+        return new SymbolTableEntry.ProcDefEntry(symbols.name(symbolOf(ctx.name)),
+                fparams, typeOf(ctx.retType), mkSl(ctx));
+    }
+
+    // local definitions
+
+    @Override public void exitParamDef(PiethonParser.ParamDefContext ctx) {
+        int sym = symbolOf(ctx.name);
+        String name = symbols.name(sym);
+        if (!locals.define(sym, new SymbolTableEntry.ParamDefEntry(name,
+                typeOf(ctx.ty()), mkSl(ctx)))) {
+            report(new SemanticError.DupSymbol(name, SymbolKind.Parameter,
+                    mkSl(ctx)));
+        }
+    }
+
+    @Override public void exitVarDef(PiethonParser.VarDefContext ctx) {
+        int sym = symbolOf(ctx.name);
+        String name = symbols.name(sym);
+        PieType declared = typeOf(ctx.type);
+        expectType(declared, popType(), ctx.exp());
+
+        if (!locals.define(sym, new SymbolTableEntry.VarDefEntry(name,
+                declared, mkSl(ctx)))) {
+            report(new SemanticError.DupSymbol(name, SymbolKind.Variable,
+                    mkSl(ctx)));
+        }
+    }
+
+    // statements
+
+    @Override public void exitAssignStmt(PiethonParser.AssignStmtContext ctx) {
+        PieType actual = popType();
+        var entry = locals.lookup(symbolOf(ctx.name));
+        if (entry == null) {
+            report(new SemanticError.NoSuchSymbol(ctx.name.getText(),
+                    mkSl(ctx)));
+            return;
+        }
+        expectType(entry.tpe(), actual, ctx.exp());
+    }
+
+    @Override public void exitCallStmt(PiethonParser.CallStmtContext ctx) {
+        List<PiethonParser.ExpContext> args = ctx.expList() == null
+                ? List.of()
+                : ctx.expList().exp();
+        // the argument types are the top args.size() entries of the stack
+        int base = expDepth - args.size();
+        expDepth = base;
+
+        var proc = lookupProc(symbolOf(ctx.name));
+        if (proc == null) {
+            report(new SemanticError.NoSuchSymbol(ctx.name.getText(),
+                    mkSl(ctx)));
+            return;
+        }
+        if (args.size() != proc.fparams().size()) {
+            report(new SemanticError.ArgCountMismatch(
+                    proc.fparams().size(), args.size(), mkSl(ctx)));
+            return;
+        }
+        for (int i = 0; i < args.size(); i++) {
+            expectType(proc.fparams().get(i).tpe(), expTypes[base + i],
+                    args.get(i));
+        }
+    }
+
+    @Override public void exitReturnStmt(PiethonParser.ReturnStmtContext ctx) {
+        currReturnCount++;
+        var def = (PiethonParser.DefContext) ctx.getParent();
+        expectType(typeOf(def.retType), popType(), ctx.exp());
+    }
+
+    // expressions
+
+    @Override public void exitAddExp(PiethonParser.AddExpContext ctx) {
+        PieType right = popType();
+        PieType left = popType();
+        boolean ok = expectType(PieType.Int32, left, ctx.left);
+        ok = expectType(PieType.Int32, right, ctx.right) && ok;
+        pushType(ok ? PieType.Int32 : PieType.Error);
+    }
+
+    @Override public void exitVarRefExp(PiethonParser.VarRefExpContext ctx) {
+        var entry = locals.lookup(symbolOf(ctx.name));
+        if (entry == null) {
+            report(new SemanticError.NoSuchSymbol(ctx.name.getText(),
+                    mkSl(ctx)));
+            pushType(PieType.Error);
+            return;
+        }
+        pushType(entry.tpe());
+    }
+
+    @Override public void exitTrueExp(PiethonParser.TrueExpContext ctx) {
+        pushType(PieType.Bool);
+    }
+
+    @Override public void exitFalseExp(PiethonParser.FalseExpContext ctx) {
+        pushType(PieType.Bool);
+    }
+
+    @Override public void exitIntExp(PiethonParser.IntExpContext ctx) {
+        pushType(PieType.Int32);
+    }
+
+    private void pushType(PieType t) {
+        if (expDepth == expTypes.length) {
+            expTypes = Arrays.copyOf(expTypes, expDepth * 2);
+        }
+        expTypes[expDepth++] = t;
+    }
+
+    private PieType popType() {
+        return expTypes[--expDepth];
+    }
+
+    /**
+     * Reports a {@link SemanticError.TypeMismatch} if the {@code actual} type
+     * computed for {@code exp} isn't {@code expected}. Expressions that
+     * already have the {@link PieType#Error} type aren't reported again.
+     */
+    private boolean expectType(PieType expected, PieType actual,
+                               PiethonParser.ExpContext exp) {
+        if (actual == PieType.Error) {
+            return false;
+        }
+        if (actual != expected) {
+            report(new SemanticError.TypeMismatch(expected, actual,
+                    mkSl(exp)));
+            return false;
+        }
+        return true;
+    }
+
+    private void report(PieErrorMessage err) {
+        errors.add(err);
+        if (errors.size() == maxErrors) {
+            throw new ErrorLimitReachedException(errors);
+        }
+    }
+
+    private SymbolTableEntry.ProcDefEntry lookupProc(int sym) {
+        var result = signatures != null
+                ? signatures.lookup(sym, defIndex)
+                : procedures.lookup(sym);
+        if (procLookups != null) {
+            procLookups.put(sym, result);
+        }
+        return result;
+    }
+
+    /** Returns the symbol id of the identifier token {@code name}. */
+    int symbolOf(Token name) {
+        if (tokensInterned && name instanceof PieToken t && t.symbol() >= 0) {
+            return t.symbol();
+        }
+        return symbols.intern(name.getText());
+    }
+
+    private static PieType typeOf(PiethonParser.TyContext ty) {
+        if (ty instanceof PiethonParser.BoolTyContext) {
+            return PieType.Bool;
+        }
+        else if (ty instanceof PiethonParser.IntTyContext) {
+            return PieType.Int32;
+        }
+        return PieType.Void;
+    }
 
     /**
      * Helper method for constructing a {@link SourceLocation} from an antlr4
      * {@link ParserRuleContext}.
      */
     public SourceLocation mkSl(ParserRuleContext ctx) {
-        var start = ctx.start;
-        var stop = ctx.start;
-        return new SourceLocation(source, start.getLine(),
-                start.getCharPositionInLine(), stop.getLine(),
-                stop.getCharPositionInLine());
+        int start = ctx.start.getStartIndex();
+        int end = ctx.stop != null ? ctx.stop.getStopIndex() + 1 : start;
+        return new SourceLocation(source, start, Math.max(start, end));
     }
 
 }
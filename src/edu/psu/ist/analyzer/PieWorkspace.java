@@ -0,0 +1,199 @@
+package edu.psu.ist.analyzer;
+
+import edu.psu.ist.analyzer.errors.ReadError;
+import edu.psu.ist.analyzer.utils.Digraph;
+import edu.psu.ist.analyzer.utils.Options;
+import edu.psu.ist.analyzer.utils.Result;
+import edu.psu.ist.analyzer.utils.TextInput;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+/**
+ * Analyzes many {@code .pie} scripts at once. Each script gets its own
+ * {@link PieAnalyzer} (analyzers aren't thread safe), and the scripts are
+ * spread across the worker threads of a {@link ForkJoinPool}.
+ * <p>
+ * Results are always reported in the order the scripts were added (scripts
+ * added through {@link #addDirectory(Path)} are ordered by path), regardless
+ * of which thread finished first.
+ * <p>
+ * With an {@link AnalysisCache} set, scripts whose outcome is already in
+ * the cache aren't analyzed again.
+ */
+public final class PieWorkspace {
+
+    /** The scripts to analyze, in the order they were added. */
+    private final List<Entry> entries = new ArrayList<>();
+
+    /** Settings shared by every script in this workspace. */
+    private Options options = new Options(false);
+
+    /** The number of worker threads used by {@link #analyze()}. */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /** Where outcomes are looked up and stored ({@code null} for none). */
+    private AnalysisCache cache;
+
+    /** Adds a single in-memory script to this workspace. */
+    public PieWorkspace addScript(TextInput source) {
+        if (source == null) {
+            throw new IllegalArgumentException("source should not be null");
+        }
+        entries.add(new Entry(null, source));
+        return this;
+    }
+
+    /** Adds each of the given in-memory {@code sources} to this workspace. */
+    public PieWorkspace addScripts(List<TextInput> sources) {
+        for (var source : sources) {
+            addScript(source);
+        }
+        return this;
+    }
+
+    /**
+     * Adds every {@code .pie} file found under {@code dir} (recursively).
+     * Files are only mapped (see {@link TextInput#mapped}) once
+     * {@link #analyze()} runs, so adding a large directory is cheap.
+     */
+    public PieWorkspace addDirectory(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            throw new IllegalArgumentException("not a directory: " + dir);
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.filter(Files::isRegularFile)
+                    .filter(p -> p.getFileName().toString().endsWith(".pie"))
+                    .sorted()
+                    .forEach(p -> entries.add(new Entry(p, null)));
+        }
+        return this;
+    }
+
+    public PieWorkspace setOptions(Options o) {
+        this.options = o;
+        return this;
+    }
+
+    /** Sets the number of worker threads (defaults to the number of cores). */
+    public PieWorkspace setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Makes {@link #analyze()} reuse the outcomes stored in {@code cache}
+     * (and store new ones there); {@code null} turns caching off.
+     */
+    public PieWorkspace setCache(AnalysisCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Parses, checks, and builds the call graph of every script in this
+     * workspace in parallel. A script file that can't be read gets a
+     * {@link ReadError} as its result; the other scripts are still analyzed.
+     */
+    public WorkspaceResult analyze() {
+        // the per-script analyzers always run silent -- printing from many
+        // threads would interleave the diagnostics of different scripts
+        var scriptOpts = options.withRunSilent(true);
+        List<ScriptResult> results = new ArrayList<>(entries.size());
+
+        var pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<ScriptResult>> tasks =
+                    new ArrayList<>(entries.size());
+            for (var entry : entries) {
+                tasks.add(pool.submit(() -> analyzeOne(entry, scriptOpts)));
+            }
+            // joining in submission order keeps the results stable
+            for (var task : tasks) {
+                results.add(task.join());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        if (cache != null) {
+            cache.trim();
+        }
+
+        int errorCount = 0;
+        for (var r : results) {
+            if (r.result().isError()) {
+                errorCount += r.result().getError().size();
+                if (!options.runSilent()) {
+                    r.result().getError().forEach(
+                            e -> System.err.println(e.render()));
+                }
+            }
+        }
+        return new WorkspaceResult(results, errorCount);
+    }
+
+    private ScriptResult analyzeOne(Entry entry, Options opts) {
+        TextInput source;
+        try {
+            source = entry.load();
+        } catch (IOException e) {
+            String path = entry.path().toString();
+            return new ScriptResult(path, Result.err(List.of(
+                    ReadError.of(path, readFailure(e)))));
+        }
+        if (cache != null) {
+            return new ScriptResult(source.name(),
+                    cache.getOrAnalyze(source, opts));
+        }
+        var analyzer = new PieAnalyzer().setOptions(opts).setScript(source);
+
+        var result = analyzer.analyze();
+        if (result.isError()) {
+            return new ScriptResult(source.name(),
+                    Result.err(result.getError()));
+        }
+        return new ScriptResult(source.name(), Result.ok(result.get().graph()));
+    }
+
+    /** Describes why reading a script failed, e.g. "no such file". */
+    private static String readFailure(IOException e) {
+        return e instanceof NoSuchFileException
+                ? "no such file"
+                : String.valueOf(e.getMessage());
+    }
+
+    /** A script that's either already in memory or still on disk. */
+    private record Entry(Path path, TextInput source) {
+
+        TextInput load() throws IOException {
+            return source != null ? source : TextInput.mapped(path);
+        }
+    }
+
+    /**
+     * The outcome of analyzing one script: either its call graph or the
+     * errors found in it.
+     */
+    public record ScriptResult(String name,
+                               Result<Digraph<ProcNode>, List<PieErrorMessage>> result) {
+    }
+
+    /**
+     * The outcome of {@link #analyze()}.
+     *
+     * @param scripts    the per-script results, in the order scripts were added.
+     * @param errorCount the total number of errors across all scripts.
+     */
+    public record WorkspaceResult(List<ScriptResult> scripts, int errorCount) {
+    }
+}
@@ -0,0 +1,64 @@
+package edu.psu.ist.analyzer;
+
+import edu.psu.ist.analyzer.utils.Digraph;
+import guru.nidi.graphviz.attribute.Color;
+import guru.nidi.graphviz.attribute.Font;
+import guru.nidi.graphviz.attribute.Label;
+import guru.nidi.graphviz.attribute.Rank;
+import guru.nidi.graphviz.attribute.Shape;
+import guru.nidi.graphviz.attribute.Style;
+import guru.nidi.graphviz.engine.Format;
+import guru.nidi.graphviz.engine.Graphviz;
+import guru.nidi.graphviz.model.MutableGraph;
+import guru.nidi.graphviz.model.MutableNode;
+
+import java.io.File;
+import java.io.IOException;
+
+import static guru.nidi.graphviz.model.Factory.mutGraph;
+import static guru.nidi.graphviz.model.Factory.mutNode;
+
+/**
+ * Renders call graphs as png images with graphviz-java.
+ * <p>
+ * This is the only class that refers to graphviz-java, so the library (and
+ * the rendering engine it starts) is only loaded once a png is actually
+ * requested; runs that just check scripts, or export DOT/JSON, never touch
+ * it.
+ */
+final class PngRenderer {
+
+    private PngRenderer() {
+    }
+
+    /**
+     * Renders {@code g} as a png: entry points (procedures nobody calls) are
+     * green, leaves (procedures that call nothing) are orange, and everything
+     * else is blue.
+     */
+    static void render(Digraph<ProcNode> g, File out,
+                       String graphTitle) throws IOException {
+        var compact = g.freeze();
+        MutableGraph graph = mutGraph(graphTitle).setDirected(true);
+        graph.graphAttrs().add(Label.of(graphTitle), Rank.dir(Rank.RankDir.TOP_TO_BOTTOM),
+                Font.name("Helvetica"));
+        graph.nodeAttrs().add(Shape.RECTANGLE, Style.combine(Style.ROUNDED, Style.FILLED),
+                Font.name("Helvetica"));
+        graph.linkAttrs().add(Color.rgb("#475569"));
+
+        MutableNode[] nodes = new MutableNode[compact.vertexCount()];
+        for (int u = 0; u < nodes.length; u++) {
+            Color fill = compact.inDegree(u) == 0 ? Color.rgb("#bbf7d0")
+                    : compact.outDegree(u) == 0 ? Color.rgb("#fed7aa")
+                    : Color.rgb("#bfdbfe");
+            nodes[u] = mutNode(compact.vertex(u).toString()).add(fill.fill());
+            graph.add(nodes[u]);
+        }
+        for (int u = 0; u < nodes.length; u++) {
+            for (int e = compact.outStart(u); e < compact.outEnd(u); e++) {
+                nodes[u].addLink(nodes[compact.target(e)]);
+            }
+        }
+        Graphviz.fromGraph(graph).render(Format.PNG).toFile(out);
+    }
+}
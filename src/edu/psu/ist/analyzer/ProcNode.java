@@ -4,7 +4,8 @@ import edu.psu.ist.analyzer.utils.Digraph;
 
 /**
  * A basic node type to represent a procedure. In this project, this will use
- * the vertex type when using your {@link Digraph} in the {@link PieGraphBuildingListener} class.
+ * the vertex type of the call graph {@link Digraph} (see
+ * {@link PieAnalyzer#buildGraph(edu.psu.ist.analyzer.ast.PieAst)}).
  * <p>
  * Add any additional fields/components to this record class if you need
  * additional info when generating the call graph PNG in {@link PieAnalyzer#exportGraph(Digraph, String, String)}
@@ -14,6 +15,18 @@ import edu.psu.ist.analyzer.utils.Digraph;
  */
 public record ProcNode(String name){
 
+    // equals/hashCode are written out (rather than generated): the
+    // generated ones are bootstrapped on first use, which is a noticeable
+    // part of a short check run since every graph hashes its nodes
+
+    @Override public boolean equals(Object o) {
+        return o instanceof ProcNode that && name.equals(that.name);
+    }
+
+    @Override public int hashCode() {
+        return name.hashCode();
+    }
+
     @Override public String toString() {
         return String.format("%s(..)", name);
     }
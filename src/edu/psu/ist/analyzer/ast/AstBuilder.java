@@ -0,0 +1,225 @@
+package edu.psu.ist.analyzer.ast;
+
+import antlr4.IterativeTreeWalker;
+import antlr4.PieToken;
+import antlr4.edu.psu.ist.parser.PiethonParser;
+import edu.psu.ist.analyzer.PieType;
+import edu.psu.ist.analyzer.utils.ScopedSymbolTable;
+import edu.psu.ist.analyzer.utils.SymbolInterner;
+import edu.psu.ist.analyzer.utils.TextInput;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.Arrays;
+
+/**
+ * Lowers a (checked) parse tree into a {@link PieAst} during a tree walk.
+ * <p>
+ * Rule contexts that carry no meaning of their own (param/argument lists,
+ * type annotations) and all tokens are dropped; identifiers are kept as
+ * symbol ids and expression types are resolved along the way. The builder
+ * can share a walk with other listeners (see
+ * {@link antlr4.CompositeParseTreeListener}), but it needs a walk over a
+ * finished tree -- it can't be used as a parse listener.
+ */
+public final class AstBuilder implements ParseTreeListener {
+
+    private static final byte NO_TYPE = -1;
+
+    private static final PieType[] TYPES = PieType.values();
+
+    private final TextInput source;
+    private final SymbolInterner symbols;
+
+    private int size;
+    private byte[] kinds = new byte[256];
+    private byte[] types = new byte[256];
+    private int[] data = new int[256];
+    private int[] ends = new int[256];
+    private int[] offsets = new int[256];
+
+    /** The ids of the nodes currently being built (innermost on top). */
+    private int[] open = new int[64];
+    private int depth;
+
+    /** The types of the params/vars of the procedure being lowered. */
+    private final ScopedSymbolTable<PieType> locals = new ScopedSymbolTable<>();
+
+    public AstBuilder(TextInput source, SymbolInterner symbols) {
+        this.source = source;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Lowers {@code def} on its own, into a tree rooted at its
+     * {@link AstKind#Def} node. The tree has no source (its locations are
+     * the offsets {@code def} was parsed at); it's only meant to be put
+     * together with others by {@link PieAst#concat}.
+     */
+    public static PieAst lowerDef(PiethonParser.DefContext def,
+                                  SymbolInterner symbols) {
+        var builder = new AstBuilder(null, symbols);
+        IterativeTreeWalker.DEFAULT.walk(builder, def);
+        return builder.build();
+    }
+
+    /** Returns the lowered tree (call once the walk has completed). */
+    public PieAst build() {
+        if (depth != 0) {
+            throw new IllegalStateException("walk hasn't completed");
+        }
+        return new PieAst(source, symbols, size,
+                Arrays.copyOf(kinds, size), Arrays.copyOf(types, size),
+                Arrays.copyOf(data, size), Arrays.copyOf(ends, size),
+                Arrays.copyOf(offsets, size));
+    }
+
+    // (dispatching on rule indexes and instanceof rather than with a pattern
+    // switch: these run for every node, and a pattern switch is costly to
+    // bootstrap and slow until it's compiled, which shows in short runs)
+
+    @Override public void enterEveryRule(ParserRuleContext ctx) {
+        switch (ctx.getRuleIndex()) {
+            case PiethonParser.RULE_script -> open(AstKind.Script, ctx, NO_TYPE, 0);
+            case PiethonParser.RULE_def -> {
+                var d = (PiethonParser.DefContext) ctx;
+                locals.pushScope();
+                open(AstKind.Def, d, typeOf(d.retType), symbolOf(d.name));
+            }
+            case PiethonParser.RULE_paramDef -> {
+                var p = (PiethonParser.ParamDefContext) ctx;
+                byte t = typeOf(p.ty());
+                int sym = symbolOf(p.name);
+                locals.define(sym, TYPES[t]);
+                open(AstKind.Param, p, t, sym);
+            }
+            case PiethonParser.RULE_varDef -> {
+                var v = (PiethonParser.VarDefContext) ctx;
+                open(AstKind.VarDef, v, typeOf(v.type), symbolOf(v.name));
+            }
+            case PiethonParser.RULE_statement -> enterStatement(ctx);
+            case PiethonParser.RULE_exp -> enterExp(ctx);
+            default -> {
+                // not part of the ast
+            }
+        }
+    }
+
+    private void enterStatement(ParserRuleContext ctx) {
+        if (ctx instanceof PiethonParser.AssignStmtContext a) {
+            open(AstKind.Assign, a, NO_TYPE, symbolOf(a.name));
+        }
+        else if (ctx instanceof PiethonParser.CallStmtContext c) {
+            open(AstKind.Call, c, NO_TYPE, symbolOf(c.name));
+        }
+        else {
+            open(AstKind.Return, ctx, NO_TYPE, 0);
+        }
+    }
+
+    private void enterExp(ParserRuleContext ctx) {
+        if (ctx instanceof PiethonParser.AddExpContext) {
+            open(AstKind.Add, ctx, ordinal(PieType.Int32), 0);
+        }
+        else if (ctx instanceof PiethonParser.VarRefExpContext v) {
+            int sym = symbolOf(v.name);
+            PieType t = locals.lookup(sym);
+            open(AstKind.VarRef, v, ordinal(t == null ? PieType.Error : t),
+                    sym);
+        }
+        else if (ctx instanceof PiethonParser.IntExpContext i) {
+            open(AstKind.Int, i, ordinal(PieType.Int32),
+                    intValue(i.n.getText()));
+        }
+        else if (ctx instanceof PiethonParser.TrueExpContext) {
+            open(AstKind.True, ctx, ordinal(PieType.Bool), 0);
+        }
+        else {
+            open(AstKind.False, ctx, ordinal(PieType.Bool), 0);
+        }
+    }
+
+    @Override public void exitEveryRule(ParserRuleContext ctx) {
+        switch (ctx.getRuleIndex()) {
+            case PiethonParser.RULE_varDef -> {
+                // only visible after its own initializer
+                int id = close();
+                locals.define(data[id], TYPES[types[id]]);
+            }
+            case PiethonParser.RULE_def -> {
+                close();
+                locals.popScope();
+            }
+            case PiethonParser.RULE_script, PiethonParser.RULE_paramDef,
+                 PiethonParser.RULE_statement, PiethonParser.RULE_exp -> close();
+            default -> {
+                // not part of the ast
+            }
+        }
+    }
+
+    @Override public void visitTerminal(TerminalNode node) {
+    }
+
+    @Override public void visitErrorNode(ErrorNode node) {
+    }
+
+    private void open(AstKind kind, ParserRuleContext ctx, byte type,
+                      int value) {
+        if (size == kinds.length) {
+            int n = size * 2;
+            kinds = Arrays.copyOf(kinds, n);
+            types = Arrays.copyOf(types, n);
+            data = Arrays.copyOf(data, n);
+            ends = Arrays.copyOf(ends, n);
+            offsets = Arrays.copyOf(offsets, n);
+        }
+        kinds[size] = (byte) kind.ordinal();
+        types[size] = type;
+        data[size] = value;
+        offsets[size] = ctx.start.getStartIndex();
+        if (depth == open.length) {
+            open = Arrays.copyOf(open, depth * 2);
+        }
+        open[depth++] = size++;
+    }
+
+    private int close() {
+        int id = open[--depth];
+        ends[id] = size;
+        return id;
+    }
+
+    private int symbolOf(Token name) {
+        if (name instanceof PieToken t && t.symbol() >= 0) {
+            return t.symbol();
+        }
+        return symbols.intern(name.getText());
+    }
+
+    private static byte ordinal(PieType t) {
+        return (byte) t.ordinal();
+    }
+
+    private static byte typeOf(PiethonParser.TyContext ty) {
+        if (ty instanceof PiethonParser.BoolTyContext) {
+            return ordinal(PieType.Bool);
+        }
+        else if (ty instanceof PiethonParser.IntTyContext) {
+            return ordinal(PieType.Int32);
+        }
+        return ordinal(PieType.Void);
+    }
+
+    /** Parses a decimal literal, wrapping to 32 bits like Int32 arithmetic. */
+    private static int intValue(String digits) {
+        int v = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            v = v * 10 + (digits.charAt(i) - '0');
+        }
+        return v;
+    }
+}
@@ -0,0 +1,55 @@
+package edu.psu.ist.analyzer.ast;
+
+/** The kinds of nodes in a {@link PieAst}. */
+public enum AstKind {
+
+    /** The root; its children are the procedure definitions. */
+    Script,
+
+    /** A procedure: its params, then its var defs, then its statements. */
+    Def,
+
+    /** A formal parameter (no children). */
+    Param,
+
+    /** A local variable definition; its child is the initializer. */
+    VarDef,
+
+    /** An assignment; its child is the assigned expression. */
+    Assign,
+
+    /** A procedure call; its children are the arguments. */
+    Call,
+
+    /** A return statement; its child is the returned expression. */
+    Return,
+
+    /** An addition; its children are the left and right operands. */
+    Add,
+
+    /** A reference to a parameter or local variable (no children). */
+    VarRef,
+
+    /** The {@code true} literal (no children). */
+    True,
+
+    /** The {@code false} literal (no children). */
+    False,
+
+    /** An integer literal (no children). */
+    Int;
+
+    private static final AstKind[] VALUES = values();
+
+    static AstKind of(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /** Returns {@code true} if nodes of this kind have a name. */
+    public boolean isNamed() {
+        return switch (this) {
+            case Def, Param, VarDef, Assign, Call, VarRef -> true;
+            default -> false;
+        };
+    }
+}
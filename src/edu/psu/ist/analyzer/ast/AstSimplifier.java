@@ -0,0 +1,287 @@
+package edu.psu.ist.analyzer.ast;
+
+import edu.psu.ist.analyzer.PieType;
+
+import java.util.Arrays;
+
+/**
+ * Simplifies the expressions of a checked {@link PieAst}, returning a new
+ * (smaller) tree that computes the same values:
+ * <ul>
+ *     <li>every {@code +} chain is flattened and its constant terms summed
+ *     (with Int32's wrapping semantics, under which {@code +} is associative
+ *     and commutative), so {@code 1 + x + 2} becomes {@code x + 3} and an
+ *     all-literal chain becomes a single literal;</li>
+ *     <li>a var whose (simplified) initializer is a constant and that is
+ *     never assigned to has its references replaced by that constant, and
+ *     its definition removed.</li>
+ * </ul>
+ * Procedures, params, calls and the order of everything else are left as
+ * they are, so the call graph of the result is the same as the original's.
+ */
+public final class AstSimplifier {
+
+    /**
+     * A simplified tree.
+     *
+     * @param ast        the simplified tree.
+     * @param eliminated how many nodes smaller it is than the original.
+     */
+    public record Simplified(PieAst ast, int eliminated) {
+    }
+
+    private static final byte NO_TYPE = -1;
+    private static final byte INT32 = (byte) PieType.Int32.ordinal();
+
+    private final PieAst in;
+
+    private int size;
+    private byte[] kinds;
+    private byte[] types;
+    private int[] data;
+    private int[] ends;
+    private int[] offsets;
+
+    /** The def in which each symbol is a known constant (else {@code -1}). */
+    private final int[] constantIn;
+
+    /** The def in which each symbol is assigned to (else {@code -1}). */
+    private final int[] assignedIn;
+
+    /** The value (and kind: Int, True or False) of each known constant. */
+    private final int[] constantValue;
+    private final AstKind[] constantKind;
+
+    /** The sum of the constant terms of the last chain flattened. */
+    private int sum;
+
+    /** The non-constant terms of the {@code +} chain being simplified. */
+    private int[] terms = new int[16];
+
+    /** Pending nodes of the {@code +} chain being flattened. */
+    private int[] pending = new int[16];
+
+    /** The Add nodes opened for the chain being emitted. */
+    private int[] adds = new int[16];
+
+    private AstSimplifier(PieAst in) {
+        this.in = in;
+        int n = in.size();
+        kinds = new byte[n];
+        types = new byte[n];
+        data = new int[n];
+        ends = new int[n];
+        offsets = new int[n];
+        int symbolCount = in.symbols().size();
+        constantIn = new int[symbolCount];
+        assignedIn = new int[symbolCount];
+        constantValue = new int[symbolCount];
+        constantKind = new AstKind[symbolCount];
+        Arrays.fill(constantIn, -1);
+        Arrays.fill(assignedIn, -1);
+    }
+
+    /** Simplifies the (checked, error free) script {@code ast}. */
+    public static Simplified simplify(PieAst ast) {
+        var s = new AstSimplifier(ast);
+        var out = s.run();
+        return new Simplified(out, ast.size() - out.size());
+    }
+
+    private PieAst run() {
+        int root = PieAst.ROOT;
+        int script = copy(root);
+        for (int def = root + 1; def < in.end(root); def = in.end(def)) {
+            simplifyDef(def);
+        }
+        ends[script] = size;
+        return new PieAst(in.source(), in.symbols(), size,
+                Arrays.copyOf(kinds, size), Arrays.copyOf(types, size),
+                Arrays.copyOf(data, size), Arrays.copyOf(ends, size),
+                Arrays.copyOf(offsets, size));
+    }
+
+    private void simplifyDef(int def) {
+        for (int n = def + 1; n < in.end(def); n = in.end(n)) {
+            if (in.kind(n) == AstKind.Assign) {
+                assignedIn[in.symbol(n)] = def;
+            }
+        }
+        int d = copy(def);
+        for (int n = def + 1; n < in.end(def); n = in.end(n)) {
+            switch (in.kind(n)) {
+                case Param -> ends[copy(n)] = size;
+                case VarDef -> {
+                    int sym = in.symbol(n);
+                    if (assignedIn[sym] != def && isConstant(sym, n + 1, def)) {
+                        // every reference will be replaced by the value
+                        constantIn[sym] = def;
+                        continue;
+                    }
+                    int v = copy(n);
+                    expression(n + 1, def);
+                    ends[v] = size;
+                }
+                case Call -> {
+                    int c = copy(n);
+                    for (int arg = n + 1; arg < in.end(n); arg = in.end(arg)) {
+                        expression(arg, def);
+                    }
+                    ends[c] = size;
+                }
+                default -> {
+                    // Assign and Return: a single expression
+                    int s = copy(n);
+                    expression(n + 1, def);
+                    ends[s] = size;
+                }
+            }
+        }
+        ends[d] = size;
+    }
+
+    /**
+     * Returns {@code true} if expression {@code exp} is constant (in
+     * {@code def}), recording its value as that of var {@code sym}.
+     */
+    private boolean isConstant(int sym, int exp, int def) {
+        switch (in.kind(exp)) {
+            case True, False -> {
+                constantKind[sym] = in.kind(exp);
+                constantValue[sym] = in.kind(exp) == AstKind.True ? 1 : 0;
+                return true;
+            }
+            case VarRef -> {
+                int ref = in.symbol(exp);
+                if (constantIn[ref] != def) {
+                    return false;
+                }
+                constantKind[sym] = constantKind[ref];
+                constantValue[sym] = constantValue[ref];
+                return true;
+            }
+            default -> {
+                // Int or Add
+                if (flatten(exp, def) > 0) {
+                    return false;
+                }
+                constantKind[sym] = AstKind.Int;
+                constantValue[sym] = sum;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Flattens the {@code +} chain rooted at {@code exp} into {@link #terms}
+     * (its non-constant terms, left to right) and {@link #sum}; returns the
+     * number of terms.
+     */
+    private int flatten(int exp, int def) {
+        int count = 0;
+        int top = 0;
+        sum = 0;
+        pending[top++] = exp;
+        while (top > 0) {
+            int n = pending[--top];
+            switch (in.kind(n)) {
+                case Add -> {
+                    if (top + 2 > pending.length) {
+                        pending = Arrays.copyOf(pending, pending.length * 2);
+                    }
+                    pending[top++] = in.end(n + 1);
+                    pending[top++] = n + 1;
+                }
+                case Int -> sum += in.intValue(n);
+                default -> {
+                    if (in.kind(n) == AstKind.VarRef
+                            && constantIn[in.symbol(n)] == def) {
+                        sum += constantValue[in.symbol(n)];
+                        continue;
+                    }
+                    if (count == terms.length) {
+                        terms = Arrays.copyOf(terms, count * 2);
+                    }
+                    terms[count++] = n;
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Emits the simplified form of expression {@code exp} (in {@code def}). */
+    private void expression(int exp, int def) {
+        switch (in.kind(exp)) {
+            case True, False, Int -> ends[copy(exp)] = size;
+            case VarRef -> {
+                int sym = in.symbol(exp);
+                if (constantIn[sym] == def) {
+                    emitConstant(constantKind[sym], constantValue[sym], exp);
+                }
+                else {
+                    ends[copy(exp)] = size;
+                }
+            }
+            default -> {
+                // Add: a left nested chain of the terms, the sum last
+                int count = flatten(exp, def);
+                boolean withSum = sum != 0 || count == 0;
+                int leaves = count + (withSum ? 1 : 0);
+                if (leaves - 1 > adds.length) {
+                    adds = Arrays.copyOf(adds, leaves - 1);
+                }
+                for (int i = 0; i < leaves - 1; i++) {
+                    adds[i] = open(AstKind.Add, INT32, 0, in.offset(exp));
+                }
+                int open = leaves - 1;
+                for (int i = 0; i < count; i++) {
+                    ends[copy(terms[i])] = size;
+                    // the innermost add is complete after its second term
+                    if (i > 0) {
+                        ends[adds[--open]] = size;
+                    }
+                }
+                if (withSum) {
+                    emitConstant(AstKind.Int, sum, exp);
+                    if (open > 0) {
+                        ends[adds[--open]] = size;
+                    }
+                }
+            }
+        }
+    }
+
+    private void emitConstant(AstKind kind, int value, int at) {
+        int n = open(kind, kind == AstKind.Int ? INT32
+                : (byte) PieType.Bool.ordinal(), kind == AstKind.Int ? value : 0,
+                in.offset(at));
+        ends[n] = size;
+    }
+
+    /** Copies node {@code n} (not its subtree); its end must be set later. */
+    private int copy(int n) {
+        byte type = in.type(n) == null ? NO_TYPE : (byte) in.type(n).ordinal();
+        int value = switch (in.kind(n)) {
+            case Script, Return, Add, True, False -> 0;
+            case Int -> in.intValue(n);
+            default -> in.symbol(n);
+        };
+        return open(in.kind(n), type, value, in.offset(n));
+    }
+
+    private int open(AstKind kind, byte type, int value, int offset) {
+        if (size == kinds.length) {
+            int n = Math.max(16, size * 2);
+            kinds = Arrays.copyOf(kinds, n);
+            types = Arrays.copyOf(types, n);
+            data = Arrays.copyOf(data, n);
+            ends = Arrays.copyOf(ends, n);
+            offsets = Arrays.copyOf(offsets, n);
+        }
+        kinds[size] = (byte) kind.ordinal();
+        types[size] = type;
+        data[size] = value;
+        offsets[size] = offset;
+        return size++;
+    }
+}
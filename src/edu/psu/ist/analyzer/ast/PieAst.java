@@ -0,0 +1,182 @@
+package edu.psu.ist.analyzer.ast;
+
+import edu.psu.ist.analyzer.PieType;
+import edu.psu.ist.analyzer.utils.SourceLocation;
+import edu.psu.ist.analyzer.utils.SymbolInterner;
+import edu.psu.ist.analyzer.utils.TextInput;
+
+import java.util.List;
+
+/**
+ * A compact abstract syntax tree for a checked script, stored as parallel
+ * arrays indexed by node id (see {@link AstBuilder} for how it's built from
+ * the parse tree).
+ * <p>
+ * Nodes are numbered in pre-order: node 0 is the {@link AstKind#Script}
+ * root, and the subtree of node {@code n} is exactly the ids
+ * {@code [n, end(n))}. So the children of {@code n} are visited with
+ * <pre>
+ * for (int c = n + 1; c < ast.end(n); c = ast.end(c)) { ... }
+ * </pre>
+ * and since every node's descendants have larger ids than the node itself,
+ * looping over the ids <em>downwards</em> visits children before parents.
+ */
+public final class PieAst {
+
+    /** The root of every tree. */
+    public static final int ROOT = 0;
+
+    private static final PieType[] TYPES = PieType.values();
+
+    private final TextInput source;
+    private final SymbolInterner symbols;
+    private final int size;
+
+    /** {@link AstKind} ordinals. */
+    private final byte[] kinds;
+
+    /** {@link PieType} ordinals ({@code -1} for nodes without a type). */
+    private final byte[] types;
+
+    /** Symbol ids of named nodes, values of {@link AstKind#Int} nodes. */
+    private final int[] data;
+
+    /** The (exclusive) end of each node's subtree. */
+    private final int[] ends;
+
+    /** The source offset each node starts at. */
+    private final int[] offsets;
+
+    PieAst(TextInput source, SymbolInterner symbols, int size, byte[] kinds,
+           byte[] types, int[] data, int[] ends, int[] offsets) {
+        this.source = source;
+        this.symbols = symbols;
+        this.size = size;
+        this.kinds = kinds;
+        this.types = types;
+        this.data = data;
+        this.ends = ends;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Returns the tree of a script whose definitions are {@code defs}, each
+     * a tree rooted at its {@link AstKind#Def} node (see
+     * {@link AstBuilder#lowerDef}) whose source offsets are moved by the
+     * matching {@code offsetDeltas} entry. The nodes are copied, so this
+     * takes time linear in the size of the tree, but no tree is walked.
+     */
+    public static PieAst concat(TextInput source, SymbolInterner symbols,
+                                List<PieAst> defs, int[] offsetDeltas) {
+        int size = 1;
+        for (var d : defs) {
+            size += d.size;
+        }
+        var kinds = new byte[size];
+        var types = new byte[size];
+        var data = new int[size];
+        var ends = new int[size];
+        var offsets = new int[size];
+        kinds[ROOT] = (byte) AstKind.Script.ordinal();
+        types[ROOT] = -1;
+        ends[ROOT] = size;
+
+        int at = ROOT + 1;
+        for (int i = 0; i < defs.size(); i++) {
+            var d = defs.get(i);
+            int delta = offsetDeltas[i];
+            System.arraycopy(d.kinds, 0, kinds, at, d.size);
+            System.arraycopy(d.types, 0, types, at, d.size);
+            System.arraycopy(d.data, 0, data, at, d.size);
+            for (int n = 0; n < d.size; n++) {
+                ends[at + n] = d.ends[n] + at;
+                offsets[at + n] = d.offsets[n] + delta;
+            }
+            at += d.size;
+        }
+        return new PieAst(source, symbols, size, kinds, types, data, ends,
+                offsets);
+    }
+
+    /** Returns the number of nodes. */
+    public int size() {
+        return size;
+    }
+
+    public AstKind kind(int node) {
+        return AstKind.of(kinds[node]);
+    }
+
+    /**
+     * Returns the type of {@code node}: the return type of a procedure, the
+     * declared type of a param/var def, the type of an expression, or
+     * {@code null} for other nodes.
+     */
+    public PieType type(int node) {
+        int t = types[node];
+        return t < 0 ? null : TYPES[t];
+    }
+
+    /** Returns the (exclusive) end of {@code node}'s subtree. */
+    public int end(int node) {
+        return ends[node];
+    }
+
+    /** Returns the number of children of {@code node}. */
+    public int childCount(int node) {
+        int count = 0;
+        for (int c = node + 1; c < ends[node]; c = ends[c]) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the interned symbol id of a named node.
+     *
+     * @throws IllegalArgumentException if {@code node} has no name.
+     */
+    public int symbol(int node) {
+        if (!kind(node).isNamed()) {
+            throw new IllegalArgumentException("node " + node + " ("
+                    + kind(node) + ") has no name");
+        }
+        return data[node];
+    }
+
+    /** Returns the name of a named node. */
+    public String name(int node) {
+        return symbols.name(symbol(node));
+    }
+
+    /**
+     * Returns the value of an {@link AstKind#Int} literal (wrapped to 32
+     * bits, like Piethon's arithmetic).
+     */
+    public int intValue(int node) {
+        if (kind(node) != AstKind.Int) {
+            throw new IllegalArgumentException("node " + node + " ("
+                    + kind(node) + ") isn't an int literal");
+        }
+        return data[node];
+    }
+
+    /** Returns the location of (the start of) {@code node}. */
+    public SourceLocation loc(int node) {
+        return new SourceLocation(source, offsets[node], offsets[node]);
+    }
+
+    /** Returns the source offset {@code node} starts at. */
+    int offset(int node) {
+        return offsets[node];
+    }
+
+    public TextInput source() {
+        return source;
+    }
+
+    /** Returns the interner the node names were interned with. */
+    public SymbolInterner symbols() {
+        return symbols;
+    }
+}
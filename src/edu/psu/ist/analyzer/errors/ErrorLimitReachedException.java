@@ -0,0 +1,32 @@
+package edu.psu.ist.analyzer.errors;
+
+import edu.psu.ist.analyzer.PieErrorMessage;
+
+import java.io.Serial;
+import java.util.List;
+
+/**
+ * Thrown by the error reporting listeners once the error budget set with
+ * {@link edu.psu.ist.analyzer.utils.Options#maxErrors()} is used up. It
+ * unwinds the lexer, parser, or tree walk that's running, carrying the
+ * errors found up to that point.
+ */
+public final class ErrorLimitReachedException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<PieErrorMessage> errors;
+
+    public ErrorLimitReachedException(List<PieErrorMessage> errors) {
+        // no stack trace: this is control flow, not a failure
+        super("stopped after " + errors.size() + " error(s)", null, false,
+                false);
+        this.errors = errors;
+    }
+
+    /** Returns the errors found before the limit was reached. */
+    public List<PieErrorMessage> errors() {
+        return errors;
+    }
+}
@@ -0,0 +1,29 @@
+package edu.psu.ist.analyzer.errors;
+
+import edu.psu.ist.analyzer.PieErrorMessage;
+import edu.psu.ist.analyzer.utils.SourceLocation;
+import edu.psu.ist.analyzer.utils.TextInput;
+
+/** A script that couldn't be read (e.g. it was deleted, or isn't readable). */
+public record ReadError(String msg, SourceLocation loc)
+        implements PieErrorMessage {
+
+    /** Creates the error for the script at {@code path}, which failed with {@code msg}. */
+    public static ReadError of(String path, String msg) {
+        return new ReadError(msg, new SourceLocation(new TextInput(path, ""),
+                0, 0));
+    }
+
+    @Override public String kind() {
+        return "Read Error";
+    }
+
+    @Override public String message() {
+        return String.format(">> Read Error (%s) - %s", loc.source().name(), msg);
+    }
+
+    /** Returns just the message (there's no source line to show). */
+    @Override public String render() {
+        return message();
+    }
+}
@@ -0,0 +1,216 @@
+package edu.psu.ist.analyzer.utils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, int-indexed snapshot of a {@link Digraph}. Each vertex is
+ * interned to an id in {@code [0, vertexCount())}, and edges are stored in
+ * compressed sparse row (CSR) form, once by source (forward adjacency) and
+ * once by target (reverse adjacency).
+ * <p>
+ * Edges can be iterated without allocating, e.g. for the successors of
+ * vertex {@code u}:
+ * <pre>{@code
+ * for (int e = g.outStart(u); e < g.outEnd(u); e++) {
+ *     int v = g.target(e);
+ * }
+ * }</pre>
+ * Use {@link Digraph#freeze()} to obtain one.
+ *
+ * @param <V> the type for vertices.
+ */
+public final class CompactDigraph<V> {
+
+    /** A callback for {@link #forEachEdge(EdgeConsumer)}. */
+    @FunctionalInterface
+    public interface EdgeConsumer {
+        void accept(int from, int to);
+    }
+
+    /** Maps vertex ids back to vertices. */
+    private final Object[] vertices;
+
+    /** Maps vertices to their ids (built lazily for graphs made from CSR). */
+    private Map<V, Integer> ids;
+
+    /** Edges leaving vertex u are {@code outTargets[outOffsets[u] .. outOffsets[u+1])}. */
+    private final int[] outOffsets;
+    private final int[] outTargets;
+
+    /** Edges entering vertex v are {@code inSources[inOffsets[v] .. inOffsets[v+1])}. */
+    private final int[] inOffsets;
+    private final int[] inSources;
+
+    /**
+     * The number of distinct predecessors of each vertex (this is what
+     * {@link Digraph#inDegree} has always counted, even with parallel edges).
+     */
+    private final int[] inDegrees;
+
+    private CompactDigraph(Object[] vertices, Map<V, Integer> ids,
+                           int[] outOffsets, int[] outTargets,
+                           int[] inOffsets, int[] inSources, int[] inDegrees) {
+        this.vertices = vertices;
+        this.ids = ids;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.inDegrees = inDegrees;
+    }
+
+    /**
+     * Builds the compact form of the given adjacency lists. Vertices that
+     * only appear as edge targets get ids too.
+     */
+    static <V> CompactDigraph<V> of(Map<V, List<V>> adjacency) {
+        Map<V, Integer> ids = new HashMap<>(adjacency.size() * 2);
+        int edgeCount = 0;
+        for (var entry : adjacency.entrySet()) {
+            ids.putIfAbsent(entry.getKey(), ids.size());
+            edgeCount += entry.getValue().size();
+        }
+        for (var targets : adjacency.values()) {
+            for (V t : targets) {
+                ids.putIfAbsent(t, ids.size());
+            }
+        }
+        int n = ids.size();
+        Object[] vertices = new Object[n];
+        for (var entry : ids.entrySet()) {
+            vertices[entry.getValue()] = entry.getKey();
+        }
+
+        int[] outOffsets = new int[n + 1];
+        int[] outTargets = new int[edgeCount];
+        for (var entry : adjacency.entrySet()) {
+            int u = ids.get(entry.getKey());
+            outOffsets[u + 1] = entry.getValue().size();
+        }
+        for (int u = 0; u < n; u++) {
+            outOffsets[u + 1] += outOffsets[u];
+        }
+        for (var entry : adjacency.entrySet()) {
+            int e = outOffsets[ids.get(entry.getKey())];
+            for (V t : entry.getValue()) {
+                outTargets[e++] = ids.get(t);
+            }
+        }
+        return fromCsr(vertices, ids, outOffsets, outTargets);
+    }
+
+    /**
+     * Builds a compact graph from forward CSR arrays (the reverse adjacency is
+     * derived from them). If {@code ids} is {@code null}, it's built from
+     * {@code vertices} the first time {@link #id} is called.
+     */
+    static <V> CompactDigraph<V> fromCsr(Object[] vertices, Map<V, Integer> ids,
+                                         int[] outOffsets, int[] outTargets) {
+        int n = vertices.length;
+        int[] inOffsets = new int[n + 1];
+        for (int v : outTargets) {
+            inOffsets[v + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            inOffsets[v + 1] += inOffsets[v];
+        }
+
+        // filling by increasing source id keeps each in-range sorted, so
+        // parallel edges end up next to each other
+        int[] inSources = new int[outTargets.length];
+        int[] fill = new int[n];
+        for (int u = 0; u < n; u++) {
+            for (int i = outOffsets[u]; i < outOffsets[u + 1]; i++) {
+                int v = outTargets[i];
+                inSources[inOffsets[v] + fill[v]++] = u;
+            }
+        }
+        int[] inDegrees = new int[n];
+        for (int v = 0; v < n; v++) {
+            for (int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+                if (i == inOffsets[v] || inSources[i] != inSources[i - 1]) {
+                    inDegrees[v]++;
+                }
+            }
+        }
+        return new CompactDigraph<>(vertices, ids, outOffsets, outTargets,
+                inOffsets, inSources, inDegrees);
+    }
+
+    public int vertexCount() {
+        return vertices.length;
+    }
+
+    public int edgeCount() {
+        return outTargets.length;
+    }
+
+    /** Returns the id of {@code vertex}, or {@code -1} if it isn't present. */
+    @SuppressWarnings("unchecked")
+    public int id(V vertex) {
+        if (ids == null) {
+            ids = new HashMap<>(vertices.length * 2);
+            for (int i = 0; i < vertices.length; i++) {
+                ids.put((V) vertices[i], i);
+            }
+        }
+        return ids.getOrDefault(vertex, -1);
+    }
+
+    /** Returns the vertex with the given {@code id}. */
+    @SuppressWarnings("unchecked")
+    public V vertex(int id) {
+        return (V) vertices[id];
+    }
+
+    /** Returns the number of edges leaving vertex {@code u}. */
+    public int outDegree(int u) {
+        return outOffsets[u + 1] - outOffsets[u];
+    }
+
+    /** Returns the number of distinct vertices with an edge to {@code v}. */
+    public int inDegree(int v) {
+        return inDegrees[v];
+    }
+
+    /** Returns the index of the first edge leaving {@code u}. */
+    public int outStart(int u) {
+        return outOffsets[u];
+    }
+
+    /** Returns the index after the last edge leaving {@code u}. */
+    public int outEnd(int u) {
+        return outOffsets[u + 1];
+    }
+
+    /** Returns the target of the edge with index {@code e} (see {@link #outStart}). */
+    public int target(int e) {
+        return outTargets[e];
+    }
+
+    /** Returns the index of the first edge entering {@code v}. */
+    public int inStart(int v) {
+        return inOffsets[v];
+    }
+
+    /** Returns the index after the last edge entering {@code v}. */
+    public int inEnd(int v) {
+        return inOffsets[v + 1];
+    }
+
+    /** Returns the source of the edge with index {@code e} (see {@link #inStart}). */
+    public int source(int e) {
+        return inSources[e];
+    }
+
+    /** Calls {@code c} once per edge, ordered by source id. */
+    public void forEachEdge(EdgeConsumer c) {
+        for (int u = 0; u < vertices.length; u++) {
+            for (int e = outOffsets[u]; e < outOffsets[u + 1]; e++) {
+                c.accept(u, outTargets[e]);
+            }
+        }
+    }
+}
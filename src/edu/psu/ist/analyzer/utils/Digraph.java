@@ -1,34 +1,69 @@
 package edu.psu.ist.analyzer.utils;
 
 import java.util.*;
+import java.util.function.BiConsumer;
 
 /**
  * An example class for directed graphs. The vertex type can be specified.
  * There are no edge costs/weights.
+ * <p>
+ * Once a graph is fully built, {@link #freeze()} builds a
+ * {@link CompactDigraph} snapshot of it; while that snapshot is current,
+ * {@link #inDegree} and {@link #outDegree} are O(1). Modifying the graph
+ * afterward discards the snapshot.
  *
  * @param <V> the type for vertices.
  */
 public final class Digraph<V> {
 
-    /** Stores the vertex and edge data for this graph as an adjacency list. */
-    private Map<V, List<V>> neighbors = new HashMap<>();
+    /**
+     * Stores the vertex and edge data for this graph as an adjacency list
+     * (vertices are kept in insertion order).
+     */
+    private Map<V, List<V>> neighbors = new LinkedHashMap<>();
+
+    /** The compact form of this graph, {@code null} if not built/stale. */
+    private CompactDigraph<V> compact;
 
     /** Adds a vertex to the graph. No-op if the vertex is already present. */
     public void add(V vertex) {
         if (!neighbors.containsKey(vertex)) {
             neighbors.put(vertex, new ArrayList<>());
+            compact = null;
+        }
+    }
+
+    /**
+     * Returns the compact form of this graph, building it first if the graph
+     * changed since the last call.
+     */
+    public CompactDigraph<V> freeze() {
+        if (compact == null) {
+            compact = CompactDigraph.of(neighbors);
         }
+        return compact;
     }
 
+    /** Returns {@code true} if the compact form of this graph is current. */
+    public boolean isFrozen() {
+        return compact != null;
+    }
+
+    /**
+     * Returns the (read-only) targets of the edges from {@code v}; use
+     * {@link #add(Object, Object)} and {@link #remove(Object, Object)} to
+     * change them, so the compact form is rebuilt.
+     */
     public List<V> neighbors(V v) {
         if (!neighbors.containsKey(v)) {
             throw new IllegalArgumentException("vertex: " + v + " not present");
         }
-        return neighbors.get(v);
+        return Collections.unmodifiableList(neighbors.get(v));
     }
 
+    /** Returns the (read-only) vertices, in insertion order. */
     public Set<V> getVertices() {
-        return neighbors.keySet();
+        return Collections.unmodifiableSet(neighbors.keySet());
     }
 
     /**
@@ -46,6 +81,7 @@ public final class Digraph<V> {
     public void add(V from, V to) {
         this.add(from); // ensure vertex is present first
         neighbors.get(from).add(to);
+        compact = null;
     }
 
     public Set<Pair<V, V>> edges() {
@@ -62,6 +98,23 @@ public final class Digraph<V> {
         return result;
     }
 
+    /**
+     * Calls {@code c} once per edge (including parallel edges). Unlike
+     * {@link #edges()}, this doesn't build a set of pairs.
+     */
+    public void forEachEdge(BiConsumer<V, V> c) {
+        if (compact != null) {
+            var g = compact;
+            g.forEachEdge((u, v) -> c.accept(g.vertex(u), g.vertex(v)));
+            return;
+        }
+        for (var entry : neighbors.entrySet()) {
+            for (V to : entry.getValue()) {
+                c.accept(entry.getKey(), to);
+            }
+        }
+    }
+
     /**
      * Removes an edge from this graph. Nothing happens if the edge specified
      * isn't present.
@@ -73,7 +126,37 @@ public final class Digraph<V> {
         if (!contains(from) && contains(to)) {
             throw new IllegalArgumentException("missing vertices in remove");
         }
-        neighbors.get(from).remove(to);
+        if (neighbors.get(from).remove(to)) {
+            compact = null;
+        }
+    }
+
+    /**
+     * Removes {@code vertex} and every edge from or to it. Nothing happens
+     * if the vertex isn't present. Edges to the vertex are found by scanning
+     * every adjacency list, so this takes O(V + E) time.
+     */
+    public void remove(V vertex) {
+        if (neighbors.remove(vertex) == null) {
+            return;
+        }
+        for (List<V> targets : neighbors.values()) {
+            targets.removeIf(vertex::equals);
+        }
+        compact = null;
+    }
+
+    /**
+     * Removes {@code vertex} and the edges from it, which must be the target
+     * of no edge (e.g. every edge to it was removed already). Unlike
+     * {@link #remove(Object)}, the other vertices' edges aren't scanned, so
+     * this takes O(1) time; an edge to the vertex would be left dangling.
+     * Nothing happens if the vertex isn't present.
+     */
+    public void removeVertexWithoutInEdges(V vertex) {
+        if (neighbors.remove(vertex) != null) {
+            compact = null;
+        }
     }
 
     /** Returns the <em>out-degreee</em> of the specified {@code vertex}. */
@@ -83,6 +166,10 @@ public final class Digraph<V> {
 
     /** Returns the <em>in-degree</em> of the specified {@code vertex}. */
     public int inDegree(V vertex) {
+        if (compact != null) {
+            int id = compact.id(vertex);
+            return id < 0 ? 0 : compact.inDegree(id);
+        }
         int result = 0;
         // want to count the number of nodes in the graph that point to: vertex
         for (V v : neighbors.keySet()) {
@@ -0,0 +1,130 @@
+package edu.psu.ist.analyzer.utils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The structural difference between two versions of a {@link Digraph}:
+ * the vertices and (distinct) edges only in the new version, and those only
+ * in the old one. Applying the diff to the old version (see
+ * {@link #applyTo}) gives a graph with the new version's vertices and
+ * edges.
+ *
+ * @param addedVertices   the vertices only in the new version.
+ * @param removedVertices the vertices only in the old version.
+ * @param addedEdges      the edges only in the new version.
+ * @param removedEdges    the edges only in the old version (including those
+ *                        of removed vertices).
+ * @param <V>             the type for vertices.
+ */
+public record GraphDiff<V>(List<V> addedVertices, List<V> removedVertices,
+                           List<Pair<V, V>> addedEdges,
+                           List<Pair<V, V>> removedEdges) {
+
+    public GraphDiff {
+        addedVertices = List.copyOf(addedVertices);
+        removedVertices = List.copyOf(removedVertices);
+        addedEdges = List.copyOf(addedEdges);
+        removedEdges = List.copyOf(removedEdges);
+    }
+
+    /** Returns the diff that builds {@code g} from an empty graph. */
+    public static <V> GraphDiff<V> of(Digraph<V> g) {
+        return between(new Digraph<>(), g);
+    }
+
+    /**
+     * Compares {@code before} and {@code after} in full (in O(V + E) time);
+     * vertices and edges are listed in the order of the graph they're in.
+     */
+    public static <V> GraphDiff<V> between(Digraph<V> before, Digraph<V> after) {
+        List<V> addedVertices = new ArrayList<>();
+        List<V> removedVertices = new ArrayList<>();
+        for (V v : after.getVertices()) {
+            if (!before.contains(v)) {
+                addedVertices.add(v);
+            }
+        }
+        for (V v : before.getVertices()) {
+            if (!after.contains(v)) {
+                removedVertices.add(v);
+            }
+        }
+        Set<Pair<V, V>> beforeEdges = edgeSet(before);
+        Set<Pair<V, V>> afterEdges = edgeSet(after);
+        List<Pair<V, V>> addedEdges = new ArrayList<>();
+        List<Pair<V, V>> removedEdges = new ArrayList<>();
+        for (var e : afterEdges) {
+            if (!beforeEdges.contains(e)) {
+                addedEdges.add(e);
+            }
+        }
+        for (var e : beforeEdges) {
+            if (!afterEdges.contains(e)) {
+                removedEdges.add(e);
+            }
+        }
+        return new GraphDiff<>(addedVertices, removedVertices, addedEdges,
+                removedEdges);
+    }
+
+    /** Returns the distinct edges of {@code g}, in order. */
+    private static <V> Set<Pair<V, V>> edgeSet(Digraph<V> g) {
+        Set<Pair<V, V>> edges = new LinkedHashSet<>();
+        for (V v : g.getVertices()) {
+            for (V w : g.neighbors(v)) {
+                edges.add(new Pair<>(v, w));
+            }
+        }
+        return edges;
+    }
+
+    /** Returns {@code true} if the two versions are the same. */
+    public boolean isEmpty() {
+        return addedVertices.isEmpty() && removedVertices.isEmpty()
+                && addedEdges.isEmpty() && removedEdges.isEmpty();
+    }
+
+    /** Returns the number of vertices and edges added or removed. */
+    public int size() {
+        return addedVertices.size() + removedVertices.size()
+                + addedEdges.size() + removedEdges.size();
+    }
+
+    /**
+     * Returns the vertices whose own edges changed, or that were added or
+     * removed (i.e. what a view of the graph has to redraw).
+     */
+    public Set<V> affectedVertices() {
+        Set<V> result = new HashSet<>(addedVertices);
+        result.addAll(removedVertices);
+        for (var e : addedEdges) {
+            result.add(e.first());
+            result.add(e.second());
+        }
+        for (var e : removedEdges) {
+            result.add(e.first());
+            result.add(e.second());
+        }
+        return result;
+    }
+
+    /** Applies this diff to {@code g} (a graph equal to the old version). */
+    public void applyTo(Digraph<V> g) {
+        for (var e : removedEdges) {
+            g.remove(e.first(), e.second());
+        }
+        for (V v : removedVertices) {
+            g.remove(v);
+        }
+        for (V v : addedVertices) {
+            g.add(v);
+        }
+        for (var e : addedEdges) {
+            g.add(e.first(), e.second());
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package edu.psu.ist.analyzer.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Streams a {@link Digraph} out as graphviz DOT or as line-delimited JSON.
+ * <p>
+ * Output goes through a single fixed-size buffer straight to the channel, so
+ * the text is never held in memory. Vertices/edges are read from the graph's
+ * {@link CompactDigraph} form: if the graph isn't frozen (see
+ * {@link Digraph#freeze()}), that's built first, taking O(V + E) time and
+ * memory (and kept for later exports). Vertices are labeled with their
+ * {@code toString()} and identified by their compact ids.
+ */
+public final class GraphExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private GraphExporter() {
+    }
+
+    /** Writes {@code g} as a DOT digraph named {@code title} to {@code out}. */
+    public static <V> void writeDot(Digraph<V> g, String title,
+                                    OutputStream out) throws IOException {
+        writeDot(g, title, Channels.newChannel(out));
+    }
+
+    /**
+     * Writes {@code g} as a DOT digraph named {@code title} to {@code out}
+     * (e.g. a {@link java.nio.channels.FileChannel}).
+     */
+    public static <V> void writeDot(Digraph<V> g, String title,
+                                    WritableByteChannel out) throws IOException {
+        var compact = g.freeze();
+        var w = new ChannelWriter(out);
+        w.put("digraph ").putQuoted(title).put(" {\n");
+        w.put("    label=").putQuoted(title).put(";\n");
+        w.put("    node [shape=box, style=\"rounded,filled\", fillcolor=\"#dbeafe\"];\n");
+        for (int u = 0; u < compact.vertexCount(); u++) {
+            w.put("    n").put(u).put(" [label=")
+                    .putQuoted(String.valueOf(compact.vertex(u))).put("];\n");
+        }
+        for (int u = 0; u < compact.vertexCount(); u++) {
+            for (int e = compact.outStart(u); e < compact.outEnd(u); e++) {
+                w.put("    n").put(u).put(" -> n").put(compact.target(e))
+                        .put(";\n");
+            }
+        }
+        w.put("}\n");
+        w.flush();
+    }
+
+    /** Writes {@code g} as line-delimited JSON to {@code out}. */
+    public static <V> void writeJsonLines(Digraph<V> g, String title,
+                                          OutputStream out) throws IOException {
+        writeJsonLines(g, title, Channels.newChannel(out));
+    }
+
+    /**
+     * Writes {@code g} as line-delimited JSON to {@code out}: one
+     * {@code "graph"} line, then one line per vertex and one per edge, e.g.
+     * <pre>
+     * {"type":"graph","title":"calls","vertices":2,"edges":1}
+     * {"type":"node","id":0,"label":"g(..)"}
+     * {"type":"node","id":1,"label":"f(..)"}
+     * {"type":"edge","from":1,"to":0}
+     * </pre>
+     */
+    public static <V> void writeJsonLines(Digraph<V> g, String title,
+                                          WritableByteChannel out) throws IOException {
+        var compact = g.freeze();
+        var w = new ChannelWriter(out);
+        w.put("{\"type\":\"graph\",\"title\":").putQuoted(title)
+                .put(",\"vertices\":").put(compact.vertexCount())
+                .put(",\"edges\":").put(compact.edgeCount()).put("}\n");
+        for (int u = 0; u < compact.vertexCount(); u++) {
+            w.put("{\"type\":\"node\",\"id\":").put(u).put(",\"label\":")
+                    .putQuoted(String.valueOf(compact.vertex(u))).put("}\n");
+        }
+        for (int u = 0; u < compact.vertexCount(); u++) {
+            for (int e = compact.outStart(u); e < compact.outEnd(u); e++) {
+                w.put("{\"type\":\"edge\",\"from\":").put(u).put(",\"to\":")
+                        .put(compact.target(e)).put("}\n");
+            }
+        }
+        w.flush();
+    }
+
+    /** Buffers UTF-8 output to a channel. */
+    private static final class ChannelWriter {
+        private final WritableByteChannel out;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+        ChannelWriter(WritableByteChannel out) {
+            this.out = out;
+        }
+
+        ChannelWriter put(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++) {
+                putChar(s.charAt(i));
+            }
+            return this;
+        }
+
+        ChannelWriter put(int n) throws IOException {
+            if (n < 0) {
+                return put(Integer.toString(n));
+            }
+            if (n >= 10) {
+                put(n / 10);
+            }
+            putByte('0' + n % 10);
+            return this;
+        }
+
+        /**
+         * Writes {@code s} as a double-quoted string, escaped so that it's a
+         * valid string in both DOT and JSON.
+         */
+        ChannelWriter putQuoted(String s) throws IOException {
+            putByte('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"' -> put("\\\"");
+                    case '\\' -> put("\\\\");
+                    case '\n' -> put("\\n");
+                    case '\r' -> put("\\r");
+                    case '\t' -> put("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            put(String.format("\\u%04x", (int) c));
+                        }
+                        else {
+                            putChar(c);
+                        }
+                    }
+                }
+            }
+            putByte('"');
+            return this;
+        }
+
+        private void putChar(char c) throws IOException {
+            if (c < 0x80) {
+                putByte(c);
+            }
+            else if (c < 0x800) {
+                putByte(0xc0 | (c >> 6));
+                putByte(0x80 | (c & 0x3f));
+            }
+            else if (Character.isSurrogate(c)) {
+                // not worth pairing up surrogates for graph labels
+                putByte('?');
+            }
+            else {
+                putByte(0xe0 | (c >> 12));
+                putByte(0x80 | ((c >> 6) & 0x3f));
+                putByte(0x80 | (c & 0x3f));
+            }
+        }
+
+        private void putByte(int b) throws IOException {
+            if (!buf.hasRemaining()) {
+                flush();
+            }
+            buf.put((byte) b);
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+            buf.clear();
+        }
+    }
+}
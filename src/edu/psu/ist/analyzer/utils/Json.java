@@ -0,0 +1,314 @@
+package edu.psu.ist.analyzer.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough JSON for line-delimited request/response protocols.
+ * <p>
+ * Values are represented with plain Java types: objects as
+ * {@code Map<String, Object>} (keeping key order), arrays as
+ * {@code List<Object>}, strings, {@link Long} for integral numbers,
+ * {@link Double} for all other numbers, {@link Boolean} and {@code null}.
+ * Writing also accepts any other {@link Number} and {@link CharSequence}.
+ */
+public final class Json {
+
+    /** How deeply arrays/objects may nest in parsed input. */
+    public static final int MAX_DEPTH = 256;
+
+    private Json() {
+    }
+
+    /**
+     * Parses {@code text}, which should hold exactly one JSON value.
+     *
+     * @throws IllegalArgumentException if {@code text} isn't valid JSON (or
+     *                                  nests deeper than {@link #MAX_DEPTH}).
+     */
+    public static Object parse(CharSequence text) {
+        var p = new Parser(text);
+        Object value = p.value(0);
+        p.skipWhitespace();
+        if (p.pos != text.length()) {
+            throw p.error("trailing characters");
+        }
+        return value;
+    }
+
+    /**
+     * Parses {@code text}, which should hold a single JSON object.
+     *
+     * @throws IllegalArgumentException if {@code text} isn't a JSON object.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseObject(CharSequence text) {
+        if (parse(text) instanceof Map<?, ?> m) {
+            return (Map<String, Object>) m;
+        }
+        throw new IllegalArgumentException("expected a JSON object");
+    }
+
+    /** Returns {@code value} as (single line) JSON. */
+    public static String write(Object value) {
+        var sb = new StringBuilder();
+        write(value, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends {@code value} as (single line) JSON to {@code out}.
+     *
+     * @throws IllegalArgumentException if {@code value} (or something in it)
+     *                                  has no JSON representation.
+     */
+    public static void write(Object value, StringBuilder out) {
+        switch (value) {
+            case null -> out.append("null");
+            case CharSequence s -> quote(s, out);
+            case Boolean b -> out.append(b);
+            case Double d when d.isNaN() || d.isInfinite() -> out.append("null");
+            case Float f when f.isNaN() || f.isInfinite() -> out.append("null");
+            case Number n -> out.append(n);
+            case Map<?, ?> m -> {
+                out.append('{');
+                boolean first = true;
+                for (var e : m.entrySet()) {
+                    if (!first) {
+                        out.append(',');
+                    }
+                    first = false;
+                    quote(String.valueOf(e.getKey()), out);
+                    out.append(':');
+                    write(e.getValue(), out);
+                }
+                out.append('}');
+            }
+            case Iterable<?> items -> {
+                out.append('[');
+                boolean first = true;
+                for (var item : items) {
+                    if (!first) {
+                        out.append(',');
+                    }
+                    first = false;
+                    write(item, out);
+                }
+                out.append(']');
+            }
+            default -> throw new IllegalArgumentException(
+                    "can't write a " + value.getClass().getName() + " as JSON");
+        }
+    }
+
+    /** Appends {@code s} to {@code out} as a quoted (and escaped) JSON string. */
+    public static void quote(CharSequence s, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    private static final class Parser {
+        private final CharSequence text;
+        private int pos;
+
+        Parser(CharSequence text) {
+            this.text = text;
+        }
+
+        Object value(int depth) {
+            if (depth > MAX_DEPTH) {
+                throw error("nested too deeply");
+            }
+            skipWhitespace();
+            if (pos == text.length()) {
+                throw error("unexpected end of input");
+            }
+            char c = text.charAt(pos);
+            return switch (c) {
+                case '{' -> object(depth);
+                case '[' -> array(depth);
+                case '"' -> string();
+                case 't' -> literal("true", Boolean.TRUE);
+                case 'f' -> literal("false", Boolean.FALSE);
+                case 'n' -> literal("null", null);
+                default -> {
+                    if (c == '-' || (c >= '0' && c <= '9')) {
+                        yield number();
+                    }
+                    throw error("unexpected character '" + c + "'");
+                }
+            };
+        }
+
+        private Map<String, Object> object(int depth) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            pos++;
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return result;
+            }
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') {
+                    throw error("expected a string key");
+                }
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                result.put(key, value(depth + 1));
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                    continue;
+                }
+                expect('}');
+                return result;
+            }
+        }
+
+        private List<Object> array(int depth) {
+            List<Object> result = new ArrayList<>();
+            pos++;
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                return result;
+            }
+            while (true) {
+                result.add(value(depth + 1));
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                    continue;
+                }
+                expect(']');
+                return result;
+            }
+        }
+
+        private String string() {
+            pos++;
+            var sb = new StringBuilder();
+            while (true) {
+                if (pos == text.length()) {
+                    throw error("unterminated string");
+                }
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos == text.length()) {
+                    throw error("unterminated string");
+                }
+                char e = text.charAt(pos++);
+                switch (e) {
+                    case '"', '\\', '/' -> sb.append(e);
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) {
+                            throw error("bad unicode escape");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(
+                                    text.subSequence(pos, pos + 4).toString(), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("bad unicode escape");
+                        }
+                        pos += 4;
+                    }
+                    default -> throw error("bad escape '\\" + e + "'");
+                }
+            }
+        }
+
+        private Object number() {
+            int start = pos;
+            boolean integral = true;
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c == '.' || c == 'e' || c == 'E') {
+                    integral = false;
+                }
+                else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                    break;
+                }
+                pos++;
+            }
+            String n = text.subSequence(start, pos).toString();
+            try {
+                return integral ? (Object) Long.parseLong(n)
+                        : (Object) Double.parseDouble(n);
+            } catch (NumberFormatException e) {
+                throw error("bad number '" + n + "'");
+            }
+        }
+
+        private Object literal(String word, Object value) {
+            if (pos + word.length() > text.length() ||
+                    !text.subSequence(pos, pos + word.length()).toString()
+                            .equals(word)) {
+                throw error("unexpected character '" + text.charAt(pos) + "'");
+            }
+            pos += word.length();
+            return value;
+        }
+
+        private char peek() {
+            if (pos == text.length()) {
+                throw error("unexpected end of input");
+            }
+            return text.charAt(pos);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        void skipWhitespace() {
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        IllegalArgumentException error(String what) {
+            return new IllegalArgumentException(
+                    "malformed JSON at offset " + pos + ": " + what);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package edu.psu.ist.analyzer.utils;
+
+import java.util.Arrays;
+
+/**
+ * The offset at which each line of a {@link TextInput} starts, so that
+ * offsets can be turned into line/column pairs (and back) by binary search.
+ * <p>
+ * Offsets are char stream indices, i.e. they count code points, and lines
+ * are separated by {@code '\n'} -- the same way the lexer counts them.
+ * Built on demand by {@link TextInput#lineIndex()}.
+ */
+public final class LineIndex {
+
+    /** {@code lineStarts[i]} is the offset of the first char of line i + 1. */
+    private final int[] lineStarts;
+    private final int lineCount;
+
+    /** The length of the text (in code points). */
+    private final int length;
+
+    /** Whether the text has chars outside the BMP (offsets != char indices). */
+    private final boolean supplementary;
+
+    private LineIndex(int[] lineStarts, int lineCount, int length,
+                      boolean supplementary) {
+        this.lineStarts = lineStarts;
+        this.lineCount = lineCount;
+        this.length = length;
+        this.supplementary = supplementary;
+    }
+
+    static LineIndex of(TextInput source) {
+        int[] starts = new int[64];
+        int count = 1;
+        int offset = 0;
+        boolean supplementary = false;
+        if (source.isMapped()) {
+            var bytes = source.bytes();
+            int n = bytes.remaining();
+            for (int i = 0; i < n; i++) {
+                if (bytes.get(i) == '\n') {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                    }
+                    starts[count++] = i + 1;
+                }
+            }
+            offset = n;
+        }
+        else {
+            String text = source.text();
+            for (int i = 0; i < text.length(); i++, offset++) {
+                char ch = text.charAt(i);
+                if (ch == '\n') {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                    }
+                    starts[count++] = offset + 1;
+                }
+                else if (Character.isHighSurrogate(ch) && i + 1 < text.length()
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    supplementary = true;
+                    i++;
+                }
+            }
+        }
+        return new LineIndex(starts, count, offset, supplementary);
+    }
+
+    /** Returns the number of lines. */
+    public int lineCount() {
+        return lineCount;
+    }
+
+    /** Returns the (1-based) line that {@code offset} falls on. */
+    public int line(int offset) {
+        int lo = 0, hi = lineCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (lineStarts[mid] <= offset) {
+                lo = mid;
+            }
+            else {
+                hi = mid - 1;
+            }
+        }
+        return lo + 1;
+    }
+
+    /** Returns the (0-based) column of {@code offset} within its line. */
+    public int column(int offset) {
+        return offset - lineStart(line(offset));
+    }
+
+    /** Returns the offset of the first char of (1-based) {@code line}. */
+    public int lineStart(int line) {
+        checkLine(line);
+        return lineStarts[line - 1];
+    }
+
+    /**
+     * Returns the offset just past the last char of {@code line} (excluding
+     * its {@code '\n'}).
+     */
+    public int lineEnd(int line) {
+        checkLine(line);
+        return line < lineCount ? lineStarts[line] - 1 : length;
+    }
+
+    /** Returns the offset of (1-based) {@code line}, (0-based) {@code col}. */
+    public int offset(int line, int col) {
+        return lineStart(line) + col;
+    }
+
+    /**
+     * Returns {@code true} if offsets may differ from {@code String} char
+     * indices (i.e. the text has surrogate pairs).
+     */
+    boolean hasSupplementaryChars() {
+        return supplementary;
+    }
+
+    private void checkLine(int line) {
+        if (line < 1 || line > lineCount) {
+            throw new IllegalArgumentException("no such line: " + line);
+        }
+    }
+}
@@ -1,11 +1,104 @@
 package edu.psu.ist.analyzer.utils;
 
-// overkill, but if you ever want to add additional options to the pie analyzer, do so here.
-public record Options(boolean runSilent) {
+/**
+ * Settings for the pie analyzer (overkill, but if you ever want to add
+ * additional options to the pie analyzer, do so here).
+ *
+ * @param runSilent     don't print errors to the console.
+ * @param incremental   reuse the parse trees and check results of procedure
+ *                      definitions that didn't change between calls to
+ *                      {@code check()} on the same analyzer, and update
+ *                      the call graph in place with just the calls that
+ *                      changed (so a graph returned earlier changes too).
+ * @param twoStageParse first try the cheaper SLL prediction mode (bailing
+ *                      out on the first syntax error), and only reparse with
+ *                      full LL prediction and error reporting if that fails.
+ * @param maxErrors     stop lexing, parsing, and checking as soon as this many
+ *                      errors were found ({@code 0} means no limit, {@code 1}
+ *                      stops at the first error). With a limit, the script is
+ *                      checked while it's parsed, so errors are reported in
+ *                      the order they occur (a semantic error can come before
+ *                      a later syntax error).
+ * @param simplify      fold constant expressions and propagate constant vars
+ *                      in checked scripts (see
+ *                      {@link edu.psu.ist.analyzer.ast.AstSimplifier}).
+ * @param metrics       time each phase of every analysis and count its
+ *                      tokens, nodes, errors and allocations (see
+ *                      {@link edu.psu.ist.analyzer.AnalysisMetrics}). The
+ *                      diagnostics are the same, in the same order.
+ * @param leanTokens    never create or keep hidden tokens (whitespace), and
+ *                      unless the parser may need to rewind (for a two-stage
+ *                      parse), only buffer the tokens it may still look at.
+ *                      Errors are reported at the same positions.
+ * @param parallelCheck check the procedure definitions of large scripts in
+ *                      parallel, on the calling thread's fork/join pool (or
+ *                      the common pool); the errors are the same, in the
+ *                      same order. Not done with an error budget, where the
+ *                      script is checked while it's parsed.
+ */
+public record Options(boolean runSilent, boolean incremental,
+                      boolean twoStageParse, int maxErrors, boolean simplify,
+                      boolean metrics, boolean leanTokens,
+                      boolean parallelCheck) {
 
     /**
      * This is primarily for testing purposes (don't want the output pane to
      * be filled with prints when running jUnit tests)
      */
     public static final Options TestOpts = new Options(true);
+
+    public Options {
+        if (maxErrors < 0) {
+            throw new IllegalArgumentException("maxErrors must be >= 0");
+        }
+    }
+
+    public Options(boolean runSilent) {
+        this(runSilent, false, false, 0, false, false, false, false);
+    }
+
+    public Options withRunSilent(boolean runSilent) {
+        return new Options(runSilent, incremental, twoStageParse, maxErrors,
+                simplify, metrics, leanTokens, parallelCheck);
+    }
+
+    public Options withIncremental(boolean incremental) {
+        return new Options(runSilent, incremental, twoStageParse, maxErrors,
+                simplify, metrics, leanTokens, parallelCheck);
+    }
+
+    public Options withTwoStageParse(boolean twoStageParse) {
+        return new Options(runSilent, incremental, twoStageParse, maxErrors,
+                simplify, metrics, leanTokens, parallelCheck);
+    }
+
+    public Options withMaxErrors(int maxErrors) {
+        return new Options(runSilent, incremental, twoStageParse, maxErrors,
+                simplify, metrics, leanTokens, parallelCheck);
+    }
+
+    public Options withSimplify(boolean simplify) {
+        return new Options(runSilent, incremental, twoStageParse, maxErrors,
+                simplify, metrics, leanTokens, parallelCheck);
+    }
+
+    public Options withMetrics(boolean metrics) {
+        return new Options(runSilent, incremental, twoStageParse, maxErrors,
+                simplify, metrics, leanTokens, parallelCheck);
+    }
+
+    public Options withLeanTokens(boolean leanTokens) {
+        return new Options(runSilent, incremental, twoStageParse, maxErrors,
+                simplify, metrics, leanTokens, parallelCheck);
+    }
+
+    public Options withParallelCheck(boolean parallelCheck) {
+        return new Options(runSilent, incremental, twoStageParse, maxErrors,
+                simplify, metrics, leanTokens, parallelCheck);
+    }
+
+    /** Returns these options set to stop at the first error found. */
+    public Options withFirstErrorOnly() {
+        return withMaxErrors(1);
+    }
 }
@@ -0,0 +1,245 @@
+package edu.psu.ist.analyzer.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Answers "is there a path from {@code u} to {@code v}?" for a fixed
+ * {@link Digraph}, mostly in constant time, after an O(V + E) build.
+ * <p>
+ * Queries are answered on the condensation of the graph (see
+ * {@link StronglyConnectedComponents}): vertices in the same component
+ * reach each other, and otherwise it's a question of reachability in a DAG.
+ * Each component is labeled by two depth-first traversals of that DAG (with
+ * children in opposite orders), in the manner of interval labeling
+ * ("GRAIL"): if component {@code d} is reachable from {@code c}, then
+ * {@code d}'s label interval is inside {@code c}'s in both labelings, so a
+ * label that isn't inside rules the path out; and if {@code d} lies in
+ * {@code c}'s subtree of the first traversal, the path exists. Only the
+ * queries no label settles fall back to a search, which the labels prune.
+ * <p>
+ * Unlike a transitive closure (a bit per pair of components), this takes a
+ * few ints per component, so it stays small for graphs with hundreds of
+ * thousands of procedures. Queries share scratch space, so an index must not
+ * be queried from several threads at once.
+ *
+ * @param <V> the type for vertices.
+ */
+public final class ReachabilityIndex<V> {
+
+    private final StronglyConnectedComponents<V> components;
+    private final CompactDigraph<Integer> dag;
+
+    /** Post-order ranks and label intervals {@code [low, rank]}, per labeling. */
+    private final int[] rank1;
+    private final int[] low1;
+    private final int[] rank2;
+    private final int[] low2;
+
+    /**
+     * The first rank in each component's subtree of the first traversal (so
+     * the subtree is exactly the ranks {@code [treeLow1, rank1]}).
+     */
+    private final int[] treeLow1;
+
+    /** The query each component was last visited by, during searches. */
+    private final int[] visited;
+    private int query;
+    private int[] stack = new int[64];
+
+    private ReachabilityIndex(StronglyConnectedComponents<V> components) {
+        this.components = components;
+        this.dag = components.condensation();
+        int n = components.count();
+        rank1 = new int[n];
+        low1 = new int[n];
+        rank2 = new int[n];
+        low2 = new int[n];
+        treeLow1 = new int[n];
+        visited = new int[n];
+        label(false, rank1, low1, treeLow1);
+        label(true, rank2, low2, null);
+    }
+
+    /** Builds the index for {@code g} (freezing {@code g} first). */
+    public static <V> ReachabilityIndex<V> of(Digraph<V> g) {
+        return new ReachabilityIndex<>(StronglyConnectedComponents.of(g));
+    }
+
+    /** Builds the index from already computed {@code components}. */
+    public static <V> ReachabilityIndex<V> of(StronglyConnectedComponents<V> components) {
+        return new ReachabilityIndex<>(components);
+    }
+
+    /**
+     * Labels the components by a post-order traversal of the condensation
+     * (roots and children in descending order, or ascending if
+     * {@code reversed}).
+     */
+    private void label(boolean reversed, int[] rank, int[] low, int[] treeLow) {
+        int n = rank.length;
+        Arrays.fill(rank, -1);
+        int[] frames = new int[n];
+        int[] nextEdge = new int[n];
+        int counter = 0;
+        for (int i = 0; i < n; i++) {
+            // (the condensation's edges point to lower ids: high ids are sources)
+            int root = reversed ? i : n - 1 - i;
+            if (rank[root] != -1) {
+                continue;
+            }
+            int fp = 0;
+            frames[0] = root;
+            nextEdge[0] = reversed ? dag.outEnd(root) - 1 : dag.outStart(root);
+            // (ranks are assigned on the way out; mark the way in with -2)
+            rank[root] = -2;
+            if (treeLow != null) {
+                treeLow[root] = counter;
+            }
+            while (fp >= 0) {
+                int c = frames[fp];
+                int e = nextEdge[fp];
+                if (reversed ? e >= dag.outStart(c) : e < dag.outEnd(c)) {
+                    nextEdge[fp] = reversed ? e - 1 : e + 1;
+                    int d = dag.target(e);
+                    if (rank[d] == -1) {
+                        fp++;
+                        frames[fp] = d;
+                        nextEdge[fp] = reversed ? dag.outEnd(d) - 1 : dag.outStart(d);
+                        rank[d] = -2;
+                        if (treeLow != null) {
+                            treeLow[d] = counter;
+                        }
+                    }
+                    continue;
+                }
+                // all of c's children are labeled
+                rank[c] = counter++;
+                int l = rank[c];
+                for (int f = dag.outStart(c); f < dag.outEnd(c); f++) {
+                    l = Math.min(l, low[dag.target(f)]);
+                }
+                low[c] = l;
+                fp--;
+            }
+        }
+    }
+
+    /** Returns the components the index was built from. */
+    public StronglyConnectedComponents<V> components() {
+        return components;
+    }
+
+    /**
+     * Returns {@code true} if there's a path (possibly empty) from
+     * {@code from} to {@code to}.
+     *
+     * @throws IllegalArgumentException if either vertex isn't in the graph.
+     */
+    public boolean reaches(V from, V to) {
+        return componentReaches(components.componentOf(from),
+                components.componentOf(to));
+    }
+
+    /** Like {@link #reaches(Object, Object)}, for vertex ids. */
+    public boolean reaches(int from, int to) {
+        return componentReaches(components.componentOf(from),
+                components.componentOf(to));
+    }
+
+    /** Returns {@code true} if component {@code d} is reachable from {@code c}. */
+    public boolean componentReaches(int c, int d) {
+        if (c == d) {
+            return true;
+        }
+        if (!mayReach(c, d)) {
+            return false;
+        }
+        if (treeLow1[c] <= rank1[d] && rank1[d] <= rank1[c]) {
+            return true;
+        }
+        return search(c, d);
+    }
+
+    /** Returns {@code false} if the labels rule out a path from {@code c} to {@code d}. */
+    private boolean mayReach(int c, int d) {
+        // edges point from higher component ids to lower ones
+        return d < c
+                && low1[c] <= low1[d] && rank1[d] <= rank1[c]
+                && low2[c] <= low2[d] && rank2[d] <= rank2[c];
+    }
+
+    /** Searches the condensation for {@code d} from {@code c}, pruned by the labels. */
+    private boolean search(int c, int d) {
+        if (++query == 0) {
+            // (wrapped around: forget the stale marks)
+            Arrays.fill(visited, 0);
+            query = 1;
+        }
+        int top = 0;
+        stack[top++] = c;
+        visited[c] = query;
+        while (top > 0) {
+            int u = stack[--top];
+            for (int e = dag.outStart(u); e < dag.outEnd(u); e++) {
+                int w = dag.target(e);
+                if (w == d) {
+                    return true;
+                }
+                if (visited[w] == query || !mayReach(w, d)) {
+                    continue;
+                }
+                if (treeLow1[w] <= rank1[d] && rank1[d] <= rank1[w]) {
+                    return true;
+                }
+                visited[w] = query;
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                }
+                stack[top++] = w;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the vertices that no path leads to from any of {@code entries}
+     * (for a call graph: the procedures that are dead if only
+     * {@code entries} are called from outside), in vertex id order.
+     *
+     * @throws IllegalArgumentException if an entry isn't in the graph.
+     */
+    public List<V> unreachableFrom(Collection<V> entries) {
+        int n = dag.vertexCount();
+        boolean[] live = new boolean[n];
+        int top = 0;
+        int[] pending = new int[Math.max(1, n)];
+        for (V entry : entries) {
+            int c = components.componentOf(entry);
+            if (!live[c]) {
+                live[c] = true;
+                pending[top++] = c;
+            }
+        }
+        while (top > 0) {
+            int c = pending[--top];
+            for (int e = dag.outStart(c); e < dag.outEnd(c); e++) {
+                int d = dag.target(e);
+                if (!live[d]) {
+                    live[d] = true;
+                    pending[top++] = d;
+                }
+            }
+        }
+        var g = components.graph();
+        List<V> dead = new ArrayList<>();
+        for (int u = 0; u < g.vertexCount(); u++) {
+            if (!live[components.componentOf(u)]) {
+                dead.add(g.vertex(u));
+            }
+        }
+        return dead;
+    }
+}
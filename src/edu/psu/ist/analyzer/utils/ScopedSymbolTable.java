@@ -0,0 +1,222 @@
+package edu.psu.ist.analyzer.utils;
+
+import java.util.Arrays;
+
+/**
+ * A symbol table keyed by interned symbol ids (see {@link SymbolInterner})
+ * with nested scopes.
+ * <p>
+ * All scopes share one flat open-addressing table holding the innermost
+ * binding of each symbol. Defining a symbol in an inner scope records what
+ * it replaced in an undo log, and {@link #popScope()} replays that log
+ * backwards. Lookups are a single probe sequence over an {@code int[]}, with
+ * no hashing of strings and no per-scope maps.
+ *
+ * @param <E> the type of the entries bound to symbols.
+ */
+public final class ScopedSymbolTable<E> {
+
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private Object[] values;
+
+    /** The scope depth each current binding was defined at. */
+    private int[] depths;
+    private int size;
+
+    /** The current scope depth (0 = the outermost scope). */
+    private int depth;
+
+    // undo log: the binding each inner-scope definition replaced
+    private int[] undoKeys = new int[16];
+    private Object[] undoValues = new Object[16];
+    private int[] undoDepths = new int[16];
+    private int undoSize;
+
+    /** The undo log size at each {@link #pushScope()}. */
+    private int[] scopeMarks = new int[8];
+
+    public ScopedSymbolTable() {
+        this(16);
+    }
+
+    /** Creates a table sized for about {@code expectedSize} symbols. */
+    public ScopedSymbolTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedSize) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        depths = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /** Opens a new (innermost) scope. */
+    public void pushScope() {
+        if (depth == scopeMarks.length) {
+            scopeMarks = Arrays.copyOf(scopeMarks, depth * 2);
+        }
+        scopeMarks[depth++] = undoSize;
+    }
+
+    /**
+     * Closes the innermost scope, dropping its definitions and restoring any
+     * bindings they shadowed.
+     *
+     * @throws IllegalStateException if no scope was pushed.
+     */
+    public void popScope() {
+        if (depth == 0) {
+            throw new IllegalStateException("can't pop the outermost scope");
+        }
+        int mark = scopeMarks[--depth];
+        while (undoSize > mark) {
+            undoSize--;
+            int key = undoKeys[undoSize];
+            Object old = undoValues[undoSize];
+            undoValues[undoSize] = null;
+            int slot = find(key);
+            if (old == null) {
+                removeAt(slot);
+            }
+            else {
+                values[slot] = old;
+                depths[slot] = undoDepths[undoSize];
+            }
+        }
+    }
+
+    /** Returns the current scope depth (0 = the outermost scope). */
+    public int depth() {
+        return depth;
+    }
+
+    /** Returns the innermost entry bound to {@code symbol} (or {@code null}). */
+    @SuppressWarnings("unchecked")
+    public E lookup(int symbol) {
+        int slot = find(symbol);
+        return slot < 0 ? null : (E) values[slot];
+    }
+
+    /** Returns {@code true} if {@code symbol} is bound in the current scope. */
+    public boolean isDefinedInCurrentScope(int symbol) {
+        int slot = find(symbol);
+        return slot >= 0 && depths[slot] == depth;
+    }
+
+    /**
+     * Binds {@code symbol} to {@code entry} in the current scope (shadowing
+     * any binding from an outer scope).
+     *
+     * @return {@code false} (and changes nothing) if {@code symbol} is already
+     *         defined in the current scope.
+     */
+    public boolean define(int symbol, E entry) {
+        if (symbol < 0 || entry == null) {
+            throw new IllegalArgumentException("symbol, entry must be valid");
+        }
+        int slot = find(symbol);
+        if (slot >= 0 && depths[slot] == depth) {
+            return false;
+        }
+        if (depth > 0) {
+            logUndo(symbol, slot < 0 ? null : values[slot],
+                    slot < 0 ? 0 : depths[slot]);
+        }
+        if (slot < 0) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            slot = insertionSlot(symbol);
+            keys[slot] = symbol;
+            size++;
+        }
+        values[slot] = entry;
+        depths[slot] = depth;
+        return true;
+    }
+
+    /** Returns the number of symbols currently bound. */
+    public int size() {
+        return size;
+    }
+
+    private void logUndo(int key, Object old, int oldDepth) {
+        if (undoSize == undoKeys.length) {
+            undoKeys = Arrays.copyOf(undoKeys, undoSize * 2);
+            undoValues = Arrays.copyOf(undoValues, undoSize * 2);
+            undoDepths = Arrays.copyOf(undoDepths, undoSize * 2);
+        }
+        undoKeys[undoSize] = key;
+        undoValues[undoSize] = old;
+        undoDepths[undoSize] = oldDepth;
+        undoSize++;
+    }
+
+    private int home(int key) {
+        return (key * 0x9E3779B9) >>> 1 & (keys.length - 1);
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        for (int slot = home(key); ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            if (keys[slot] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private int insertionSlot(int key) {
+        int mask = keys.length - 1;
+        int slot = home(key);
+        while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /** Removes the binding at {@code slot} (backward-shift deletion). */
+    private void removeAt(int slot) {
+        int mask = keys.length - 1;
+        int i = slot;
+        int j = slot;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == EMPTY) {
+                break;
+            }
+            int k = home(keys[j]);
+            // leave keys[j] alone if its home lies cyclically in (i, j]
+            if (i <= j ? (i < k && k <= j) : (i < k || k <= j)) {
+                continue;
+            }
+            keys[i] = keys[j];
+            values[i] = values[j];
+            depths[i] = depths[j];
+            i = j;
+        }
+        keys[i] = EMPTY;
+        values[i] = null;
+        size--;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldDepths = depths;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[keys.length];
+        depths = new int[keys.length];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = insertionSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                depths[slot] = oldDepths[i];
+            }
+        }
+    }
+}
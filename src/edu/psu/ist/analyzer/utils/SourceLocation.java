@@ -3,19 +3,107 @@ package edu.psu.ist.analyzer.utils;
 /**
  * A class that represents the physical source location of some parsed
  * syntactic entity.
- *
- * @param source       the parser input text
- * @param locationKind the source location kind (real or synthetic)
- * @param beginLine    the line number where the entity begins.
- * @param beginCol     the column number where the entity begins.
- * @param endLine      the line number where the entity ends.
- * @param endCol       the column number where the entity ends.
+ * <p>
+ * Only the source and the entity's start/end offsets (packed into a single
+ * {@code long}) are stored; lines and columns are looked up in the source's
+ * {@link LineIndex} when asked for, which typically only happens when the
+ * location is printed.
  */
-public record SourceLocation(TextInput source,
-                             int beginLine, int beginCol,
-                             int endLine, int endCol) {
+public final class SourceLocation {
+
+    /** The parser input text. */
+    private final TextInput source;
+
+    /** The start offset (high 32 bits) and end offset (low 32 bits). */
+    private final long span;
+
+    /**
+     * Creates a location spanning {@code [startOffset, endOffset)} of
+     * {@code source} (offsets are char stream indices).
+     */
+    public SourceLocation(TextInput source, int startOffset, int endOffset) {
+        if (startOffset < 0 || endOffset < startOffset) {
+            throw new IllegalArgumentException("invalid span: [" + startOffset
+                    + ", " + endOffset + ")");
+        }
+        this.source = source;
+        this.span = (long) startOffset << 32 | endOffset;
+    }
+
+    /** Returns an (empty) location at (1-based) {@code line}, (0-based) {@code col}. */
+    public static SourceLocation at(TextInput source, int line, int col) {
+        int offset = source.lineIndex().offset(line, col);
+        return new SourceLocation(source, offset, offset);
+    }
+
+    public TextInput source() {
+        return source;
+    }
+
+    public int startOffset() {
+        return (int) (span >>> 32);
+    }
+
+    public int endOffset() {
+        return (int) span;
+    }
+
+    /** Returns this location moved by {@code delta} chars into {@code source}. */
+    public SourceLocation shift(TextInput source, int delta) {
+        return new SourceLocation(source, startOffset() + delta,
+                endOffset() + delta);
+    }
+
+    /** The line number where the entity begins. */
+    public int beginLine() {
+        return source.lineIndex().line(startOffset());
+    }
+
+    /** The column number where the entity begins. */
+    public int beginCol() {
+        return source.lineIndex().column(startOffset());
+    }
+
+    /** The line number where the entity ends. */
+    public int endLine() {
+        return source.lineIndex().line(endOffset());
+    }
+
+    /** The column number where the entity ends. */
+    public int endCol() {
+        return source.lineIndex().column(endOffset());
+    }
+
+    /**
+     * Returns the line this location begins on, followed by a line with a
+     * caret under the location's first char.
+     */
+    public String snippet() {
+        var index = source.lineIndex();
+        int line = index.line(startOffset());
+        int lineStart = index.lineStart(line);
+        String text = source.text(lineStart, index.lineEnd(line));
+
+        var sb = new StringBuilder(text.length() * 2 + 2).append(text)
+                .append('\n');
+        int col = Math.min(startOffset() - lineStart, text.length());
+        for (int i = 0; i < col; i++) {
+            // keep tabs so the caret lines up
+            sb.append(text.charAt(i) == '\t' ? '\t' : ' ');
+        }
+        return sb.append('^').toString();
+    }
+
+    @Override public boolean equals(Object o) {
+        return o instanceof SourceLocation that && span == that.span &&
+                source.equals(that.source);
+    }
+
+    @Override public int hashCode() {
+        return 31 * source.hashCode() + Long.hashCode(span);
+    }
 
     @Override public String toString() {
-        return String.format("%s:%s:%s", source.name(), beginLine, beginCol);
+        return String.format("%s:%s:%s", source.name(), beginLine(), beginCol());
     }
 }
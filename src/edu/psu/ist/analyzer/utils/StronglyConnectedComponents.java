@@ -0,0 +1,260 @@
+package edu.psu.ist.analyzer.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The strongly connected components (SCCs) of a {@link Digraph}, along with
+ * the condensation DAG (one vertex per component) and a topological order of
+ * the components.
+ * <p>
+ * Components are found with an iterative version of Tarjan's algorithm, so
+ * this runs in O(V + E) time and never recurses (no matter how long the
+ * paths in the graph are). Component ids are assigned in the order Tarjan's
+ * algorithm completes them, which is a <em>reverse</em> topological order:
+ * every component reachable from component {@code c} has an id smaller
+ * than {@code c}. For a call graph, iterating ids from 0 upward therefore
+ * visits callees before their callers (bottom-up).
+ *
+ * @param <V> the type for vertices.
+ */
+public final class StronglyConnectedComponents<V> {
+
+    /** The graph the components were computed for. */
+    private final CompactDigraph<V> graph;
+
+    /** Maps each vertex id to the id of its component. */
+    private final int[] componentOf;
+
+    /** The members of component c are {@code members[memberOffsets[c] .. memberOffsets[c+1])}. */
+    private final int[] memberOffsets;
+    private final int[] members;
+
+    /** The DAG of components, with an edge c1 -> c2 for any u -> v between them. */
+    private final CompactDigraph<Integer> condensation;
+
+    private StronglyConnectedComponents(CompactDigraph<V> graph,
+                                        int[] componentOf,
+                                        int[] memberOffsets, int[] members,
+                                        CompactDigraph<Integer> condensation) {
+        this.graph = graph;
+        this.componentOf = componentOf;
+        this.memberOffsets = memberOffsets;
+        this.members = members;
+        this.condensation = condensation;
+    }
+
+    /** Computes the SCCs of {@code g} (freezing {@code g} first). */
+    public static <V> StronglyConnectedComponents<V> of(Digraph<V> g) {
+        return of(g.freeze());
+    }
+
+    /** Computes the SCCs of the compact graph {@code g}. */
+    public static <V> StronglyConnectedComponents<V> of(CompactDigraph<V> g) {
+        int n = g.vertexCount();
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] componentOf = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(index, -1);
+
+        // Tarjan's stack of vertices not yet assigned a component
+        int[] stack = new int[n];
+        int sp = 0;
+        // explicit call stack: the vertex of each frame and its next edge
+        int[] frames = new int[n];
+        int[] nextEdge = new int[n];
+        int fp;
+
+        // members are emitted component by component
+        int[] members = new int[n];
+        int emitted = 0;
+        int[] memberOffsets = new int[n + 1];
+        int componentCount = 0;
+        int counter = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+            fp = 0;
+            frames[fp] = root;
+            nextEdge[fp] = g.outStart(root);
+            index[root] = low[root] = counter++;
+            stack[sp++] = root;
+            onStack[root] = true;
+
+            while (fp >= 0) {
+                int v = frames[fp];
+                if (nextEdge[fp] < g.outEnd(v)) {
+                    int w = g.target(nextEdge[fp]++);
+                    if (index[w] == -1) {
+                        // "recurse" into w
+                        fp++;
+                        frames[fp] = w;
+                        nextEdge[fp] = g.outStart(w);
+                        index[w] = low[w] = counter++;
+                        stack[sp++] = w;
+                        onStack[w] = true;
+                    }
+                    else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                // all of v's edges are done: "return" from v
+                fp--;
+                if (low[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--sp];
+                        onStack[w] = false;
+                        componentOf[w] = componentCount;
+                        members[emitted++] = w;
+                    } while (w != v);
+                    memberOffsets[++componentCount] = emitted;
+                }
+                if (fp >= 0) {
+                    int parent = frames[fp];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+            }
+        }
+        memberOffsets = Arrays.copyOf(memberOffsets, componentCount + 1);
+        return new StronglyConnectedComponents<>(g, componentOf,
+                memberOffsets, members,
+                condense(g, componentOf, memberOffsets, members));
+    }
+
+    /** Builds the (deduplicated) DAG of components. */
+    private static CompactDigraph<Integer> condense(CompactDigraph<?> g,
+                                                    int[] componentOf,
+                                                    int[] memberOffsets,
+                                                    int[] members) {
+        int count = memberOffsets.length - 1;
+        int[] offsets = new int[count + 1];
+        int[] targets = new int[Math.max(16, count)];
+        int edges = 0;
+        // lastSource[d] == c means edge c -> d was already added
+        int[] lastSource = new int[count];
+        Arrays.fill(lastSource, -1);
+
+        for (int c = 0; c < count; c++) {
+            for (int i = memberOffsets[c]; i < memberOffsets[c + 1]; i++) {
+                int u = members[i];
+                for (int e = g.outStart(u); e < g.outEnd(u); e++) {
+                    int d = componentOf[g.target(e)];
+                    if (d != c && lastSource[d] != c) {
+                        lastSource[d] = c;
+                        if (edges == targets.length) {
+                            targets = Arrays.copyOf(targets, edges * 2);
+                        }
+                        targets[edges++] = d;
+                    }
+                }
+            }
+            offsets[c + 1] = edges;
+        }
+        Object[] ids = new Object[count];
+        for (int c = 0; c < count; c++) {
+            ids[c] = c;
+        }
+        return CompactDigraph.fromCsr(ids, null, offsets,
+                Arrays.copyOf(targets, edges));
+    }
+
+    /** Returns the graph these components were computed for. */
+    public CompactDigraph<V> graph() {
+        return graph;
+    }
+
+    /** Returns the number of components. */
+    public int count() {
+        return memberOffsets.length - 1;
+    }
+
+    /** Returns the component id of the vertex with id {@code u}. */
+    public int componentOf(int u) {
+        return componentOf[u];
+    }
+
+    /**
+     * Returns the component id of {@code vertex}.
+     *
+     * @throws IllegalArgumentException if {@code vertex} isn't in the graph.
+     */
+    public int componentOf(V vertex) {
+        int u = graph.id(vertex);
+        if (u < 0) {
+            throw new IllegalArgumentException("vertex: " + vertex + " not present");
+        }
+        return componentOf[u];
+    }
+
+    /** Returns the number of vertices in component {@code c}. */
+    public int size(int c) {
+        return memberOffsets[c + 1] - memberOffsets[c];
+    }
+
+    /** Returns the vertices in component {@code c}. */
+    public List<V> members(int c) {
+        List<V> result = new ArrayList<>(size(c));
+        for (int i = memberOffsets[c]; i < memberOffsets[c + 1]; i++) {
+            result.add(graph.vertex(members[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code true} if component {@code c} contains a cycle, i.e. it
+     * has more than one vertex or its single vertex has an edge to itself.
+     */
+    public boolean isCyclic(int c) {
+        if (size(c) > 1) {
+            return true;
+        }
+        int u = members[memberOffsets[c]];
+        for (int e = graph.outStart(u); e < graph.outEnd(u); e++) {
+            if (graph.target(e) == u) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the vertices that are part of a cycle (for a call graph: the
+     * recursive procedures).
+     */
+    public List<V> cyclicVertices() {
+        List<V> result = new ArrayList<>();
+        for (int c = 0; c < count(); c++) {
+            if (isCyclic(c)) {
+                result.addAll(members(c));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the condensation of the graph: a DAG whose vertex {@code c} is
+     * component {@code c}.
+     */
+    public CompactDigraph<Integer> condensation() {
+        return condensation;
+    }
+
+    /**
+     * Returns the component ids in topological order (a component comes
+     * before every component reachable from it).
+     */
+    public int[] topologicalOrder() {
+        int count = count();
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = count - 1 - i;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,120 @@
+package edu.psu.ist.analyzer.utils;
+
+import java.util.Arrays;
+
+/**
+ * Maps identifier names to dense int ids ({@code 0, 1, 2, ...}) so that later
+ * phases can compare and look up symbols by id instead of by string.
+ * <p>
+ * Names can be interned straight from any {@link CharSequence} (e.g. a view
+ * over the lexer's input); a {@link String} is only created the first time a
+ * given name is seen. Not thread safe.
+ */
+public final class SymbolInterner {
+
+    /** Id to name. */
+    private String[] names = new String[64];
+
+    /** Id to hash of its name. */
+    private int[] hashes = new int[64];
+
+    /** Open addressing table of {@code id + 1} ({@code 0} = empty slot). */
+    private int[] table = new int[128];
+
+    private int size;
+
+    /** Returns the id for {@code name}, assigning a new one if needed. */
+    public int intern(CharSequence name) {
+        int h = hash(name);
+        int mask = table.length - 1;
+        for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0) {
+                return add(name.toString(), h, slot);
+            }
+            if (hashes[id] == h && contentEquals(names[id], name)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Returns the id for {@code name}, or {@code -1} if it was never
+     * interned.
+     */
+    public int find(CharSequence name) {
+        int h = hash(name);
+        int mask = table.length - 1;
+        for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (hashes[id] == h && contentEquals(names[id], name)) {
+                return id;
+            }
+        }
+    }
+
+    /** Returns the name with the given {@code id}. */
+    public String name(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("no symbol with id: " + id);
+        }
+        return names[id];
+    }
+
+    /** Returns the number of distinct names interned so far. */
+    public int size() {
+        return size;
+    }
+
+    private int add(String name, int h, int slot) {
+        int id = size++;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        names[id] = name;
+        hashes[id] = h;
+        table[slot] = id + 1;
+        // keep the load factor at or below 1/2
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    private static int hash(CharSequence s) {
+        int h = 0;
+        for (int i = 0; i < s.length(); i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        // spread the bits (low bits pick the slot)
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean contentEquals(String a, CharSequence b) {
+        if (a.length() != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < a.length(); i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,4 +1,158 @@
 package edu.psu.ist.analyzer.utils;
 
-public record TextInput(String name, String text){
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * The name and source text of a script.
+ * <p>
+ * A text input is either held in memory as a {@link String}, or (see
+ * {@link #mapped(Path)}) backed by a memory-mapped file. A mapped input's
+ * bytes are handed to the lexer as is, and its text is only decoded into a
+ * {@code String} if {@link #text()} is actually called (e.g. when printing
+ * a source excerpt).
+ */
+public final class TextInput {
+
+    private final String name;
+
+    /** The file's bytes for mapped inputs ({@code null} otherwise). */
+    private final ByteBuffer bytes;
+
+    /** The text; decoded lazily for mapped inputs. */
+    private String text;
+
+    /** Built the first time a location in this input is resolved. */
+    private LineIndex lineIndex;
+
+    public TextInput(String name, String text) {
+        this.name = name;
+        this.text = text;
+        this.bytes = null;
+    }
+
+    private TextInput(String name, ByteBuffer bytes) {
+        this.name = name;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Memory-maps the (ASCII) script in {@code file}. The mapping stays valid
+     * after this returns, and is released once the input is unreachable.
+     *
+     * @throws IllegalArgumentException if the file is 2 GB or larger.
+     */
+    public static TextInput mapped(Path file) throws IOException {
+        try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("file too large to map: "
+                        + file);
+            }
+            return new TextInput(file.toString(),
+                    ch.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Reads the (ASCII) script in {@code file} into memory, decoding it the
+     * way a mapped input is (one byte per char). Unlike a mapping, the text
+     * stays valid if the file is truncated or rewritten afterwards.
+     */
+    public static TextInput read(Path file) throws IOException {
+        return new TextInput(file.toString(), new String(
+                Files.readAllBytes(file), StandardCharsets.ISO_8859_1));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the source text (decoding it first for mapped inputs, one byte
+     * per char).
+     */
+    public String text() {
+        if (text == null) {
+            byte[] b = new byte[bytes.capacity()];
+            bytes.get(0, b);
+            text = new String(b, StandardCharsets.ISO_8859_1);
+        }
+        return text;
+    }
+
+    /**
+     * Returns the text between offsets {@code start} (inclusive) and
+     * {@code end} (exclusive), without decoding all of a mapped input.
+     */
+    public String text(int start, int end) {
+        if (bytes != null) {
+            byte[] b = new byte[end - start];
+            bytes.get(start, b);
+            return new String(b, StandardCharsets.ISO_8859_1);
+        }
+        if (lineIndex().hasSupplementaryChars()) {
+            // offsets count code points, not chars
+            return text.substring(text.offsetByCodePoints(0, start),
+                    text.offsetByCodePoints(0, end));
+        }
+        return text.substring(start, end);
+    }
+
+    /** Returns the (lazily built) line index of this input. */
+    public LineIndex lineIndex() {
+        if (lineIndex == null) {
+            lineIndex = LineIndex.of(this);
+        }
+        return lineIndex;
+    }
+
+    /** Returns {@code true} if this input is backed by a mapped file. */
+    public boolean isMapped() {
+        return bytes != null;
+    }
+
+    /**
+     * Returns a read-only view of a mapped input's bytes.
+     *
+     * @throws IllegalStateException if this input isn't mapped.
+     */
+    public ByteBuffer bytes() {
+        if (bytes == null) {
+            throw new IllegalStateException("not a mapped input: " + name);
+        }
+        return bytes.asReadOnlyBuffer();
+    }
+
+    /** Returns the length of the source text in chars. */
+    public int length() {
+        return bytes != null ? bytes.capacity() : text.length();
+    }
+
+    @Override public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TextInput that) || !Objects.equals(name, that.name)) {
+            return false;
+        }
+        if (bytes != null && that.bytes != null) {
+            return bytes.equals(that.bytes);
+        }
+        return Objects.equals(text(), that.text());
+    }
+
+    @Override public int hashCode() {
+        return Objects.hashCode(name);
+    }
+
+    @Override public String toString() {
+        return "TextInput[name=" + name + ", length=" + length() + "]";
+    }
 }
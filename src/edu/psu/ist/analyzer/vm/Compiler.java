@@ -0,0 +1,224 @@
+package edu.psu.ist.analyzer.vm;
+
+import edu.psu.ist.analyzer.PieType;
+import edu.psu.ist.analyzer.ast.AstKind;
+import edu.psu.ist.analyzer.ast.PieAst;
+
+import java.util.Arrays;
+
+/**
+ * Compiles a checked script's {@link PieAst} to a {@link Program}.
+ * <p>
+ * Expressions are compiled with an explicit stack (no recursion, however
+ * deeply they nest), and an {@code ADD} whose right operand is a literal or
+ * a local is fused with it into an {@code ADDI}/{@code ADDL} -- which is
+ * most of them, since {@code +} chains nest to the left.
+ */
+public final class Compiler {
+
+    private final PieAst ast;
+
+    private int[] code = new int[256];
+    private int size;
+
+    /** Where the last instruction emitted starts ({@code -1} if none). */
+    private int last = -1;
+
+    /** The operand stack depth of the procedure being compiled (and its max). */
+    private int depth;
+    private int maxDepth;
+
+    /** Maps symbol ids to procedure indexes ({@code -1} if none). */
+    private final int[] procOf;
+
+    private PieType[] returnTypes;
+
+    /** Maps symbol ids to local slots in the procedure being compiled. */
+    private final int[] slotOf;
+
+    /** Pending nodes of the expression being compiled. */
+    private int[] pending = new int[64];
+
+    private Compiler(PieAst ast) {
+        this.ast = ast;
+        this.procOf = new int[ast.symbols().size()];
+        this.slotOf = new int[ast.symbols().size()];
+        Arrays.fill(procOf, -1);
+    }
+
+    /** Compiles the (checked, error free) script {@code ast}. */
+    public static Program compile(PieAst ast) {
+        return new Compiler(ast).compile();
+    }
+
+    private Program compile() {
+        int root = PieAst.ROOT;
+        int count = ast.childCount(root);
+        var names = new String[count];
+        returnTypes = new PieType[count];
+        var paramTypes = new PieType[count][];
+        var entries = new int[count];
+        var localCounts = new int[count];
+        var maxStacks = new int[count];
+
+        int p = 0;
+        for (int def = root + 1; def < ast.end(root); def = ast.end(def), p++) {
+            names[p] = ast.name(def);
+            returnTypes[p] = ast.type(def);
+            entries[p] = size;
+            depth = maxDepth = 0;
+
+            int params = 0;
+            int locals = 0;
+            for (int n = def + 1; n < ast.end(def); n = ast.end(n)) {
+                switch (ast.kind(n)) {
+                    case Param -> {
+                        slotOf[ast.symbol(n)] = locals++;
+                        params++;
+                    }
+                    case VarDef -> {
+                        expression(n + 1);
+                        // only visible after its own initializer
+                        slotOf[ast.symbol(n)] = locals;
+                        emit(Op.STORE, locals++);
+                    }
+                    case Assign -> {
+                        expression(n + 1);
+                        emit(Op.STORE, slotOf[ast.symbol(n)]);
+                    }
+                    case Call -> call(n);
+                    case Return -> {
+                        expression(n + 1);
+                        emit(Op.RET);
+                    }
+                    default -> throw new IllegalStateException(
+                            "unexpected " + ast.kind(n) + " in a procedure");
+                }
+            }
+            if (returnTypes[p] == PieType.Void) {
+                emit(Op.RETV);
+            }
+            paramTypes[p] = new PieType[params];
+            int i = 0;
+            for (int n = def + 1; n < ast.end(def) && ast.kind(n) == AstKind.Param;
+                 n = ast.end(n)) {
+                paramTypes[p][i++] = ast.type(n);
+            }
+            localCounts[p] = locals;
+            maxStacks[p] = maxDepth;
+            procOf[ast.symbol(def)] = p;
+        }
+        return new Program(Arrays.copyOf(code, size), names, returnTypes,
+                paramTypes, entries, localCounts, maxStacks);
+    }
+
+    private void call(int node) {
+        int callee = procOf[ast.symbol(node)];
+        if (callee < 0) {
+            throw new IllegalStateException("call to undefined procedure "
+                    + ast.name(node) + " (is the script checked?)");
+        }
+        int args = 0;
+        for (int n = node + 1; n < ast.end(node); n = ast.end(n), args++) {
+            expression(n);
+        }
+        emit(Op.CALL, callee);
+        depth -= args;
+        // calls are statements: a returned value is dropped right away
+        if (returnTypes[callee] != PieType.Void) {
+            push();
+            emit(Op.POP);
+        }
+    }
+
+    /** Emits the code that pushes the value of expression {@code root}. */
+    private void expression(int root) {
+        // a node id means "compile this node", ~id means "emit its ADD"
+        int top = 0;
+        pending[top++] = root;
+        while (top > 0) {
+            int n = pending[--top];
+            if (n < 0) {
+                add();
+                continue;
+            }
+            switch (ast.kind(n)) {
+                case Add -> {
+                    if (top + 3 > pending.length) {
+                        pending = Arrays.copyOf(pending, pending.length * 2);
+                    }
+                    int left = n + 1;
+                    pending[top++] = ~n;
+                    pending[top++] = ast.end(left);
+                    pending[top++] = left;
+                }
+                case Int -> {
+                    emit(Op.ICONST, ast.intValue(n));
+                    push();
+                }
+                case True -> {
+                    emit(Op.ICONST, 1);
+                    push();
+                }
+                case False -> {
+                    emit(Op.ICONST, 0);
+                    push();
+                }
+                case VarRef -> {
+                    emit(Op.LOAD, slotOf[ast.symbol(n)]);
+                    push();
+                }
+                default -> throw new IllegalStateException(
+                        "unexpected " + ast.kind(n) + " in an expression");
+            }
+        }
+    }
+
+    /** Emits an {@code ADD}, fused with the instruction before it if possible. */
+    private void add() {
+        depth--;
+        if (last >= 0 && code[last] == Op.ICONST) {
+            code[last] = Op.ADDI;
+        }
+        else if (last >= 0 && code[last] == Op.LOAD) {
+            code[last] = Op.ADDL;
+        }
+        else {
+            emit(Op.ADD);
+            return;
+        }
+        // the fused operand was never pushed on its own
+        last = -1;
+    }
+
+    private void push() {
+        if (++depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    private void emit(int op) {
+        ensureCapacity(1);
+        last = size;
+        code[size++] = op;
+        if (op == Op.STORE || op == Op.POP || op == Op.RET) {
+            depth--;
+        }
+    }
+
+    private void emit(int op, int operand) {
+        ensureCapacity(2);
+        last = size;
+        code[size++] = op;
+        code[size++] = operand;
+        if (op == Op.STORE) {
+            depth--;
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (size + n > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, size + n));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package edu.psu.ist.analyzer.vm;
+
+import edu.psu.ist.analyzer.PieType;
+
+import java.util.Arrays;
+
+/**
+ * Runs the procedures of a {@link Program}.
+ * <p>
+ * All frames share one {@code int[]}: a frame is the callee's locals
+ * (starting with the arguments, which the caller already pushed) followed
+ * by its operand stack, so calls copy nothing. Calls don't recurse on the
+ * Java stack either, so the call depth is only bounded by
+ * {@link #setMaxCallDepth}. An interpreter is not thread safe; use one per
+ * thread (they can share a program).
+ */
+public final class Interpreter {
+
+    public static final int DEFAULT_MAX_CALL_DEPTH = 10_000;
+
+    private final Program program;
+    private int maxCallDepth = DEFAULT_MAX_CALL_DEPTH;
+
+    private int[] stack = new int[1024];
+
+    /** The return pc and frame pointer of each active caller. */
+    private int[] returnPcs = new int[64];
+    private int[] returnFps = new int[64];
+
+    private long callCount;
+
+    public Interpreter(Program program) {
+        this.program = program;
+    }
+
+    public Interpreter setMaxCallDepth(int maxCallDepth) {
+        if (maxCallDepth < 1) {
+            throw new IllegalArgumentException("bad max call depth: " + maxCallDepth);
+        }
+        this.maxCallDepth = maxCallDepth;
+        return this;
+    }
+
+    /** Returns the number of calls run so far (including those from outside). */
+    public long callCount() {
+        return callCount;
+    }
+
+    /** Calls the procedure named {@code procedure}; see {@link #call(int, int...)}. */
+    public int call(String procedure, int... args) {
+        int p = program.procedure(procedure);
+        if (p < 0) {
+            throw new IllegalArgumentException("no procedure " + procedure);
+        }
+        return call(p, args);
+    }
+
+    /**
+     * Calls procedure {@code p} with {@code args} and returns its result
+     * ({@code 0} for {@code Void} procedures). {@code Bool}s are passed and
+     * returned as {@code 0}/{@code 1}.
+     *
+     * @throws IllegalArgumentException if the arguments don't match the
+     *                                  procedure's params
+     * @throws IllegalStateException    if calls nest deeper than the max call depth
+     */
+    public int call(int p, int... args) {
+        var types = program.paramTypes(p);
+        if (args.length != types.size()) {
+            throw new IllegalArgumentException(program.name(p) + " takes "
+                    + types.size() + " arguments, not " + args.length);
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (types.get(i) == PieType.Bool && (args[i] & ~1) != 0) {
+                throw new IllegalArgumentException("argument " + (i + 1) + " of "
+                        + program.name(p) + " is a Bool, not " + args[i]);
+            }
+        }
+        ensureStack(0, program.localCounts[p] + program.maxStacks[p]);
+        System.arraycopy(args, 0, stack, 0, args.length);
+        return run(p);
+    }
+
+    /** Runs procedure {@code p}, whose arguments start at {@code stack[0]}. */
+    private int run(int p) {
+        final int[] code = program.code;
+        final int[] entries = program.entries;
+        final int[] localCounts = program.localCounts;
+        final int[] maxStacks = program.maxStacks;
+        final int[] paramCounts = program.paramCounts;
+
+        int[] s = stack;
+        int fp = 0;
+        int sp = localCounts[p];
+        int pc = entries[p];
+        int depth = 0;
+        callCount++;
+
+        while (true) {
+            switch (code[pc++]) {
+                case Op.ICONST -> s[sp++] = code[pc++];
+                case Op.LOAD -> s[sp++] = s[fp + code[pc++]];
+                case Op.STORE -> s[fp + code[pc++]] = s[--sp];
+                case Op.ADD -> {
+                    sp--;
+                    s[sp - 1] += s[sp];
+                }
+                case Op.ADDI -> s[sp - 1] += code[pc++];
+                case Op.ADDL -> s[sp - 1] += s[fp + code[pc++]];
+                case Op.CALL -> {
+                    int callee = code[pc++];
+                    if (depth + 1 >= maxCallDepth) {
+                        throw new IllegalStateException("calls nested deeper than "
+                                + maxCallDepth + " (calling " + program.name(callee) + ")");
+                    }
+                    if (depth == returnPcs.length) {
+                        returnPcs = Arrays.copyOf(returnPcs, depth * 2);
+                        returnFps = Arrays.copyOf(returnFps, depth * 2);
+                    }
+                    returnPcs[depth] = pc;
+                    returnFps[depth] = fp;
+                    depth++;
+                    fp = sp - paramCounts[callee];
+                    int top = fp + localCounts[callee] + maxStacks[callee];
+                    if (top > s.length) {
+                        ensureStack(fp, localCounts[callee] + maxStacks[callee]);
+                        s = stack;
+                    }
+                    sp = fp + localCounts[callee];
+                    pc = entries[callee];
+                    callCount++;
+                }
+                case Op.POP -> sp--;
+                case Op.RET -> {
+                    int value = s[sp - 1];
+                    if (depth == 0) {
+                        return value;
+                    }
+                    // the result replaces the arguments on the caller's stack
+                    s[fp] = value;
+                    sp = fp + 1;
+                    depth--;
+                    pc = returnPcs[depth];
+                    fp = returnFps[depth];
+                }
+                case Op.RETV -> {
+                    if (depth == 0) {
+                        return 0;
+                    }
+                    sp = fp;
+                    depth--;
+                    pc = returnPcs[depth];
+                    fp = returnFps[depth];
+                }
+                default -> throw new IllegalStateException(
+                        "bad opcode " + code[pc - 1] + " at " + (pc - 1));
+            }
+        }
+    }
+
+    private void ensureStack(int fp, int frameSize) {
+        if (fp + frameSize > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(stack.length * 2, fp + frameSize));
+        }
+    }
+}
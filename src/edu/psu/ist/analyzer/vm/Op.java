@@ -0,0 +1,62 @@
+package edu.psu.ist.analyzer.vm;
+
+/**
+ * The instruction set of compiled procedures. Each instruction is an opcode
+ * followed by at most one int operand, all in the same {@code int[]}.
+ * <p>
+ * Values are ints ({@code Bool}s are {@code 0}/{@code 1}) on an operand
+ * stack; locals (params first, then vars) are addressed by index within
+ * the current frame.
+ */
+final class Op {
+
+    /** {@code ICONST v}: pushes {@code v}. */
+    static final int ICONST = 0;
+
+    /** {@code LOAD i}: pushes local {@code i}. */
+    static final int LOAD = 1;
+
+    /** {@code STORE i}: pops into local {@code i}. */
+    static final int STORE = 2;
+
+    /** Pops two values and pushes their (wrapping) sum. */
+    static final int ADD = 3;
+
+    /** {@code ADDI v}: adds {@code v} to the top of the stack. */
+    static final int ADDI = 4;
+
+    /** {@code ADDL i}: adds local {@code i} to the top of the stack. */
+    static final int ADDL = 5;
+
+    /**
+     * {@code CALL p}: calls procedure {@code p}; its arguments (the top
+     * values on the stack) become its first locals.
+     */
+    static final int CALL = 6;
+
+    /** Pops (and drops) the top of the stack. */
+    static final int POP = 7;
+
+    /** Returns the top of the stack to the caller. */
+    static final int RET = 8;
+
+    /** Returns from a {@code Void} procedure. */
+    static final int RETV = 9;
+
+    private static final String[] NAMES = {
+            "ICONST", "LOAD", "STORE", "ADD", "ADDI", "ADDL", "CALL", "POP",
+            "RET", "RETV"
+    };
+
+    private Op() {
+    }
+
+    static String name(int op) {
+        return NAMES[op];
+    }
+
+    /** Returns {@code true} if {@code op} is followed by an operand. */
+    static boolean hasOperand(int op) {
+        return op != ADD && op != POP && op != RET && op != RETV;
+    }
+}
@@ -0,0 +1,99 @@
+package edu.psu.ist.analyzer.vm;
+
+import edu.psu.ist.analyzer.PieType;
+
+import java.util.List;
+
+/**
+ * The bytecode of a checked script (see {@link Compiler}): the code of all
+ * procedures in one {@code int[]}, plus a small table describing each
+ * procedure. Procedures are numbered in definition order.
+ */
+public final class Program {
+
+    final int[] code;
+
+    private final String[] names;
+    private final PieType[] returnTypes;
+    private final PieType[][] paramTypes;
+
+    /** Where each procedure's code starts. */
+    final int[] entries;
+
+    /** The number of params of each procedure. */
+    final int[] paramCounts;
+
+    /** The number of locals (params + vars) of each procedure. */
+    final int[] localCounts;
+
+    /** The most values each procedure keeps on the operand stack at once. */
+    final int[] maxStacks;
+
+    Program(int[] code, String[] names, PieType[] returnTypes,
+            PieType[][] paramTypes, int[] entries, int[] localCounts,
+            int[] maxStacks) {
+        this.code = code;
+        this.names = names;
+        this.returnTypes = returnTypes;
+        this.paramTypes = paramTypes;
+        this.entries = entries;
+        this.localCounts = localCounts;
+        this.maxStacks = maxStacks;
+        this.paramCounts = new int[names.length];
+        for (int p = 0; p < names.length; p++) {
+            paramCounts[p] = paramTypes[p].length;
+        }
+    }
+
+    /** Returns the number of procedures. */
+    public int procedureCount() {
+        return names.length;
+    }
+
+    /** Returns the index of the procedure called {@code name} ({@code -1} if none). */
+    public int procedure(String name) {
+        for (int p = 0; p < names.length; p++) {
+            if (names[p].equals(name)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    public String name(int procedure) {
+        return names[procedure];
+    }
+
+    public PieType returnType(int procedure) {
+        return returnTypes[procedure];
+    }
+
+    public List<PieType> paramTypes(int procedure) {
+        return List.of(paramTypes[procedure]);
+    }
+
+    /** Returns the total size of the code (in ints). */
+    public int codeSize() {
+        return code.length;
+    }
+
+    /** Returns a readable listing of the code, one instruction per line. */
+    public String disassemble() {
+        var sb = new StringBuilder();
+        for (int p = 0; p < names.length; p++) {
+            sb.append(names[p]).append(":\n");
+            int end = p + 1 < names.length ? entries[p + 1] : code.length;
+            for (int pc = entries[p]; pc < end; pc++) {
+                int op = code[pc];
+                sb.append(String.format("%6d  %s", pc, Op.name(op)));
+                if (Op.hasOperand(op)) {
+                    int operand = code[++pc];
+                    sb.append(' ').append(op == Op.CALL ? names[operand]
+                            : String.valueOf(operand));
+                }
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
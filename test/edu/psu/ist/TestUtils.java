@@ -1,8 +1,8 @@
 package edu.psu.ist;
 
-import antlr4.edu.psu.ist.parser.PiethonParser;
 import edu.psu.ist.analyzer.PieAnalyzer;
 import edu.psu.ist.analyzer.PieErrorMessage;
+import edu.psu.ist.analyzer.ast.PieAst;
 import edu.psu.ist.analyzer.utils.Options;
 import edu.psu.ist.analyzer.utils.Result;
 import org.junit.jupiter.api.Assertions;
@@ -11,14 +11,14 @@ import java.util.List;
 
 public abstract class TestUtils {
 
-    public final Result<PiethonParser.ScriptContext, List<PieErrorMessage>> check(String s) {
+    public final Result<PieAst, List<PieErrorMessage>> check(String s) {
         return new PieAnalyzer().setOptions(Options.TestOpts).setScriptCode(
                 "<test>", s).check();
     }
 
     public <T extends PieErrorMessage> void expectError(
             Class<T> expectedErrorClass,
-            Result<PiethonParser.ScriptContext, List<PieErrorMessage>> result,
+            Result<PieAst, List<PieErrorMessage>> result,
             int howManyOfExpectedErrorType) {
         if (result.isOk()) {
             Assertions.fail("Expected failure, but got success.");
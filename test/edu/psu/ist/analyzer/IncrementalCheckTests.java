@@ -0,0 +1,134 @@
+package edu.psu.ist.analyzer;
+
+import edu.psu.ist.TestUtils;
+import edu.psu.ist.analyzer.errors.SemanticError;
+import edu.psu.ist.analyzer.utils.Digraph;
+import edu.psu.ist.analyzer.utils.Options;
+import edu.psu.ist.analyzer.utils.Pair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+public class IncrementalCheckTests extends TestUtils {
+
+    private static final String SCRIPT = """
+            // callee
+            def g(x : Int32) : Void is
+            end
+
+            def f() : Int32 is
+                var y : Int32 := 1 + 2;
+                g(y);
+                return y;
+            end
+            """;
+
+    private final PieAnalyzer analyzer = new PieAnalyzer()
+            .setOptions(Options.TestOpts.withIncremental(true));
+
+    private void assertSameAsFullCheck(String input) {
+        var incremental = analyzer.setScriptCode("<test>", input).check();
+        var full = check(input);
+        Assertions.assertEquals(full.isOk(), incremental.isOk());
+        if (full.isError()) {
+            Assertions.assertEquals(full.getError(), incremental.getError());
+        }
+    }
+
+    @Test public void testUnchangedScript() {
+        assertSameAsFullCheck(SCRIPT);
+        assertSameAsFullCheck(SCRIPT);
+    }
+
+    @Test public void testSignatureChangeRechecksCaller() {
+        assertSameAsFullCheck(SCRIPT);
+        var edited = SCRIPT.replace("g(x : Int32)", "g(x : Bool)");
+        assertSameAsFullCheck(edited);
+        expectError(SemanticError.TypeMismatch.class,
+                analyzer.setScriptCode("<test>", edited).check(), 1);
+    }
+
+    @Test public void testMovedDefinitionKeepsLocations() {
+        var broken = SCRIPT.replace("g(y);", "g(true);");
+        assertSameAsFullCheck(broken);
+        // push every definition down a few lines
+        assertSameAsFullCheck("\n\n\n" + broken);
+    }
+
+    @Test public void testSyntaxErrorInOneDef() {
+        assertSameAsFullCheck(SCRIPT);
+        var result = analyzer.setScriptCode("<test>",
+                SCRIPT.replace("return y;", "return y")).check();
+        Assertions.assertTrue(result.isError());
+    }
+
+    @Test public void testSplicedTreeMatchesFullLowering() {
+        var versions = List.of(SCRIPT,
+                // f is reused, but moved down
+                "\n\n" + SCRIPT.replace("def g(x : Int32) : Void is",
+                        "def g(x : Int32) : Void is\n    var z : Int32 := x;"),
+                // f is rechecked (and so parsed again) as g's signature changed
+                SCRIPT.replace("g(x : Int32)", "g(x : Int32, b : Bool)")
+                        .replace("g(y);", "g(y, true);"));
+        for (String version : versions) {
+            var result = analyzer.setScriptCode("<test>", version).analyze();
+            Assertions.assertTrue(result.isOk(), version);
+            var ast = result.get().ast();
+            var full = new PieAnalyzer().setOptions(Options.TestOpts)
+                    .setScriptCode("<test>", version).analyze().get().ast();
+            Assertions.assertEquals(full.size(), ast.size());
+            for (int n = 0; n < ast.size(); n++) {
+                Assertions.assertEquals(full.kind(n), ast.kind(n));
+                Assertions.assertEquals(full.type(n), ast.type(n));
+                Assertions.assertEquals(full.end(n), ast.end(n));
+                if (ast.kind(n).isNamed()) {
+                    Assertions.assertEquals(full.name(n), ast.name(n));
+                }
+                if (n > 0) {
+                    Assertions.assertEquals(full.loc(n).startOffset(),
+                            ast.loc(n).startOffset());
+                }
+            }
+        }
+    }
+
+    @Test public void testCallGraphUpdates() {
+        var versions = List.of(SCRIPT,
+                // a new procedure, and a call to it
+                SCRIPT.replace("// callee", """
+                        def h() : Void is
+                        end
+                        """).replace("g(y);", "g(y);\n    h();\n    g(y);"),
+                // one call less
+                SCRIPT.replace("g(y);", ""),
+                // g is gone (and so is the call to it)
+                SCRIPT.replace("def g(x : Int32) : Void is\nend", "")
+                        .replace("g(y);", ""),
+                SCRIPT);
+        var replay = new Digraph<ProcNode>();
+        for (String version : versions) {
+            var result = analyzer.setScriptCode("<test>", version).analyze();
+            Assertions.assertTrue(result.isOk(), version);
+            var full = new PieAnalyzer().setOptions(Options.TestOpts)
+                    .setScriptCode("<test>", version).buildGraph();
+            var graph = result.get().graph();
+            Assertions.assertEquals(full.getVertices(), Set.copyOf(graph.getVertices()));
+            Assertions.assertEquals(full.edges(), graph.edges());
+
+            // the diffs add up to the graph
+            var diff = analyzer.graphDiff();
+            diff.applyTo(replay);
+            Assertions.assertEquals(full.edges(), replay.edges());
+            Assertions.assertEquals(full.getVertices(), Set.copyOf(replay.getVertices()));
+        }
+        // the last version only put g and its call back
+        var diff = analyzer.graphDiff();
+        Assertions.assertEquals(List.of(new ProcNode("g")), diff.addedVertices());
+        Assertions.assertEquals(List.of(new Pair<>(new ProcNode("f"),
+                new ProcNode("g"))), diff.addedEdges());
+        Assertions.assertTrue(diff.removedVertices().isEmpty());
+        Assertions.assertTrue(diff.removedEdges().isEmpty());
+    }
+}
@@ -1,8 +1,26 @@
 package edu.psu.ist.analyzer;
 
+import antlr4.edu.psu.ist.parser.PiethonLexer;
 import edu.psu.ist.TestUtils;
+import edu.psu.ist.analyzer.ast.AstKind;
+import edu.psu.ist.analyzer.ast.PieAst;
+import edu.psu.ist.analyzer.errors.ReadError;
 import edu.psu.ist.analyzer.errors.SemanticError;
+import edu.psu.ist.analyzer.utils.Options;
+import edu.psu.ist.analyzer.utils.Pair;
+import edu.psu.ist.analyzer.utils.TextInput;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 // NOTE: these will fail until you implement the logic in PieScriptCheckingListener;
 // this file is by no means complete -- just an example of how you can unit test this
@@ -68,6 +86,517 @@ public class PieAnalyzerTests extends TestUtils {
                 2);
     }
 
+    // call graphs
+
+    @Test public void testCallGraph() {
+        var analyzer = new PieAnalyzer().setOptions(Options.TestOpts)
+                .setScriptCode("<test>", """
+                        def g() : Void is
+                        end
+
+                        def f() : Void is
+                            g();
+                            g();
+                        end
+
+                        def m() : Int32 is
+                            f();
+                            g();
+                            return 0;
+                        end
+                        """);
+        Assertions.assertTrue(analyzer.check().isOk());
+        var g = analyzer.buildGraph();
+        Assertions.assertEquals(Set.of(
+                new Pair<>(new ProcNode("f"), new ProcNode("g")),
+                new Pair<>(new ProcNode("m"), new ProcNode("f")),
+                new Pair<>(new ProcNode("m"), new ProcNode("g"))), g.edges());
+        Assertions.assertEquals(2, g.inDegree(new ProcNode("g")));
+    }
+
+    // lowering
+
+    @Test public void testLowering() {
+        var result = check("""
+                def add(x : Int32) : Int32 is
+                    var y : Int32 := x + 41;
+                    return y;
+                end
+                """);
+        Assertions.assertTrue(result.isOk());
+        var ast = result.get();
+        Assertions.assertEquals(AstKind.Script, ast.kind(PieAst.ROOT));
+        int def = PieAst.ROOT + 1;
+        Assertions.assertEquals(AstKind.Def, ast.kind(def));
+        Assertions.assertEquals("add", ast.name(def));
+        Assertions.assertEquals(PieType.Int32, ast.type(def));
+        Assertions.assertEquals(3, ast.childCount(def));
+        Assertions.assertEquals(ast.size(), ast.end(def));
+
+        List<AstKind> kinds = new ArrayList<>();
+        for (int n = def + 1; n < ast.end(def); n++) {
+            kinds.add(ast.kind(n));
+        }
+        Assertions.assertEquals(List.of(AstKind.Param, AstKind.VarDef,
+                AstKind.Add, AstKind.VarRef, AstKind.Int, AstKind.Return,
+                AstKind.VarRef), kinds);
+        Assertions.assertEquals(41, ast.intValue(def + 5));
+        Assertions.assertEquals(PieType.Int32, ast.type(def + 4));
+        Assertions.assertEquals(2, ast.loc(def + 5).beginLine());
+    }
+
+    @Test public void testSimplify() {
+        var script = """
+                def g(b : Bool, y : Int32) : Void is
+                end
+                def f(x : Int32) : Int32 is
+                    var a : Int32 := 1 + 2 + 2147483647;
+                    var b : Int32 := a + 1;
+                    var c : Int32 := x + 0;
+                    var t : Bool := true;
+                    g(t, b + x + a);
+                    c := 1 + c + 2;
+                    return c;
+                end
+                """;
+        var result = new PieAnalyzer().setOptions(Options.TestOpts.withSimplify(true))
+                .setScriptCode("<test>", script).analyze();
+        Assertions.assertTrue(result.isOk());
+        var ast = result.get().ast();
+        Assertions.assertEquals(check(script).get().size() - ast.size(),
+                result.get().eliminatedNodes());
+
+        int f = ast.end(PieAst.ROOT + 1);
+        List<AstKind> kinds = new ArrayList<>();
+        for (int n = f + 1; n < ast.end(f); n++) {
+            kinds.add(ast.kind(n));
+        }
+        // a, b and t are gone, and chains are flattened with their constants last
+        Assertions.assertEquals(List.of(AstKind.Param,
+                AstKind.VarDef, AstKind.VarRef,
+                AstKind.Call, AstKind.True, AstKind.Add, AstKind.VarRef, AstKind.Int,
+                AstKind.Assign, AstKind.Add, AstKind.VarRef, AstKind.Int,
+                AstKind.Return, AstKind.VarRef), kinds);
+        // a is MIN + 2 (wrapped) and b is MIN + 3, so b + a is 5
+        Assertions.assertEquals(5, ast.intValue(f + 8));
+        Assertions.assertEquals(3, ast.intValue(f + 12));
+        Assertions.assertEquals(result.get().graph().edges(),
+                new PieAnalyzer().setOptions(Options.TestOpts)
+                        .setScriptCode("<test>", script).buildGraph().edges());
+    }
+
+    // deeply nested expressions
+
+    @Test public void testDeepAddChain() {
+        // 1 + x + x + ... parses into a tree 100k levels deep
+        int terms = 100_000;
+        var sb = new StringBuilder("def f(x : Int32) : Int32 is\n    return 1");
+        for (int i = 0; i < terms; i++) {
+            sb.append(i == terms / 2 ? " + true" : " + x");
+        }
+        String bad = sb.append(";\nend\n").toString();
+        String good = bad.replace(" + true", " + x");
+
+        for (var opts : List.of(Options.TestOpts,
+                Options.TestOpts.withFirstErrorOnly(),
+                Options.TestOpts.withIncremental(true))) {
+            var ok = new PieAnalyzer().setOptions(opts)
+                    .setScriptCode("<test>", good).check();
+            Assertions.assertTrue(ok.isOk());
+            Assertions.assertEquals(2 * terms + 5, ok.get().size());
+
+            var err = new PieAnalyzer().setOptions(opts)
+                    .setScriptCode("<test>", bad).check();
+            expectError(SemanticError.TypeMismatch.class, err, 1);
+        }
+    }
+
+    // error budgets
+
+    @Test public void testErrorBudget() {
+        var semantic = """
+                def f() : Void is
+                    x := 1;
+                    y := 2;
+                    z := 3;
+                    w := 4;
+                end
+                """;
+        var syntax = """
+                def f() : Void is
+                    var x : Int32 := ;
+                    var y : Int32 := ;
+                    var z : Int32 := ;
+                end
+                """;
+        var firstOnly = Options.TestOpts.withFirstErrorOnly();
+        for (var opts : List.of(firstOnly, firstOnly.withIncremental(true),
+                firstOnly.withTwoStageParse(true))) {
+            var result = new PieAnalyzer().setOptions(opts)
+                    .setScriptCode("<test>", semantic).check();
+            Assertions.assertEquals(1, result.getError().size());
+            Assertions.assertEquals("x", ((SemanticError.NoSuchSymbol)
+                    result.getError().get(0)).referencedSymbol());
+
+            result = new PieAnalyzer().setOptions(opts.withMaxErrors(2))
+                    .setScriptCode("<test>", syntax).check();
+            Assertions.assertEquals(2, result.getError().size());
+        }
+        expectError(SemanticError.NoSuchSymbol.class, check(semantic), 4);
+    }
+
+    @Test public void testErrorBudgetIsPrefix() {
+        var semantic = """
+                def f() : Void is
+                    x := 1;
+                    g();
+                end
+                def h(a : Int32) : Bool is
+                    return a;
+                end
+                """;
+        var mixed = semantic + """
+                def k() : Void is
+                    var y : Int32 := ;
+                    y := 1;
+                end
+                """;
+        // (the stray char is skipped, so the two-stage parse's SLL pass
+        // succeeds: only the lexer saw an error)
+        var lexical = """
+                def f() : Void is
+                    x := 1; #
+                    g();
+                end
+                """;
+        for (var script : List.of(semantic, mixed, lexical)) {
+            for (var opts : List.of(Options.TestOpts,
+                    Options.TestOpts.withTwoStageParse(true),
+                    Options.TestOpts.withLeanTokens(true))) {
+                var all = new PieAnalyzer().setOptions(opts)
+                        .setScriptCode("<test>", script).check().getError();
+                for (int budget = 1; budget <= all.size() + 1; budget++) {
+                    var some = new PieAnalyzer()
+                            .setOptions(opts.withMaxErrors(budget))
+                            .setScriptCode("<test>", script).check().getError();
+                    Assertions.assertEquals(
+                            all.subList(0, Math.min(budget, all.size())), some);
+                }
+            }
+        }
+    }
+
+    // mapped input
+
+    @Test public void testMetrics() {
+        var script = """
+                def f(x : Int32) : Int32 is
+                    return x + 1;
+                end
+                def g() : Void is
+                    f(1);
+                end
+                """;
+        var analyzer = new PieAnalyzer().setOptions(Options.TestOpts)
+                .setScriptCode("<test>", script);
+        analyzer.analyze();
+        Assertions.assertThrows(IllegalStateException.class, analyzer::metrics);
+
+        analyzer.setOptions(Options.TestOpts.withMetrics(true)).analyze();
+        var metrics = analyzer.metrics();
+        Assertions.assertEquals("<test>", metrics.script());
+        // (and the end of file)
+        Assertions.assertEquals(new PiethonLexer(CharStreams.fromString(script))
+                .getAllTokens().size() + 1, metrics.tokens());
+        Assertions.assertEquals(check(script).get().size(), metrics.nodes());
+        Assertions.assertEquals(0, metrics.errors());
+        for (var phase : List.of(AnalysisMetrics.Phase.Lex,
+                AnalysisMetrics.Phase.Parse, AnalysisMetrics.Phase.Check,
+                AnalysisMetrics.Phase.Graph)) {
+            Assertions.assertTrue(metrics.nanos(phase) > 0, phase.name());
+        }
+        Assertions.assertEquals(0, metrics.nanos(AnalysisMetrics.Phase.Lower));
+
+        // checked while parsing, then lowered
+        analyzer.setOptions(Options.TestOpts.withMetrics(true).withMaxErrors(5))
+                .setScriptCode("<bad>", script.replace("x + 1", "x + true"))
+                .analyze();
+        metrics = analyzer.metrics();
+        Assertions.assertEquals(1, metrics.errors());
+        Assertions.assertEquals(0, metrics.nodes());
+        Assertions.assertEquals(0, metrics.nanos(AnalysisMetrics.Phase.Check));
+        Assertions.assertEquals(metrics.totalNanos(),
+                metrics.nanos(AnalysisMetrics.Phase.Lex)
+                        + metrics.nanos(AnalysisMetrics.Phase.Parse));
+
+        // measuring doesn't change the errors, or their order
+        var broken = script.replace("f(x : Int32)", "f(x : Int32")
+                .replace("f(1);", "f(1); #");
+        for (var options : List.of(Options.TestOpts,
+                Options.TestOpts.withTwoStageParse(true),
+                Options.TestOpts.withLeanTokens(true))) {
+            var expected = new PieAnalyzer().setOptions(options)
+                    .setScriptCode("<bad>", broken).check().getError();
+            Assertions.assertEquals(expected, new PieAnalyzer()
+                    .setOptions(options.withMetrics(true))
+                    .setScriptCode("<bad>", broken).check().getError());
+            // (the lexer error comes after the parser's)
+            Assertions.assertFalse(expected.get(0).message().contains("'#'"),
+                    expected::toString);
+        }
+    }
+
+    @Test public void testParseProfile() {
+        var script = """
+                def f(x : Int32) : Int32 is
+                    x := x + 1 + 2;
+                    return x;
+                end
+                def g() : Void is
+                    f(1);
+                end
+                """;
+        var profile = new PieAnalyzer()
+                .setOptions(Options.TestOpts.withTwoStageParse(true))
+                .setScriptCode("<test>", script).profileParse();
+        Assertions.assertFalse(profile.reparsed());
+        var statement = profile.decisions().stream()
+                .filter(d -> d.rule().equals("statement")).findFirst().get();
+        // telling assignments from calls takes more than the first token
+        Assertions.assertEquals("alternatives", statement.kind());
+        Assertions.assertTrue(statement.sllMaxLookahead() > 1);
+        Assertions.assertTrue(profile.decisions().stream().anyMatch(d ->
+                d.rule().equals("exp") && d.kind().equals("precedence loop")));
+
+        profile = new PieAnalyzer()
+                .setOptions(Options.TestOpts.withTwoStageParse(true))
+                .setScriptCode("<test>", script.replace("f(1);", "f(1;"))
+                .profileParse();
+        Assertions.assertTrue(profile.reparsed());
+    }
+
+    @Test public void testLeanTokens() {
+        var script = """
+                def f(x : Int32) : Int32 is
+                    x   1;
+                    return x + /* one */ 1;
+                end
+                def g() : Void is
+                    f(1;
+                    h(2);
+                    v1 = /* c */ a0;
+                end
+                """;
+        for (boolean twoStage : new boolean[] {false, true}) {
+            var options = Options.TestOpts.withTwoStageParse(twoStage);
+            var expected = new PieAnalyzer().setOptions(options)
+                    .setScriptCode("<test>", script).check().getError();
+            var errors = new PieAnalyzer()
+                    .setOptions(options.withLeanTokens(true))
+                    .setScriptCode("<test>", script).check().getError();
+            Assertions.assertEquals(expected, errors);
+            // (the rejected '=' and the comment aren't quoted)
+            Assertions.assertTrue(errors.stream().anyMatch(e -> e.message()
+                    .contains("input 'v1   a0'")), errors::toString);
+        }
+        // rejected chars running into the end of input (nothing's lexed
+        // after them)
+        for (var rest : List.of("\"ar x : Int32 := 1;\nend\n",
+                "/*ar x : Int32 := 1;\nend\n")) {
+            var unterminated = "def f() : Void is\n    v" + rest;
+            for (boolean twoStage : new boolean[] {false, true}) {
+                var options = Options.TestOpts.withTwoStageParse(twoStage);
+                var expected = new PieAnalyzer().setOptions(options)
+                        .setScriptCode("<test>", unterminated).check().getError();
+                var errors = new PieAnalyzer()
+                        .setOptions(options.withLeanTokens(true))
+                        .setScriptCode("<test>", unterminated).check().getError();
+                Assertions.assertEquals(expected, errors);
+                Assertions.assertTrue(errors.stream().anyMatch(e -> e.message()
+                        .contains("input 'v'")), errors::toString);
+            }
+        }
+        var ok = script.replace("x   1;", "").replace("f(1;", "f(1);")
+                .replace("h(2);", "").replace("v1 = /* c */ a0;", "");
+        Assertions.assertEquals(check(ok).get().size(), new PieAnalyzer()
+                .setOptions(Options.TestOpts.withLeanTokens(true))
+                .setScriptCode("<test>", ok).check().get().size());
+    }
+
+    @Test public void testParallelCheck() throws Exception {
+        var options = Options.TestOpts.withParallelCheck(true);
+        var pool = new ForkJoinPool(4);
+        try {
+            for (boolean broken : new boolean[] {true, false}) {
+                var script = manyDefs(4 * ParallelChecker.BATCH + 100, broken);
+                var expected = check(script);
+                var parallel = pool.submit(() -> new PieAnalyzer()
+                        .setOptions(options).setScriptCode("<test>", script)
+                        .check()).get();
+                Assertions.assertEquals(broken, expected.isError());
+                if (broken) {
+                    Assertions.assertEquals(expected.getError(),
+                            parallel.getError());
+                }
+                else {
+                    Assertions.assertEquals(expected.get().size(),
+                            parallel.get().size());
+                }
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns a script of {@code defs} procedures, each calling the one
+     * before it; if {@code broken}, some also have errors (recursion, calls
+     * to later procedures, type mismatches, duplicates...).
+     */
+    private static String manyDefs(int defs, boolean broken) {
+        var s = new StringBuilder();
+        for (int i = 0; i < defs; i++) {
+            s.append("def p").append(i).append("(x : Int32) : Int32 is\n");
+            if (i > 0) {
+                s.append("    p").append(i - 1).append("(x);\n");
+            }
+            if (broken) {
+                switch (i % 97) {
+                    case 13 -> s.append("    p").append(i).append("(x);\n");
+                    case 29 -> s.append("    p").append(i + 1).append("(x);\n");
+                    case 41 -> s.append("    var b : Bool := x + 1;\n");
+                    case 53 -> s.append("    p0(x, x);\n");
+                    default -> { }
+                }
+            }
+            s.append("    return x;\nend\n");
+            if (broken && i % 211 == 7) {
+                s.append("def p3() : Void is\n    q();\nend\n");
+            }
+        }
+        return s.toString();
+    }
+
+    @Test public void testWorkspace(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("a.pie"), """
+                def g() : Void is
+                end
+                """);
+        Files.writeString(dir.resolve("b.pie"), """
+                def f() : Void is
+                    h();
+                    h();
+                end
+                """);
+        var gone = Files.writeString(dir.resolve("c.pie"), "");
+        Files.writeString(dir.resolve("d.pie"), """
+                def f() : Void is
+                    f(1);
+                end
+                """);
+        var workspace = new PieWorkspace().setOptions(Options.TestOpts)
+                .setParallelism(3)
+                .addScript(new TextInput("first.pie", "def f() : Void is\nend\n"))
+                .addDirectory(dir);
+        Files.delete(gone);
+        var result = workspace.analyze();
+
+        var names = result.scripts().stream()
+                .map(PieWorkspace.ScriptResult::name).toList();
+        Assertions.assertEquals(List.of("first.pie",
+                dir.resolve("a.pie").toString(), dir.resolve("b.pie").toString(),
+                gone.toString(), dir.resolve("d.pie").toString()), names);
+        Assertions.assertTrue(result.scripts().get(1).result().isOk());
+        Assertions.assertEquals(2, result.scripts().get(2).result().getError().size());
+        var missing = result.scripts().get(3).result().getError();
+        Assertions.assertEquals(1, missing.size());
+        Assertions.assertTrue(missing.get(0) instanceof ReadError);
+        Assertions.assertTrue(missing.get(0).render().contains("no such file"));
+        Assertions.assertEquals(1, result.scripts().get(4).result().getError().size());
+        Assertions.assertEquals(4, result.errorCount());
+    }
+
+    @Test public void testAnalysisCache(@TempDir Path dir) throws IOException {
+        var scripts = List.of(
+                new TextInput("ok.pie", """
+                        def g() : Void is
+                        end
+                        def f() : Void is
+                            g();
+                            g();
+                        end
+                        """),
+                new TextInput("bad.pie", """
+                        def f(x : Int32) : Bool is
+                            var y : Bool := x + 1;
+                            h(x);
+                            f(x, x);
+                            return x;
+                        end
+                        def f() : Void is
+                        end
+                        """),
+                new TextInput("syntax.pie", """
+                        def f() : Void is
+                            x   1;
+                        end
+                        """));
+        var cache = AnalysisCache.open(dir.resolve("cache"), 1 << 20);
+        var cold = new PieWorkspace().setOptions(Options.TestOpts)
+                .addScripts(scripts).analyze();
+        for (int run = 0; run < 2; run++) {
+            var warm = new PieWorkspace().setOptions(Options.TestOpts)
+                    .setCache(cache).addScripts(scripts).analyze();
+            var ok = warm.scripts().get(0).result().get();
+            Assertions.assertEquals(cold.scripts().get(0).result().get().edges(),
+                    ok.edges());
+            Assertions.assertEquals(List.of(new ProcNode("g"), new ProcNode("f")),
+                    List.copyOf(ok.getVertices()));
+            for (int i = 1; i < scripts.size(); i++) {
+                Assertions.assertEquals(cold.scripts().get(i).result().getError(),
+                        warm.scripts().get(i).result().getError());
+            }
+        }
+        Assertions.assertEquals(3, cache.hits());
+        Assertions.assertEquals(3, cache.misses());
+
+        // unreadable entries are analyzed again; the cache is kept to its size
+        List<Path> entries;
+        try (var files = Files.list(dir.resolve("cache"))) {
+            entries = files.toList();
+        }
+        Assertions.assertEquals(3, entries.size());
+        Files.write(entries.get(0), new byte[] {1, 2, 3});
+        var small = AnalysisCache.open(dir.resolve("cache"), 0);
+        var again = new PieWorkspace().setOptions(Options.TestOpts)
+                .setCache(small).addScripts(scripts).analyze();
+        Assertions.assertEquals(cold.errorCount(), again.errorCount());
+        Assertions.assertEquals(1, small.misses());
+        try (var files = Files.list(dir.resolve("cache"))) {
+            Assertions.assertEquals(0, files.count());
+        }
+    }
+
+    @Test public void testMappedFileInput(@TempDir Path dir) throws IOException {
+        var text = """
+                def f(x : Int32) : Int32 is
+                    /* comment */ var y : Bool := x + 1; // mismatch
+                    return x;
+                end
+                """;
+        var file = Files.writeString(dir.resolve("f.pie"), text);
+        var mapped = TextInput.mapped(file);
+        Assertions.assertTrue(mapped.isMapped());
+
+        var fromFile = new PieAnalyzer().setOptions(Options.TestOpts)
+                .setScript(mapped).check();
+        var fromString = new PieAnalyzer().setOptions(Options.TestOpts)
+                .setScriptCode(file.toString(), text).check();
+        Assertions.assertEquals(fromString.getError(), fromFile.getError());
+        Assertions.assertEquals(text, mapped.text());
+    }
+
     // todo: many additional things to test (multiple methods,
     //  some involving calls, some involving formal parameters, etc)..
 
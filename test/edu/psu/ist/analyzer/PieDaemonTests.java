@@ -0,0 +1,122 @@
+package edu.psu.ist.analyzer;
+
+import edu.psu.ist.analyzer.utils.Json;
+import edu.psu.ist.analyzer.utils.Options;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class PieDaemonTests {
+
+    private static List<Map<String, Object>> serve(PieDaemon daemon,
+                                                   String... requests)
+            throws IOException {
+        var out = new StringWriter();
+        daemon.serve(new BufferedReader(new StringReader(
+                String.join("\n", requests))), out);
+        return out.toString().lines().map(Json::parseObject).toList();
+    }
+
+    private static String check(int id, String op, String text) {
+        return Json.write(Map.of("id", id, "op", op, "name", "a.pie",
+                "text", text));
+    }
+
+    @Test public void testRequests(@TempDir Path dir) throws IOException {
+        String good = """
+                def g() : Void is
+                end
+
+                def f() : Void is
+                    g();
+                end
+                """;
+        String bad = good.replace("g();", "g(1);");
+        var out = dir.resolve("g.dot");
+        var daemon = new PieDaemon(Options.TestOpts.withIncremental(true));
+        var responses = serve(daemon,
+                check(1, "check", good),
+                check(2, "check", bad),
+                check(3, "graph", good),
+                Json.write(Map.of("id", 4, "op", "export", "name", "a.pie",
+                        "text", good, "out", out.toString(), "format", "dot")),
+                "{\"id\":5,\"op\":",
+                "{\"id\":6,\"op\":\"frobnicate\"}",
+                "{\"id\":7,\"op\":\"shutdown\"}",
+                "{\"id\":8,\"op\":\"ping\"}");
+
+        // nothing is answered after the shutdown
+        Assertions.assertEquals(7, responses.size());
+        Assertions.assertEquals(true, responses.get(0).get("valid"));
+        Assertions.assertEquals(1L, responses.get(0).get("id"));
+        Assertions.assertTrue(responses.get(0).get("micros") instanceof Long);
+
+        var failed = responses.get(1);
+        Assertions.assertEquals(true, failed.get("ok"));
+        Assertions.assertEquals(false, failed.get("valid"));
+        var diagnostics = (List<?>) failed.get("diagnostics");
+        Assertions.assertEquals(1, diagnostics.size());
+        var d = (Map<?, ?>) diagnostics.get(0);
+        Assertions.assertEquals("ArgCountMismatch", d.get("type"));
+        Assertions.assertEquals(5L, d.get("line"));
+        Assertions.assertEquals(4L, d.get("col"));
+
+        Assertions.assertEquals(List.of("g", "f"), responses.get(2).get("vertices"));
+        Assertions.assertEquals(List.of(List.of(1L, 0L)),
+                responses.get(2).get("edges"));
+        Assertions.assertTrue(Files.readString(out).startsWith("digraph"));
+
+        Assertions.assertEquals(true, responses.get(3).get("ok"));
+        // a malformed request is answered (with a null id) and skipped
+        Assertions.assertEquals(false, responses.get(4).get("ok"));
+        Assertions.assertNull(responses.get(4).get("id"));
+        Assertions.assertEquals("unknown op: frobnicate",
+                responses.get(5).get("error"));
+        Assertions.assertEquals(true, responses.get(6).get("ok"));
+    }
+
+    @Test public void testRewrittenFile(@TempDir Path dir) throws IOException {
+        var file = Files.writeString(dir.resolve("a.pie"), """
+                def g() : Void is
+                end
+
+                def f() : Void is
+                    g(1);
+                end
+                """);
+        var daemon = new PieDaemon(Options.TestOpts.withIncremental(true));
+        String request = Json.write(Map.of("id", 1, "op", "check",
+                "path", file.toString()));
+        var first = Json.parseObject(daemon.handle(request));
+        Assertions.assertEquals(false, first.get("valid"));
+
+        // an editor truncating and rewriting the file doesn't pull the
+        // text from under the analyzer that kept it
+        Files.write(file, new byte[0]);
+        Files.writeString(file, "def g() : Void is\nend\n");
+        var second = Json.parseObject(daemon.handle(request));
+        Assertions.assertEquals(true, second.get("valid"));
+    }
+
+    @Test public void testJson() {
+        var value = Json.parse(" {\"a\": [1, -2.5e1, true, null, \"x\\n\\u00e9\\\"\"],"
+                + " \"b\": {}} ");
+        Assertions.assertEquals(Map.of("a", Arrays.asList(1L, -25.0,
+                true, null, "x\né\""), "b", Map.of()), value);
+        Assertions.assertEquals(value, Json.parse(Json.write(value)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> Json.parse("[1, 2"));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> Json.parse("[".repeat(Json.MAX_DEPTH + 2)));
+    }
+}
@@ -0,0 +1,183 @@
+package edu.psu.ist.analyzer.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class DigraphTests {
+
+    private static Digraph<String> sample() {
+        var g = new Digraph<String>();
+        g.add("a", "b");
+        g.add("a", "c");
+        g.add("b", "c");
+        g.add("c", "c");
+        g.add("a", "b"); // parallel edge
+        g.add("d");
+        return g;
+    }
+
+    @Test public void testFrozenDegreesMatch() {
+        var g = sample();
+        int[] in = new int[4], out = new int[4];
+        String[] vs = {"a", "b", "c", "d"};
+        for (int i = 0; i < vs.length; i++) {
+            in[i] = g.inDegree(vs[i]);
+            out[i] = g.outDegree(vs[i]);
+        }
+        var compact = g.freeze();
+        Assertions.assertTrue(g.isFrozen());
+        Assertions.assertEquals(4, compact.vertexCount());
+        Assertions.assertEquals(5, compact.edgeCount());
+        for (int i = 0; i < vs.length; i++) {
+            Assertions.assertEquals(in[i], g.inDegree(vs[i]));
+            Assertions.assertEquals(out[i], compact.outDegree(compact.id(vs[i])));
+        }
+    }
+
+    @Test public void testForEachEdgeMatchesEdges() {
+        var g = sample();
+        g.freeze();
+        Set<Pair<String, String>> seen = new HashSet<>();
+        g.forEachEdge((u, v) -> seen.add(new Pair<>(u, v)));
+        Assertions.assertEquals(g.edges(), seen);
+    }
+
+    @Test public void testModifyingThawsGraph() {
+        var g = sample();
+        g.freeze();
+        g.add("d", "a");
+        Assertions.assertFalse(g.isFrozen());
+        Assertions.assertEquals(1, g.inDegree("a"));
+        Assertions.assertEquals(1, g.freeze().inDegree(g.freeze().id("a")));
+    }
+
+    @Test public void testViewsAreReadOnly() {
+        var g = sample();
+        g.freeze();
+        Assertions.assertThrows(UnsupportedOperationException.class,
+                () -> g.neighbors("a").add("d"));
+        Assertions.assertThrows(UnsupportedOperationException.class,
+                () -> g.getVertices().remove("d"));
+        Assertions.assertTrue(g.isFrozen());
+    }
+
+    @Test public void testRemoveVertexWithoutInEdges() {
+        var g = sample();
+        g.freeze();
+        // (nothing leads to a)
+        g.removeVertexWithoutInEdges("a");
+        Assertions.assertFalse(g.isFrozen());
+        var expected = sample();
+        expected.remove("a");
+        Assertions.assertEquals(expected.getVertices(), g.getVertices());
+        Assertions.assertEquals(expected.edges(), g.edges());
+        Assertions.assertEquals(2, g.inDegree("c"));
+    }
+
+    @Test public void testComponents() {
+        var g = sample();
+        g.add("b", "a"); // a <-> b
+        var sccs = StronglyConnectedComponents.of(g);
+        Assertions.assertEquals(3, sccs.count());
+        Assertions.assertEquals(sccs.componentOf("a"), sccs.componentOf("b"));
+        Assertions.assertTrue(sccs.isCyclic(sccs.componentOf("a")));
+        Assertions.assertTrue(sccs.isCyclic(sccs.componentOf("c"))); // self loop
+        Assertions.assertFalse(sccs.isCyclic(sccs.componentOf("d")));
+
+        // every condensation edge goes forward in topological order
+        int[] position = new int[sccs.count()];
+        int[] order = sccs.topologicalOrder();
+        for (int i = 0; i < order.length; i++) {
+            position[order[i]] = i;
+        }
+        sccs.condensation().forEachEdge((c1, c2) ->
+                Assertions.assertTrue(position[c1] < position[c2]));
+        Assertions.assertEquals(1, sccs.condensation().edgeCount());
+    }
+
+    @Test public void testComponentsOfLongChain() {
+        var g = new Digraph<Integer>();
+        int n = 1_000_000;
+        for (int i = 0; i < n; i++) {
+            g.add(i, i + 1);
+        }
+        g.add(n, 0); // one big cycle
+        var sccs = StronglyConnectedComponents.of(g);
+        Assertions.assertEquals(1, sccs.count());
+        Assertions.assertEquals(n + 1, sccs.size(0));
+    }
+
+    @Test public void testReachability() {
+        var random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            int n = 1 + random.nextInt(60);
+            var g = new Digraph<Integer>();
+            for (int i = 0; i < n; i++) {
+                g.add(i);
+            }
+            // mostly forward edges (a dag), plus a few cycles
+            for (int i = 0; i < 2 * n; i++) {
+                int u = random.nextInt(n), v = random.nextInt(n);
+                if (u < v || random.nextInt(10) == 0) {
+                    g.add(u, v);
+                }
+            }
+            var index = ReachabilityIndex.of(g);
+            for (int u = 0; u < n; u++) {
+                // what a plain search finds
+                Set<Integer> seen = new HashSet<>(List.of(u));
+                Deque<Integer> todo = new ArrayDeque<>(seen);
+                while (!todo.isEmpty()) {
+                    for (int w : g.neighbors(todo.pop())) {
+                        if (seen.add(w)) {
+                            todo.push(w);
+                        }
+                    }
+                }
+                for (Integer v = 0; v < n; v++) {
+                    Assertions.assertEquals(seen.contains(v),
+                            index.reaches((Integer) u, v), u + " -> " + v);
+                }
+                var dead = new HashSet<>(index.unreachableFrom(List.of(u)));
+                Assertions.assertEquals(n - seen.size(), dead.size());
+                dead.retainAll(seen);
+                Assertions.assertTrue(dead.isEmpty());
+            }
+        }
+    }
+
+    @Test public void testExportDotAndJson() throws IOException {
+        var g = new Digraph<String>();
+        g.add("f", "g");
+        var dot = new ByteArrayOutputStream();
+        GraphExporter.writeDot(g, "t \"1\"", dot);
+        Assertions.assertEquals("""
+                digraph "t \\"1\\"" {
+                    label="t \\"1\\"";
+                    node [shape=box, style="rounded,filled", fillcolor="#dbeafe"];
+                    n0 [label="f"];
+                    n1 [label="g"];
+                    n0 -> n1;
+                }
+                """, dot.toString(StandardCharsets.UTF_8));
+
+        var json = new ByteArrayOutputStream();
+        GraphExporter.writeJsonLines(g, "t", json);
+        Assertions.assertEquals("""
+                {"type":"graph","title":"t","vertices":2,"edges":1}
+                {"type":"node","id":0,"label":"f"}
+                {"type":"node","id":1,"label":"g"}
+                {"type":"edge","from":0,"to":1}
+                """, json.toString(StandardCharsets.UTF_8));
+    }
+}
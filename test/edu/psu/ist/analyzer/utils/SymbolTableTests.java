@@ -0,0 +1,43 @@
+package edu.psu.ist.analyzer.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SymbolTableTests {
+
+    @Test public void testInterning() {
+        var symbols = new SymbolInterner();
+        int x = symbols.intern("x");
+        int y = symbols.intern(new StringBuilder("y"));
+        Assertions.assertNotEquals(x, y);
+        Assertions.assertEquals(x, symbols.intern(new StringBuilder("x")));
+        Assertions.assertEquals(-1, symbols.find("z"));
+        for (int i = 0; i < 10_000; i++) {
+            Assertions.assertEquals(i + 2, symbols.intern("v" + i));
+        }
+        Assertions.assertEquals("v9999", symbols.name(10_001));
+        Assertions.assertEquals(y, symbols.find("y"));
+    }
+
+    @Test public void testScopesShadowAndRestore() {
+        var table = new ScopedSymbolTable<String>();
+        Assertions.assertTrue(table.define(1, "global1"));
+        Assertions.assertFalse(table.define(1, "dup"));
+
+        table.pushScope();
+        Assertions.assertFalse(table.isDefinedInCurrentScope(1));
+        Assertions.assertTrue(table.define(1, "local1"));
+        // enough locals to force a few resizes mid-scope
+        for (int sym = 2; sym < 5_000; sym++) {
+            Assertions.assertTrue(table.define(sym, "local" + sym));
+        }
+        Assertions.assertEquals("local1", table.lookup(1));
+        Assertions.assertEquals("local4999", table.lookup(4999));
+        table.popScope();
+
+        Assertions.assertEquals(1, table.size());
+        Assertions.assertEquals("global1", table.lookup(1));
+        Assertions.assertNull(table.lookup(2));
+        Assertions.assertThrows(IllegalStateException.class, table::popScope);
+    }
+}
@@ -0,0 +1,74 @@
+package edu.psu.ist.analyzer.vm;
+
+import edu.psu.ist.TestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class InterpreterTests extends TestUtils {
+
+    private Interpreter load(String script) {
+        var result = check(script);
+        Assertions.assertTrue(result.isOk(), () -> "errors: " + result.getError());
+        return new Interpreter(Compiler.compile(result.get()));
+    }
+
+    @Test public void testArithmetic() {
+        var vm = load("""
+                def add3(a : Int32, b : Int32, c : Int32) : Int32 is
+                    var x : Int32 := a + b;
+                    x := x + c + 1 + x;
+                    return x;
+                end
+                def flip(b : Bool) : Bool is
+                    return b;
+                end
+                """);
+        Assertions.assertEquals(2 * (1 + 2) + 3 + 1, vm.call("add3", 1, 2, 3));
+        // Int32 wraps around
+        Assertions.assertEquals(Integer.MIN_VALUE + 1 + Integer.MIN_VALUE,
+                vm.call("add3", Integer.MAX_VALUE, 1, 0));
+        Assertions.assertEquals(1, vm.call("flip", 1));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> vm.call("flip", 2));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> vm.call("add3", 1));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> vm.call("nope"));
+    }
+
+    @Test public void testCalls() {
+        var vm = load("""
+                def leaf(x : Int32) : Int32 is
+                    return x + 1;
+                end
+                def twice(x : Int32) : Void is
+                    leaf(x);
+                    leaf(x + x);
+                end
+                def top(x : Int32, b : Bool) : Int32 is
+                    var y : Int32 := x + 40;
+                    twice(y);
+                    leaf(y + 1);
+                    return y + 2;
+                end
+                """);
+        Assertions.assertEquals(42 + 2, vm.call("top", 2, 0));
+        Assertions.assertEquals(5, vm.callCount());
+        Assertions.assertEquals(0, vm.call("twice", 7));
+    }
+
+    @Test public void testCallDepth() {
+        int n = 20_000;
+        var sb = new StringBuilder("def p0(x : Int32) : Int32 is return x; end\n");
+        for (int i = 1; i < n; i++) {
+            sb.append("def p").append(i).append("(x : Int32) : Int32 is p")
+                    .append(i - 1).append("(x + 1); return x; end\n");
+        }
+        var vm = load(sb.toString());
+        // far deeper than the Java stack would go, if calls recursed
+        Assertions.assertEquals(7, vm.setMaxCallDepth(n).call("p" + (n - 1), 7));
+        Assertions.assertEquals(n, vm.callCount());
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> vm.setMaxCallDepth(n - 1).call("p" + (n - 1), 7));
+    }
+}